@@ -1,7 +1,7 @@
 package com.example.api_gateway.config;
 
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import java.util.Date;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
@@ -13,6 +13,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import reactor.core.publisher.Mono;
@@ -20,8 +21,16 @@ import reactor.core.publisher.Mono;
 @Component
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    // La clave y el parser no cambian: se arman una sola vez (el parser es inmutable y thread-safe)
+    private final JwtParser parser;
+    private final VerifiedTokenCache tokenCache;
+
+    public JwtAuthenticationFilter(@Value("${jwt.secret}") String secret, VerifiedTokenCache tokenCache) {
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .build();
+        this.tokenCache = tokenCache;
+    }
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -44,18 +53,18 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         String token = authHeader.substring(7);
 
         try {
-            // 3) Validar token con el mismo secreto que usa el auth-service
-            Key key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // (Opcional) Puedes extraer UID/email y pasarlo como header a otros microservicios
-            String uid = claims.getSubject();
-            String email = claims.get("email", String.class);
+            // 3) Un token ya verificado en esta sesión sale de la caché; si no,
+            //    se valida con el mismo secreto que usa el auth-service
+            VerifiedTokenCache.VerifiedToken verified = tokenCache.get(token);
+            if (verified == null) {
+                Claims claims = parser.parseClaimsJws(token).getBody();
+                Date expiration = claims.getExpiration();
+                verified = tokenCache.put(token, claims.getSubject(), claims.get("email", String.class),
+                        expiration == null ? null : expiration.getTime());
+            }
+
+            String uid = verified.uid();
+            String email = verified.email();
 
             // Agregar los datos como headers hacia el microservicio de destino
             ServerWebExchange mutatedExchange = exchange.mutate()
@@ -76,7 +85,8 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
     @Override
     public int getOrder() {
-        // Orden bajo para que se ejecute temprano
-        return -1;
+        // Orden bajo para que se ejecute temprano: antes de la caché de
+        // respuestas, que sirve entradas por X-User-Uid
+        return ResponseCacheGatewayFilterFactory.ORDER - 1;
     }
 }
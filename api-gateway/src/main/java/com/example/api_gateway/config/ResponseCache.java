@@ -0,0 +1,436 @@
+package com.example.api_gateway.config;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Respuestas GET guardadas por ResponseCacheGatewayFilterFactory, compartidas
+ * por todas las rutas que usan el filtro.
+ *
+ * La frescura sale del Cache-Control del backend (s-maxage, max-age,
+ * stale-while-revalidate) o, si no lo manda, de default-ttl-seconds y
+ * default-stale-seconds. No se guardan respuestas con no-store, no-cache,
+ * Set-Cookie, Vary: * o Content-Encoding, ni private salvo que la entrada sea
+ * por usuario. Una entrada vencida pero dentro de la ventana stale se sigue
+ * sirviendo mientras se revalida.
+ *
+ * La memoria se acota en bytes (max-bytes, con el cuerpo y las cabeceras de
+ * cada entrada): al pasarse se descartan las vencidas y luego las usadas hace
+ * más tiempo, hasta el 90 %. Las lecturas no toman locks.
+ */
+@Component
+public class ResponseCache {
+
+    // Estimación de lo que ocupa una entrada además del cuerpo y las cabeceras
+    private static final int ENTRY_OVERHEAD = 256;
+    // Solo estas cabeceras del backend se guardan y se devuelven desde la caché
+    private static final List<String> STORED_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE,
+            HttpHeaders.CONTENT_LANGUAGE,
+            HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.VARY);
+
+    private final Map<Key, CachedResponse> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> keysByPath = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final long defaultTtlMillis;
+    private final long defaultStaleMillis;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    @Autowired
+    public ResponseCache(
+            @Value("${gateway.response-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${gateway.response-cache.max-entry-bytes:262144}") int maxEntryBytes,
+            @Value("${gateway.response-cache.default-ttl-seconds:10}") long defaultTtlSeconds,
+            @Value("${gateway.response-cache.default-stale-seconds:30}") long defaultStaleSeconds,
+            MeterRegistry registry
+    ) {
+        this(maxBytes, maxEntryBytes, defaultTtlSeconds, defaultStaleSeconds, registry, System::currentTimeMillis);
+    }
+
+    ResponseCache(long maxBytes, int maxEntryBytes, long defaultTtlSeconds, long defaultStaleSeconds,
+                  MeterRegistry registry, LongSupplier clock) {
+        if (maxBytes <= 0 || maxEntryBytes <= 0) {
+            throw new IllegalArgumentException("gateway.response-cache.max-bytes y max-entry-bytes deben ser positivos");
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.defaultTtlMillis = defaultTtlSeconds * 1000;
+        this.defaultStaleMillis = defaultStaleSeconds * 1000;
+        this.clock = clock;
+        this.hits = result(registry, "hit", "Respuestas frescas servidas desde la caché");
+        this.staleHits = result(registry, "stale", "Respuestas vencidas servidas mientras se revalidan");
+        this.misses = result(registry, "miss", "Solicitudes que fueron al backend");
+        this.evictions = Counter.builder("gateway.response.cache.evictions")
+                .description("Entradas descartadas por el límite de memoria")
+                .register(registry);
+        this.invalidations = Counter.builder("gateway.response.cache.invalidations")
+                .description("Entradas borradas por una escritura al mismo recurso")
+                .register(registry);
+        Gauge.builder("gateway.response.cache.bytes", bytes, AtomicLong::get)
+                .description("Memoria estimada de las entradas")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("gateway.response.cache.entries", entries, Map::size)
+                .register(registry);
+    }
+
+    /**
+     * Entrada fresca o dentro de la ventana stale; null si no hay (cuenta
+     * como miss).
+     */
+    public CachedResponse get(Key key) {
+        long now = clock.getAsLong();
+        CachedResponse cached = entries.get(key);
+        if (cached != null && now >= cached.staleUntil()) {
+            remove(key, cached);
+            cached = null;
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        cached.lastAccess = now;
+        (cached.isFresh(now) ? hits : staleHits).increment();
+        return cached;
+    }
+
+    /**
+     * Arma la entrada para una respuesta del backend, o null si no se puede
+     * guardar. perUser indica que la clave incluye X-User-Uid.
+     */
+    public CachedResponse toEntry(HttpStatusCode status, HttpHeaders headers, byte[] body, boolean perUser) {
+        if (status.value() != HttpStatus.OK.value() || body.length > maxEntryBytes
+                || headers.containsKey(HttpHeaders.SET_COOKIE)
+                || headers.containsKey(HttpHeaders.CONTENT_ENCODING)
+                || headers.getVary().contains("*")) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        Freshness freshness = freshness(headers.getCacheControl(), perUser, now);
+        if (freshness == null) {
+            return null;
+        }
+        HttpHeaders stored = new HttpHeaders();
+        for (String name : STORED_HEADERS) {
+            List<String> values = headers.get(name);
+            if (values != null) {
+                stored.put(name, values);
+            }
+        }
+        return new CachedResponse(status, HttpHeaders.readOnlyHttpHeaders(stored), body, now,
+                freshness.freshUntil(), freshness.staleUntil());
+    }
+
+    /**
+     * La misma entrada con la frescura renovada tras un 304 del backend; el
+     * Cache-Control del 304, si trae uno, reemplaza al guardado.
+     */
+    public CachedResponse revalidated(CachedResponse cached, HttpHeaders notModified, boolean perUser) {
+        long now = clock.getAsLong();
+        String cacheControl = notModified.getCacheControl() != null
+                ? notModified.getCacheControl()
+                : cached.headers().getCacheControl();
+        Freshness freshness = freshness(cacheControl, perUser, now);
+        if (freshness == null) {
+            return null;
+        }
+        return new CachedResponse(cached.status(), cached.headers(), cached.body(), now,
+                freshness.freshUntil(), freshness.staleUntil());
+    }
+
+    /**
+     * Versión de las invalidaciones: se toma antes de pedir la respuesta al
+     * backend y se pasa a put.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Guarda la respuesta salvo que haya habido una escritura desde version:
+     * lo que se leyó en paralelo a la escritura puede ser lo anterior.
+     */
+    public void put(Key key, CachedResponse response, long version) {
+        if (response == null || this.version.get() != version) {
+            return;
+        }
+        CachedResponse previous = entries.put(key, response);
+        bytes.addAndGet(response.weight() - (previous == null ? 0 : previous.weight()));
+        keysByPath.compute(key.path(), (path, keys) -> {
+            Set<Key> result = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            result.add(key);
+            return result;
+        });
+        if (this.version.get() != version) {
+            remove(key, response);
+        } else if (bytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    public void remove(Key key) {
+        CachedResponse cached = entries.get(key);
+        if (cached != null) {
+            remove(key, cached);
+        }
+    }
+
+    /**
+     * Borra, para todos los usuarios, las entradas del recurso escrito y de
+     * los que lo contienen: POST /posts/1/likes invalida /posts/1/likes y
+     * /posts/1.
+     */
+    public void invalidate(String path) {
+        version.incrementAndGet();
+        String prefix = path.endsWith("/") && path.length() > 1 ? path.substring(0, path.length() - 1) : path;
+        while (!prefix.isEmpty()) {
+            Set<Key> keys = keysByPath.get(prefix);
+            if (keys != null) {
+                invalidate(keys);
+            }
+            prefix = prefix.substring(0, prefix.lastIndexOf('/'));
+        }
+    }
+
+    /**
+     * Borra, para todos los usuarios, las entradas de prefix y de todo lo que
+     * está debajo: POST /users/1/following/bulk con destino /users/** borra cada
+     * /users/{id}, porque cambia perfiles que su path no nombra.
+     */
+    public void invalidateTree(String prefix) {
+        version.incrementAndGet();
+        String base = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        for (Map.Entry<String, Set<Key>> entry : keysByPath.entrySet()) {
+            if (entry.getKey().equals(base) || entry.getKey().startsWith(base + "/")) {
+                invalidate(entry.getValue());
+            }
+        }
+    }
+
+    private void invalidate(Set<Key> keys) {
+        for (Key key : keys) {
+            CachedResponse cached = entries.get(key);
+            if (cached != null && remove(key, cached)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean remove(Key key, CachedResponse cached) {
+        if (!entries.remove(key, cached)) {
+            return false;
+        }
+        bytes.addAndGet(-cached.weight());
+        keysByPath.computeIfPresent(key.path(), (path, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+        return true;
+    }
+
+    // Un solo hilo a la vez; deja un 10 % de margen para no repetirlo en cada put
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = clock.getAsLong();
+            int removed = 0;
+            List<Map.Entry<Key, CachedResponse>> live = new ArrayList<>(entries.size());
+            for (Map.Entry<Key, CachedResponse> entry : entries.entrySet()) {
+                if (now >= entry.getValue().staleUntil()) {
+                    if (remove(entry.getKey(), entry.getValue())) {
+                        removed++;
+                    }
+                } else {
+                    live.add(entry);
+                }
+            }
+            long target = maxBytes - maxBytes / 10;
+            if (bytes.get() > target) {
+                live.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+                for (int i = 0; i < live.size() && bytes.get() > target; i++) {
+                    if (remove(live.get(i).getKey(), live.get(i).getValue())) {
+                        removed++;
+                    }
+                }
+            }
+            evictions.increment(removed);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private Freshness freshness(String cacheControl, boolean perUser, long now) {
+        if (!StringUtils.hasText(cacheControl)) {
+            return new Freshness(now + defaultTtlMillis, now + defaultTtlMillis + defaultStaleMillis);
+        }
+        long ttl = -1;
+        long sharedTtl = -1;
+        long stale = defaultStaleMillis;
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = directive.trim().split("=", 2);
+            String name = parts[0].trim();
+            switch (name) {
+                case "no-store", "no-cache" -> {
+                    return null;
+                }
+                case "private" -> {
+                    if (!perUser) {
+                        return null;
+                    }
+                }
+                case "max-age" -> ttl = seconds(parts);
+                case "s-maxage" -> sharedTtl = seconds(parts);
+                case "stale-while-revalidate" -> stale = Math.max(0, seconds(parts));
+                case "must-revalidate", "proxy-revalidate" -> stale = 0;
+                default -> {
+                }
+            }
+        }
+        long freshMillis = sharedTtl >= 0 ? sharedTtl : ttl >= 0 ? ttl : defaultTtlMillis;
+        return new Freshness(now + freshMillis, now + freshMillis + stale);
+    }
+
+    // Segundos de una directiva en ms; -1 si falta o no es un número
+    private static long seconds(String[] parts) {
+        if (parts.length < 2) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(parts[1].trim().replace("\"", "")) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Counter result(MeterRegistry registry, String result, String description) {
+        return Counter.builder("gateway.response.cache")
+                .description(description)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private record Freshness(long freshUntil, long staleUntil) {
+    }
+
+    /**
+     * route: id de la ruta; variant: valores de las cabeceras por las que
+     * varía (X-User-Uid por defecto).
+     */
+    public record Key(String route, String path, String query, String variant) {
+    }
+
+    public static final class CachedResponse {
+
+        private final HttpStatusCode status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final long storedAt;
+        private final long freshUntil;
+        private final long staleUntil;
+        private final int weight;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+        private volatile long lastAccess;
+
+        CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body, long storedAt,
+                       long freshUntil, long staleUntil) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.storedAt = storedAt;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+            this.lastAccess = storedAt;
+            int headerBytes = 0;
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                headerBytes += header.getKey().length() + header.getValue().stream().mapToInt(String::length).sum();
+            }
+            this.weight = ENTRY_OVERHEAD + body.length + 2 * headerBytes;
+        }
+
+        public HttpStatusCode status() {
+            return status;
+        }
+
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        public byte[] body() {
+            return body;
+        }
+
+        public String etag() {
+            return headers.getETag();
+        }
+
+        public long ageSeconds(long now) {
+            return Math.max(0, (now - storedAt) / 1000);
+        }
+
+        public boolean isFresh(long now) {
+            return now < freshUntil;
+        }
+
+        long staleUntil() {
+            return staleUntil;
+        }
+
+        int weight() {
+            return weight;
+        }
+
+        /**
+         * true para el único llamador que debe revalidar; los demás siguen
+         * sirviendo la entrada vencida.
+         */
+        public boolean startRevalidation() {
+            return revalidating.compareAndSet(false, true);
+        }
+
+        public void endRevalidation() {
+            revalidating.set(false);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.api_gateway.config;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Filtro de ruta "ResponseCache": guarda en ResponseCache las respuestas GET
+ * de los paths indicados y las sirve sin ir al backend.
+ *
+ *   filters:
+ *     - ResponseCache=/users/{id}
+ *
+ * La clave es ruta + path + query + las cabeceras de gateway.response-cache.vary
+ * (X-User-Uid, puesta por JwtAuthenticationFilter: cada usuario tiene sus
+ * propias entradas). Una entrada vencida dentro de su ventana stale se
+ * sirve igual y se revalida en segundo plano, con If-None-Match si el backend
+ * mandó ETag. Un If-None-Match del cliente que coincide con el ETag guardado
+ * recibe 304. Las escrituras (POST, PUT, PATCH, DELETE) que pasan por la ruta
+ * invalidan el recurso y los que lo contienen, para todos los usuarios.
+ *
+ * Si una escritura cambia documentos que su path no nombra, se agregan
+ * reglas "patrón -> destino" en invalidate (solo con la forma args):
+ *
+ *   - name: ResponseCache
+ *     args:
+ *       paths: /users/{id}
+ *       invalidate:
+ *         - /users/** -> /users/{X-User-Uid}
+ *
+ * {Cabecera} en el destino toma el valor de esa cabecera de la solicitud (la
+ * regla se salta si falta) y un destino terminado en /** borra todo lo que
+ * está debajo.
+ *
+ * Cabecera X-Cache en la respuesta: HIT, STALE, MISS o BYPASS (el cliente
+ * pidió no-cache o no-store).
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    // Antes de NettyWriteResponseFilter, que escribe el cuerpo del backend en
+    // la respuesta que este filtro decora para capturarlo
+    public static final int ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCacheGatewayFilterFactory.class);
+    private static final String CACHE_STATUS = "X-Cache";
+    private static final String USER_UID = "X-User-Uid";
+    // Cabeceras de la solicitud original que se repiten al revalidar
+    private static final List<String> FORWARDED_HEADERS = List.of(
+            HttpHeaders.AUTHORIZATION, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_LANGUAGE, USER_UID, "X-User-Email");
+    private static final Pattern HEADER_PLACEHOLDER = Pattern.compile("\\{([^}]+)}");
+
+    private final ResponseCache cache;
+    private final WebClient client;
+    private final List<String> vary;
+    private final boolean perUser;
+    private final int maxEntryBytes;
+    private final Duration revalidateTimeout;
+
+    public ResponseCacheGatewayFilterFactory(
+            ResponseCache cache,
+            WebClient.Builder webClientBuilder,
+            @Value("${gateway.response-cache.vary:X-User-Uid}") String[] vary,
+            @Value("${gateway.response-cache.max-entry-bytes:262144}") int maxEntryBytes,
+            @Value("${gateway.response-cache.revalidate-timeout-ms:5000}") long revalidateTimeoutMs
+    ) {
+        super(Config.class);
+        this.cache = cache;
+        this.client = webClientBuilder
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxEntryBytes))
+                .build();
+        this.vary = Arrays.stream(vary).map(String::trim).filter(name -> !name.isEmpty()).toList();
+        this.perUser = this.vary.stream().anyMatch(USER_UID::equalsIgnoreCase);
+        this.maxEntryBytes = maxEntryBytes;
+        this.revalidateTimeout = Duration.ofMillis(revalidateTimeoutMs);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("paths");
+    }
+
+    @Override
+    public ShortcutType shortcutType() {
+        return ShortcutType.GATHER_LIST;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        List<PathPattern> patterns = config.getPaths().stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+        List<Invalidation> invalidations = config.getInvalidate().stream()
+                .map(Invalidation::parse)
+                .toList();
+
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            HttpMethod method = request.getMethod();
+            PathContainer path = request.getPath().pathWithinApplication();
+
+            if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)
+                    && !HttpMethod.OPTIONS.equals(method)) {
+                // Al llegar y al terminar: un GET en paralelo pudo volver a
+                // guardar la versión anterior mientras el backend escribía
+                invalidate(request, path, invalidations);
+                return chain.filter(exchange).doFinally(signal -> invalidate(request, path, invalidations));
+            }
+            if (!HttpMethod.GET.equals(method) || patterns.stream().noneMatch(pattern -> pattern.matches(path))) {
+                return chain.filter(exchange);
+            }
+
+            ResponseCache.Key key = key(exchange, path.value());
+            String cacheControl = request.getHeaders().getCacheControl();
+            boolean noStore = cacheControl != null && cacheControl.contains("no-store");
+            boolean noCache = noStore || cacheControl != null && cacheControl.contains("no-cache");
+
+            if (!noCache) {
+                ResponseCache.CachedResponse cached = cache.get(key);
+                if (cached != null) {
+                    if (cached.isFresh(System.currentTimeMillis())) {
+                        return serve(exchange, cached, "HIT");
+                    }
+                    revalidate(exchange, key, cached);
+                    return serve(exchange, cached, "STALE");
+                }
+            }
+
+            exchange.getResponse().getHeaders().set(CACHE_STATUS, noCache ? "BYPASS" : "MISS");
+            if (noStore) {
+                return chain.filter(exchange);
+            }
+            long version = cache.version();
+            return chain.filter(exchange.mutate()
+                    .response(new CapturingResponse(exchange.getResponse(), key, version))
+                    .build());
+        }, ORDER);
+    }
+
+    private void invalidate(ServerHttpRequest request, PathContainer path, List<Invalidation> invalidations) {
+        cache.invalidate(path.value());
+        for (Invalidation invalidation : invalidations) {
+            if (!invalidation.write().matches(path)) {
+                continue;
+            }
+            String target = resolve(invalidation.target(), request.getHeaders());
+            if (target == null) {
+                continue;
+            }
+            if (target.endsWith("/**")) {
+                cache.invalidateTree(target.substring(0, target.length() - 3));
+            } else {
+                cache.invalidate(target);
+            }
+        }
+    }
+
+    // null si falta alguna cabecera: sin X-User-Uid no hay perfil propio que borrar
+    private static String resolve(String target, HttpHeaders headers) {
+        Matcher matcher = HEADER_PLACEHOLDER.matcher(target);
+        StringBuilder resolved = new StringBuilder();
+        while (matcher.find()) {
+            String value = headers.getFirst(matcher.group(1));
+            if (!StringUtils.hasText(value)) {
+                return null;
+            }
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(resolved);
+        return resolved.toString();
+    }
+
+    private ResponseCache.Key key(ServerWebExchange exchange, String path) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        StringJoiner variant = new StringJoiner("\n");
+        for (String name : vary) {
+            String value = headers.getFirst(name);
+            variant.add(value == null ? "" : value);
+        }
+        return new ResponseCache.Key(route == null ? "" : route.getId(), path,
+                exchange.getRequest().getURI().getRawQuery(), variant.toString());
+    }
+
+    private Mono<Void> serve(ServerWebExchange exchange, ResponseCache.CachedResponse cached, String state) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.headers());
+        headers.set(HttpHeaders.AGE, Long.toString(cached.ageSeconds(System.currentTimeMillis())));
+        headers.set(CACHE_STATUS, state);
+        if (notModified(exchange.getRequest().getHeaders(), cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(cached.status());
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body())));
+    }
+
+    // Comparación débil, como pide RFC 9110 para If-None-Match
+    private static boolean notModified(HttpHeaders request, String etag) {
+        if (etag == null || !request.containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            return false;
+        }
+        try {
+            String stored = weak(etag);
+            return request.getIfNoneMatch().stream().anyMatch(value -> value.equals("*") || weak(value).equals(stored));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String weak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Pide la entrada de nuevo al backend de la ruta sin que el cliente
+     * espere; solo una revalidación a la vez por entrada. Un 304 renueva la
+     * frescura, un 200 la reemplaza y un 4xx la borra; ante otros errores se
+     * sigue sirviendo hasta que venza la ventana stale.
+     */
+    private void revalidate(ServerWebExchange exchange, ResponseCache.Key key, ResponseCache.CachedResponse cached) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (route == null || !isHttp(route.getUri()) || !cached.startRevalidation()) {
+            return;
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        URI target = UriComponentsBuilder.fromUri(route.getUri())
+                .replacePath(request.getURI().getRawPath())
+                .replaceQuery(request.getURI().getRawQuery())
+                .build(true)
+                .toUri();
+        long version = cache.version();
+
+        client.get()
+                .uri(target)
+                .headers(headers -> {
+                    for (String name : FORWARDED_HEADERS) {
+                        List<String> values = request.getHeaders().get(name);
+                        if (values != null) {
+                            headers.put(name, values);
+                        }
+                    }
+                    if (cached.etag() != null) {
+                        headers.setIfNoneMatch(cached.etag());
+                    }
+                })
+                .exchangeToMono(response -> {
+                    HttpStatusCode status = response.statusCode();
+                    HttpHeaders headers = response.headers().asHttpHeaders();
+                    if (status.value() == HttpStatus.NOT_MODIFIED.value()) {
+                        store(key, cache.revalidated(cached, headers, perUser), version);
+                        return response.releaseBody();
+                    }
+                    if (status.value() == HttpStatus.OK.value()) {
+                        return response.bodyToMono(byte[].class)
+                                .defaultIfEmpty(new byte[0])
+                                .doOnNext(body -> store(key, cache.toEntry(status, headers, body, perUser), version))
+                                .then();
+                    }
+                    if (status.is4xxClientError()) {
+                        cache.remove(key);
+                    }
+                    return response.releaseBody();
+                })
+                .timeout(revalidateTimeout)
+                .doFinally(signal -> cached.endRevalidation())
+                .subscribe(null, error -> log.debug("No se pudo revalidar {}: {}", target, error.toString()));
+    }
+
+    // Si la respuesta nueva ya no se puede guardar, la anterior tampoco sirve
+    private void store(ResponseCache.Key key, ResponseCache.CachedResponse entry, long version) {
+        if (entry == null) {
+            cache.remove(key);
+        } else {
+            cache.put(key, entry, version);
+        }
+    }
+
+    private static boolean isHttp(URI uri) {
+        return "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    public static class Config {
+
+        private List<String> paths = new ArrayList<>();
+        private List<String> invalidate = new ArrayList<>();
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+
+        public List<String> getInvalidate() {
+            return invalidate;
+        }
+
+        public void setInvalidate(List<String> invalidate) {
+            this.invalidate = invalidate;
+        }
+    }
+
+    /**
+     * Regla de Config.invalidate: una escritura cuyo path coincide con write
+     * invalida también target.
+     */
+    private record Invalidation(PathPattern write, String target) {
+
+        static Invalidation parse(String rule) {
+            int arrow = rule.indexOf("->");
+            if (arrow < 0) {
+                throw new IllegalArgumentException("Regla de invalidación sin '->': " + rule);
+            }
+            return new Invalidation(PathPatternParser.defaultInstance.parse(rule.substring(0, arrow).trim()),
+                    rule.substring(arrow + 2).trim());
+        }
+    }
+
+    /**
+     * Pasa el cuerpo del backend al cliente tal cual y, si es un 200 que
+     * entra en max-entry-bytes, guarda una copia al terminar.
+     */
+    private final class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final ResponseCache.Key key;
+        private final long version;
+
+        CapturingResponse(ServerHttpResponse delegate, ResponseCache.Key key, long version) {
+            super(delegate);
+            this.key = key;
+            this.version = version;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = getStatusCode();
+            long contentLength = getHeaders().getContentLength();
+            if (status == null || status.value() != HttpStatus.OK.value() || contentLength > maxEntryBytes) {
+                return super.writeWith(body);
+            }
+            BodyCapture capture = new BodyCapture(contentLength);
+            return super.writeWith(Flux.from(body)
+                    .doOnNext(capture::append)
+                    .doOnComplete(() -> {
+                        byte[] bytes = capture.bytes();
+                        if (bytes != null) {
+                            store(key, cache.toEntry(status, getHeaders(), bytes, perUser), version);
+                        }
+                    }));
+        }
+    }
+
+    // Copia de los buffers a medida que pasan; se abandona al pasar el límite
+    private final class BodyCapture {
+
+        private byte[] bytes;
+        private int length;
+
+        BodyCapture(long contentLength) {
+            this.bytes = new byte[contentLength > 0 ? (int) contentLength : 8192];
+        }
+
+        void append(DataBuffer buffer) {
+            if (bytes == null) {
+                return;
+            }
+            int readable = buffer.readableByteCount();
+            if (length + readable > maxEntryBytes) {
+                bytes = null;
+                return;
+            }
+            if (length + readable > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(maxEntryBytes, Math.max(length + readable, bytes.length * 2)));
+            }
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer byteBuffer = iterator.next();
+                    int remaining = byteBuffer.remaining();
+                    byteBuffer.get(bytes, length, remaining);
+                    length += remaining;
+                }
+            }
+        }
+
+        byte[] bytes() {
+            return bytes == null ? null : Arrays.copyOf(bytes, length);
+        }
+    }
+}
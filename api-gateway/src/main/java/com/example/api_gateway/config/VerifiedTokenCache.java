@@ -0,0 +1,169 @@
+package com.example.api_gateway.config;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tokens ya verificados, para que las solicitudes repetidas de una misma
+ * sesión no vuelvan a verificar la firma ni a parsear los claims.
+ *
+ * La clave es el SHA-256 del token (el token en sí no se guarda) y el valor,
+ * el uid, el email y el vencimiento. Una entrada se usa hasta el exp del
+ * token, como mucho max-ttl-seconds; vencida, se descarta al leerla y el
+ * token vuelve a la verificación completa, que lo rechaza. Las lecturas no
+ * toman locks (ConcurrentHashMap). Al pasar de max-entries se descartan las
+ * vencidas y, si no alcanza, las más próximas a vencer. Los tokens inválidos
+ * no se guardan.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Map<TokenHash, VerifiedToken> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final int maxEntries;
+    private final long maxTtlMillis;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    @Autowired
+    public VerifiedTokenCache(
+            @Value("${jwt.cache.max-entries:10000}") int maxEntries,
+            @Value("${jwt.cache.max-ttl-seconds:300}") long maxTtlSeconds,
+            MeterRegistry registry
+    ) {
+        this(maxEntries, maxTtlSeconds, registry, System::currentTimeMillis);
+    }
+
+    VerifiedTokenCache(int maxEntries, long maxTtlSeconds, MeterRegistry registry, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("jwt.cache.max-entries debe ser positivo");
+        }
+        this.maxEntries = maxEntries;
+        this.maxTtlMillis = maxTtlSeconds * 1000;
+        this.clock = clock;
+        this.hits = Counter.builder("gateway.jwt.cache")
+                .description("Tokens resueltos desde la caché, sin verificar la firma")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("gateway.jwt.cache")
+                .description("Tokens que pasaron por la verificación completa")
+                .tag("result", "miss")
+                .register(registry);
+        this.evictions = Counter.builder("gateway.jwt.cache.evictions")
+                .description("Entradas descartadas por el límite de tamaño")
+                .register(registry);
+        Gauge.builder("gateway.jwt.cache.size", entries, Map::size)
+                .description("Tokens verificados en memoria")
+                .register(registry);
+    }
+
+    /**
+     * Datos del token si ya se verificó y no venció; null si hay que
+     * verificarlo.
+     */
+    public VerifiedToken get(String token) {
+        TokenHash key = TokenHash.of(token);
+        VerifiedToken verified = entries.get(key);
+        if (verified != null && verified.expiresAtMillis() > clock.getAsLong()) {
+            hits.increment();
+            return verified;
+        }
+        if (verified != null) {
+            entries.remove(key, verified);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Guarda un token recién verificado; expiresAtMillis es su exp, o null si
+     * no tiene.
+     */
+    public VerifiedToken put(String token, String uid, String email, Long expiresAtMillis) {
+        long now = clock.getAsLong();
+        long expiresAt = Math.min(now + maxTtlMillis, expiresAtMillis == null ? Long.MAX_VALUE : expiresAtMillis);
+        VerifiedToken verified = new VerifiedToken(uid, email, expiresAt);
+        if (expiresAt > now) {
+            entries.put(TokenHash.of(token), verified);
+            if (entries.size() > maxEntries) {
+                evict(now);
+            }
+        }
+        return verified;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Un solo hilo a la vez; deja un 10 % de margen para no repetirlo en cada put
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int removed = 0;
+            List<Map.Entry<TokenHash, VerifiedToken>> live = new ArrayList<>(entries.size());
+            for (Map.Entry<TokenHash, VerifiedToken> entry : entries.entrySet()) {
+                if (entry.getValue().expiresAtMillis() <= now) {
+                    if (entries.remove(entry.getKey(), entry.getValue())) {
+                        removed++;
+                    }
+                } else {
+                    live.add(entry);
+                }
+            }
+            int target = maxEntries - maxEntries / 10;
+            if (entries.size() > target) {
+                live.sort(Comparator.comparingLong(entry -> entry.getValue().expiresAtMillis()));
+                for (int i = 0; i < live.size() && entries.size() > target; i++) {
+                    if (entries.remove(live.get(i).getKey(), live.get(i).getValue())) {
+                        removed++;
+                    }
+                }
+            }
+            evictions.increment(removed);
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public record VerifiedToken(String uid, String email, long expiresAtMillis) {
+    }
+
+    private record TokenHash(long a, long b, long c, long d) {
+
+        static TokenHash of(String token) {
+            MessageDigest digest = SHA256.get();
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+            return new TokenHash(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+    }
+}
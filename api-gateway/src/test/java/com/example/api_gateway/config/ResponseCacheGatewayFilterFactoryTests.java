@@ -0,0 +1,90 @@
+package com.example.api_gateway.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+class ResponseCacheGatewayFilterFactoryTests {
+
+	private final ResponseCache cache = new ResponseCache(1_000_000, 10_000, 10, 30, new SimpleMeterRegistry(),
+			System::currentTimeMillis);
+	private final ResponseCacheGatewayFilterFactory factory = new ResponseCacheGatewayFilterFactory(
+			cache, WebClient.builder(), new String[] { "X-User-Uid" }, 10_000, 5_000);
+
+	@Test
+	void followInvalidatesTheCallersOwnProfile() {
+		GatewayFilter filter = usersFilter();
+		for (String uid : new String[] { "me", "target", "other" }) {
+			store("/users/" + uid);
+		}
+
+		write(filter, HttpMethod.POST, "/users/target/followers", "me");
+
+		assertThat(isCached("/users/target")).isFalse();
+		assertThat(isCached("/users/me")).isFalse();
+		assertThat(isCached("/users/other")).isTrue();
+
+		store("/users/me");
+		write(filter, HttpMethod.DELETE, "/users/other/followers", "me");
+
+		assertThat(isCached("/users/me")).isFalse();
+		assertThat(isCached("/users/other")).isFalse();
+	}
+
+	@Test
+	void bulkFollowInvalidatesEveryProfile() {
+		GatewayFilter filter = usersFilter();
+		for (String uid : new String[] { "me", "a", "b" }) {
+			store("/users/" + uid);
+		}
+		store("/posts/1");
+
+		write(filter, HttpMethod.POST, "/users/me/following/bulk", "me");
+
+		assertThat(isCached("/users/me")).isFalse();
+		assertThat(isCached("/users/a")).isFalse();
+		assertThat(isCached("/users/b")).isFalse();
+		assertThat(isCached("/posts/1")).isTrue();
+	}
+
+	// Igual que la ruta users-service de application.yml
+	private GatewayFilter usersFilter() {
+		ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+		config.setPaths(List.of("/users/{id:(?!lookup$).+}"));
+		config.setInvalidate(List.of(
+				"/users/** -> /users/{X-User-Uid}",
+				"/users/*/following/bulk -> /users/**"));
+		return factory.apply(config);
+	}
+
+	private void write(GatewayFilter filter, HttpMethod method, String path, String uid) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(
+				MockServerHttpRequest.method(method, path).header("X-User-Uid", uid));
+		filter.filter(exchange, ignored -> Mono.empty()).block();
+	}
+
+	// Entrada vista por un tercer usuario: la invalidación alcanza a todos
+	private void store(String path) {
+		cache.put(key(path), cache.toEntry(HttpStatus.OK, new HttpHeaders(), new byte[10], true), cache.version());
+	}
+
+	private boolean isCached(String path) {
+		return cache.get(key(path)) != null;
+	}
+
+	private static ResponseCache.Key key(String path) {
+		return new ResponseCache.Key("", path, null, "viewer");
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.api_gateway.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResponseCacheTests {
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void servesStaleEntryUntilTheWindowCloses() {
+		ResponseCache cache = new ResponseCache(1_000_000, 10_000, 10, 30, registry, now::get);
+		ResponseCache.Key key = key("/posts/1", "uid-1");
+
+		cache.put(key, cache.toEntry(HttpStatus.OK, json(null), new byte[100], false), cache.version());
+
+		assertThat(cache.get(key).isFresh(now.get())).isTrue();
+		now.addAndGet(10_000);
+		assertThat(cache.get(key).isFresh(now.get())).isFalse();
+		now.addAndGet(30_000);
+		assertThat(cache.get(key)).isNull();
+		assertThat(cache.size()).isZero();
+		assertThat(cache.bytes()).isZero();
+		assertThat(registry.get("gateway.response.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+		assertThat(registry.get("gateway.response.cache").tag("result", "stale").counter().count()).isEqualTo(1);
+		assertThat(registry.get("gateway.response.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void honorsUpstreamCacheControl() {
+		ResponseCache cache = new ResponseCache(1_000_000, 10_000, 10, 30, registry, now::get);
+		ResponseCache.Key key = key("/users/1", "uid-1");
+
+		assertThat(cache.toEntry(HttpStatus.OK, json("no-store"), new byte[10], true)).isNull();
+		assertThat(cache.toEntry(HttpStatus.OK, json("private, max-age=60"), new byte[10], false)).isNull();
+		assertThat(cache.toEntry(HttpStatus.NOT_FOUND, json(null), new byte[10], true)).isNull();
+		assertThat(cache.toEntry(HttpStatus.OK, json(null), new byte[10_001], true)).isNull();
+
+		cache.put(key, cache.toEntry(HttpStatus.OK, json("private, max-age=5, stale-while-revalidate=5"),
+				new byte[10], true), cache.version());
+		now.addAndGet(5_000);
+		assertThat(cache.get(key).isFresh(now.get())).isFalse();
+		now.addAndGet(5_000);
+		assertThat(cache.get(key)).isNull();
+	}
+
+	@Test
+	void writeInvalidatesResourceForEveryUser() {
+		ResponseCache cache = new ResponseCache(1_000_000, 10_000, 10, 30, registry, now::get);
+		long version = cache.version();
+		for (String uid : new String[] { "uid-1", "uid-2" }) {
+			cache.put(key("/posts/1", uid), cache.toEntry(HttpStatus.OK, json(null), new byte[10], true), version);
+			cache.put(key("/posts/2", uid), cache.toEntry(HttpStatus.OK, json(null), new byte[10], true), version);
+		}
+
+		cache.invalidate("/posts/1/likes");
+
+		assertThat(cache.get(key("/posts/1", "uid-1"))).isNull();
+		assertThat(cache.get(key("/posts/1", "uid-2"))).isNull();
+		assertThat(cache.get(key("/posts/2", "uid-1"))).isNotNull();
+		assertThat(cache.size()).isEqualTo(2);
+
+		// Leída antes de la escritura: no se guarda
+		cache.put(key("/posts/1", "uid-1"), cache.toEntry(HttpStatus.OK, json(null), new byte[10], true), version);
+		assertThat(cache.get(key("/posts/1", "uid-1"))).isNull();
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedWhenOverBudget() {
+		ResponseCache cache = new ResponseCache(5_000, 10_000, 10, 30, registry, now::get);
+		for (int i = 0; i < 3; i++) {
+			cache.put(key("/users/" + i, "uid"), cache.toEntry(HttpStatus.OK, json(null), new byte[1_000], true),
+					cache.version());
+			now.addAndGet(1_000);
+		}
+		cache.get(key("/users/0", "uid"));
+		now.addAndGet(1_000);
+
+		cache.put(key("/users/3", "uid"), cache.toEntry(HttpStatus.OK, json(null), new byte[1_000], true),
+				cache.version());
+
+		assertThat(cache.size()).isEqualTo(3);
+		assertThat(cache.bytes()).isLessThanOrEqualTo(4_500);
+		assertThat(cache.get(key("/users/1", "uid"))).isNull();
+		assertThat(cache.get(key("/users/0", "uid"))).isNotNull();
+		assertThat(cache.get(key("/users/3", "uid"))).isNotNull();
+	}
+
+	private static ResponseCache.Key key(String path, String uid) {
+		return new ResponseCache.Key("route", path, null, uid);
+	}
+
+	private static HttpHeaders json(String cacheControl) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+		if (cacheControl != null) {
+			headers.setCacheControl(cacheControl);
+		}
+		return headers;
+	}
+}
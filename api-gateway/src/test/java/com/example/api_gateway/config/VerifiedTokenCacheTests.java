@@ -0,0 +1,58 @@
+package com.example.api_gateway.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VerifiedTokenCacheTests {
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void servesVerifiedTokenUntilItsExpiry() {
+		VerifiedTokenCache cache = new VerifiedTokenCache(100, 300, registry, now::get);
+
+		assertThat(cache.get("a.b.c")).isNull();
+		cache.put("a.b.c", "uid-1", "a@b.c", now.get() + 60_000);
+
+		assertThat(cache.get("a.b.c")).isEqualTo(new VerifiedTokenCache.VerifiedToken("uid-1", "a@b.c", now.get() + 60_000));
+		assertThat(cache.get("a.b.x")).isNull();
+
+		now.addAndGet(60_000);
+		assertThat(cache.get("a.b.c")).isNull();
+		assertThat(cache.size()).isZero();
+		assertThat(registry.get("gateway.jwt.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+		assertThat(registry.get("gateway.jwt.cache").tag("result", "miss").counter().count()).isEqualTo(3);
+	}
+
+	@Test
+	void capsEntriesWithoutExpiryAtMaxTtl() {
+		VerifiedTokenCache cache = new VerifiedTokenCache(100, 300, registry, now::get);
+
+		cache.put("token", "uid-1", null, null);
+
+		now.addAndGet(299_000);
+		assertThat(cache.get("token")).isNotNull();
+		now.addAndGet(1_000);
+		assertThat(cache.get("token")).isNull();
+	}
+
+	@Test
+	void evictsSoonestToExpireWhenFull() {
+		VerifiedTokenCache cache = new VerifiedTokenCache(10, 300, registry, now::get);
+
+		for (int i = 0; i < 11; i++) {
+			cache.put("token-" + i, "uid-" + i, null, now.get() + 1_000 * (i + 1));
+		}
+
+		assertThat(cache.size()).isEqualTo(9);
+		assertThat(cache.get("token-0")).isNull();
+		assertThat(cache.get("token-1")).isNull();
+		assertThat(cache.get("token-10")).isNotNull();
+	}
+}
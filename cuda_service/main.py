@@ -29,11 +29,22 @@ app.add_middleware(
         "X-Filter-Type",
         "X-Kernel-Size",
         "X-GPU-Time-ms",
+        "X-Blocks-X",
+        "X-Blocks-Y",
+        "X-Threads-X",
+        "X-Threads-Y",
+        "X-Stage-Times-ms",
     ],
 )
 
 app.include_router(convolution.router)
 
+
+@app.get("/health")
+def health():
+    # Usado por image-service para el chequeo activo de workers
+    return {"status": "ok"}
+
 if __name__ == "__main__":
     import uvicorn
 
@@ -5,7 +5,7 @@ from fastapi import APIRouter, UploadFile, File, Form
 from fastapi.responses import Response
 from fastapi.responses import JSONResponse
 
-from services.convolution_service import process_convolution
+from services.convolution_service import process_convolution, process_pipeline
 
 router = APIRouter(
     prefix="/api",
@@ -35,5 +35,35 @@ async def convolution_endpoint(
         "X-Filter-Type": result["filter"]["type"],
         "X-Kernel-Size": str(result["filter"]["kernel_size"]),
         "X-GPU-Time-ms": str(result["gpu_info"]["gpu_time_ms"]),
+        "X-Blocks-X": str(result["cuda_config"]["blocks_x"]),
+        "X-Blocks-Y": str(result["cuda_config"]["blocks_y"]),
+        "X-Threads-X": str(result["cuda_config"]["threads_x"]),
+        "X-Threads-Y": str(result["cuda_config"]["threads_y"]),
     }
     return Response(content=img_bytes, media_type="image/png", headers=headers)
+
+
+@router.post("/pipeline")
+async def pipeline_endpoint(
+    image: UploadFile = File(...),
+    stages: str = Form(...),
+):
+    # Varias etapas seguidas; solo se devuelve la imagen final
+    result = await process_pipeline(image=image, stages_spec=stages)
+
+    stage_times = result["stage_times_ms"]
+    total_ms = sum(t for t in stage_times if t is not None)
+    launch = result["launch"]
+
+    headers = {
+        "X-Width": str(result["width"]),
+        "X-Height": str(result["height"]),
+        "X-Filter-Type": "+".join(f for f, _ in result["stages"]),
+        "X-GPU-Time-ms": str(total_ms),
+        "X-Stage-Times-ms": ",".join(str(t) for t in stage_times),
+        "X-Blocks-X": str(launch["blocks_x"]),
+        "X-Blocks-Y": str(launch["blocks_y"]),
+        "X-Threads-X": str(launch["threads_x"]),
+        "X-Threads-Y": str(launch["threads_y"]),
+    }
+    return Response(content=result["png"], media_type="image/png", headers=headers)
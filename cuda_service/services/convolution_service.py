@@ -294,3 +294,135 @@ async def process_convolution(
             "format": "PNG" if processed_image_b64 else None
         }
     }
+
+
+# ---------------------------------------------------------------------
+#  PIPELINE: varias etapas sobre la misma imagen en memoria
+# ---------------------------------------------------------------------
+
+MAX_PIPELINE_STAGES = 8
+
+
+def parse_stages(spec: str) -> list[tuple[str, int]]:
+    """
+    Lee "gaussian:5,sobel:3,ups:1" (formato de FilterStage en image-service).
+    """
+    valid_filters = {"gaussian", "sobel", "emboss", "mean", "ups", "oil_paint"}
+    stages = []
+    for part in (spec or "").split(","):
+        pieces = part.strip().split(":")
+        filter_type = pieces[0].strip().lower()
+        try:
+            kernel_size = int(pieces[1]) if len(pieces) == 2 else 1
+        except ValueError:
+            kernel_size = None
+        if filter_type not in valid_filters or kernel_size is None or len(pieces) > 2:
+            raise HTTPException(status_code=400, detail=f"Etapa inválida: '{part.strip()}'")
+        stages.append((filter_type, kernel_size))
+    if not stages or len(stages) > MAX_PIPELINE_STAGES:
+        raise HTTPException(
+            status_code=400,
+            detail=f"stages debe tener entre 1 y {MAX_PIPELINE_STAGES} etapas"
+        )
+    return stages
+
+
+def _apply_stage(img_rgb_u8: np.ndarray, filter_type: str, kernel_size: int, launch: dict):
+    """
+    Aplica una etapa a una imagen RGB uint8 y devuelve (salida uint8, ms de GPU).
+    Sobel y emboss devuelven escala de grises, igual que en process_convolution.
+    """
+    if filter_type in {"gaussian", "sobel", "emboss"}:
+        try:
+            kernel_info = build_kernel(filter_type, kernel_size, allow_custom=True)
+        except ValueError as e:
+            raise HTTPException(status_code=400, detail=str(e))
+
+    if filter_type in {"sobel", "emboss"}:
+        gray_f32 = np.array(Image.fromarray(img_rgb_u8).convert("L"), dtype=np.float32)
+
+    if filter_type == "sobel":
+        return run_sobel_gpu(gray_u8=gray_f32.astype(np.uint8), kernel_size=kernel_size, **launch)
+
+    if filter_type == "emboss":
+        out_f32, gpu_time_ms = run_convolution_gray_gpu(
+            gray_f32=gray_f32,
+            kernel_f32=kernel_info["K"].astype(np.float32),
+            **launch,
+        )
+        return np.clip(out_f32 + 128.0, 0, 255).astype(np.uint8), gpu_time_ms
+
+    if filter_type == "gaussian":
+        out_rgb_f32, gpu_time_ms = run_convolution_rgb_gpu(
+            img_rgb_f32=img_rgb_u8.astype(np.float32),
+            kernel_f32=kernel_info["K"].astype(np.float32),
+            **launch,
+        )
+        return np.clip(out_rgb_f32, 0, 255).astype(np.uint8), gpu_time_ms
+
+    if filter_type == "mean":
+        return run_mean_rgb_gpu(img_rgb_u8=img_rgb_u8, kernel_size=kernel_size, **launch)
+
+    if filter_type == "oil_paint":
+        return run_oil_paint_gpu(img_rgb_u8=img_rgb_u8, kernel_size=kernel_size, **launch)
+
+    # ups + marco
+    out_rgb_u8, gpu_time_ms = run_ups_filter_gpu(img_rgb_u8=img_rgb_u8, **launch)
+    if _ups_frame_base is not None:
+        h, w, _ = out_rgb_u8.shape
+        base_rgba = Image.fromarray(out_rgb_u8).convert("RGBA")
+        frame_resized = _ups_frame_base.resize((w, h), Image.LANCZOS)
+        out_rgb_u8 = np.array(Image.alpha_composite(base_rgba, frame_resized).convert("RGB")).astype(np.uint8)
+    return out_rgb_u8, gpu_time_ms
+
+
+async def process_pipeline(image: UploadFile, stages_spec: str):
+    """
+    Aplica las etapas en orden. La imagen se decodifica una vez y se codifica
+    a PNG una vez al final; entre etapas solo pasa el arreglo en memoria.
+    """
+    stages = parse_stages(stages_spec)
+
+    try:
+        contents = await image.read()
+        img_rgb_u8 = np.array(Image.open(BytesIO(contents)).convert("RGB")).astype(np.uint8)
+    except Exception as e:
+        raise HTTPException(status_code=400, detail=f"No se pudo leer la imagen: {e}")
+
+    height, width = img_rgb_u8.shape[:2]
+    for _, kernel_size in stages:
+        try:
+            validate_kernel_vs_image(kernel_size, width, height)
+        except ValueError as e:
+            raise HTTPException(status_code=400, detail=str(e))
+
+    threads_x = 16
+    threads_y = 16
+    launch = {
+        "threads_x": threads_x,
+        "threads_y": threads_y,
+        "blocks_x": math.ceil(width / threads_x),
+        "blocks_y": math.ceil(height / threads_y),
+    }
+
+    current = img_rgb_u8
+    stage_times = []
+    for index, (filter_type, kernel_size) in enumerate(stages):
+        out_u8, gpu_time_ms = _apply_stage(current, filter_type, kernel_size, launch)
+        stage_times.append(float(gpu_time_ms) if gpu_time_ms is not None else None)
+        if out_u8.ndim == 2 and index < len(stages) - 1:
+            # la siguiente etapa espera RGB
+            out_u8 = np.repeat(out_u8[:, :, None], 3, axis=2)
+        current = out_u8
+
+    buffer = BytesIO()
+    Image.fromarray(current).save(buffer, format="PNG")
+
+    return {
+        "png": buffer.getvalue(),
+        "width": width,
+        "height": height,
+        "stages": stages,
+        "stage_times_ms": stage_times,
+        "launch": launch,
+    }
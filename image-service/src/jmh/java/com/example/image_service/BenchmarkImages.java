@@ -0,0 +1,68 @@
+package com.example.image_service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Imágenes para los benchmarks y la prueba de carga. Son PNG de ruido RGB,
+ * que casi no se comprime, así que el archivo pesa lo pedido y el original
+ * se decodifica de verdad (dedup, variantes) como una foto.
+ */
+public final class BenchmarkImages {
+
+    // Largo del chunk IEND con el que termina todo PNG
+    public static final int IEND_LENGTH = 12;
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * PNG cuadrado de ruido de unos targetBytes (±1 %).
+     */
+    public static byte[] noisePng(long targetBytes) {
+        int side = Math.max(16, (int) Math.sqrt(targetBytes / 3.0));
+        BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        SplittableRandom random = new SplittableRandom(side);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(1 << 24);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) (targetBytes + targetBytes / 50));
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Chunk tEXt con un número, para insertar antes de IEND: la imagen es la
+     * misma pero el SHA-256 cambia, así que cada solicitud de la prueba de
+     * carga pasa por la GPU en vez de salir de la caché de resultados.
+     */
+    public static byte[] markerChunk(long marker) {
+        byte[] data = ("load\0" + marker).getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer chunk = ByteBuffer.allocate(12 + data.length);
+        chunk.putInt(data.length);
+        chunk.put("tEXt".getBytes(StandardCharsets.US_ASCII));
+        chunk.put(data);
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, 4 + data.length);
+        chunk.putInt((int) crc.getValue());
+        return chunk.array();
+    }
+
+    public static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / 1_000_000.0);
+    }
+}
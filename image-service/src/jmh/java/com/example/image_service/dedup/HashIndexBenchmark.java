@@ -0,0 +1,71 @@
+package com.example.image_service.dedup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Búsqueda del vecino más cercano en HashIndex con millones de hashes.
+ * Debe quedar muy por debajo de 1 ms por consulta, acierte o no.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HashIndexBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000000", "5000000"})
+    public int entries;
+
+    @Param({"6", "10"})
+    public int maxDistance;
+
+    private HashIndex index;
+    private long[] nearQueries;
+    private long[] missQueries;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        index = new HashIndex(entries);
+        long[] stored = new long[QUERIES];
+        for (int i = 0; i < entries; i++) {
+            long hash = random.nextLong();
+            if (i < QUERIES) {
+                stored[i] = hash;
+            }
+            index.add(Integer.toString(i), hash);
+        }
+        nearQueries = new long[QUERIES];
+        missQueries = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // copia editada: unos pocos bits distintos
+            long query = stored[i];
+            for (int flips = 1 + random.nextInt(maxDistance); flips > 0; flips--) {
+                query ^= 1L << random.nextInt(64);
+            }
+            nearQueries[i] = query;
+            missQueries[i] = random.nextLong();
+        }
+    }
+
+    @Benchmark
+    public HashIndex.Match nearDuplicate() {
+        return index.nearest(nearQueries[cursor++ & (QUERIES - 1)], maxDistance, null);
+    }
+
+    @Benchmark
+    public HashIndex.Match unseenImage() {
+        return index.nearest(missQueries[cursor++ & (QUERIES - 1)], maxDistance, null);
+    }
+}
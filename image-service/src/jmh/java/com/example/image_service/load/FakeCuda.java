@@ -0,0 +1,61 @@
+package com.example.image_service.load;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import io.netty.handler.codec.http.HttpMethod;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * cuda_service local para la prueba de carga: /health responde 200 y
+ * /api/convolucion y /api/pipeline leen y descartan el multipart y, después
+ * de latency (el tiempo de GPU simulado), devuelven el PNG de respondWith con
+ * las cabeceras X-* del servicio real.
+ */
+final class FakeCuda implements AutoCloseable {
+
+    private final DisposableServer server;
+    private volatile byte[] processedPng;
+
+    FakeCuda(Duration latency, LoopResources loops, Scheduler timer) {
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .runOn(loops)
+                .route(routes -> routes
+                        .get("/health", (request, response) -> response.status(200).send())
+                        .route(request -> HttpMethod.POST.equals(request.method()) && request.uri().startsWith("/api/"),
+                                (request, response) -> request.receive()
+                                        .then(Mono.delay(latency, timer))
+                                        .then(Mono.defer(() -> {
+                                            byte[] png = processedPng;
+                                            // IHDR: ancho y alto en los bytes 16 a 23
+                                            ByteBuffer header = ByteBuffer.wrap(png, 16, 8);
+                                            return Mono.from(response
+                                                    .header("Content-Type", "image/png")
+                                                    .header("Content-Length", String.valueOf(png.length))
+                                                    .header("X-Width", String.valueOf(header.getInt()))
+                                                    .header("X-Height", String.valueOf(header.getInt()))
+                                                    .header("X-GPU-Time-ms", String.valueOf(latency.toMillis()))
+                                                    .sendByteArray(Mono.just(png)));
+                                        }))))
+                .bindNow();
+    }
+
+    void respondWith(byte[] png) {
+        this.processedPng = png;
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
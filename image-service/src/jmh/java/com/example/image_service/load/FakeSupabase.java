@@ -0,0 +1,64 @@
+package com.example.image_service.load;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.handler.codec.http.HttpMethod;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Supabase Storage local para la prueba de carga: HEAD de un objeto público
+ * responde 404 (todo original es nuevo) y POST /object/{bucket}/{key} lee y
+ * descarta el cuerpo y responde después de latency, como si lo hubiera
+ * guardado. Corre en su propio event loop para no mezclar su asignación con
+ * la de image-service.
+ */
+final class FakeSupabase implements AutoCloseable {
+
+    private final DisposableServer server;
+    private final AtomicLong objects = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    FakeSupabase(Duration latency, LoopResources loops, Scheduler timer) {
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .runOn(loops)
+                .route(routes -> routes
+                        .route(request -> HttpMethod.HEAD.equals(request.method()),
+                                (request, response) -> response.status(404).send())
+                        .route(request -> HttpMethod.POST.equals(request.method())
+                                        && request.uri().startsWith("/storage/v1/object/"),
+                                (request, response) -> request.receive()
+                                        .doOnNext(buffer -> bytes.addAndGet(buffer.readableBytes()))
+                                        .then(Mono.delay(latency, timer))
+                                        .then(Mono.defer(() -> {
+                                            objects.incrementAndGet();
+                                            return Mono.from(response
+                                                    .header("Content-Type", "application/json")
+                                                    .sendString(Mono.just("{\"Key\":\"" + request.uri() + "\"}")));
+                                        }))))
+                .bindNow();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    long objects() {
+        return objects.get();
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.image_service.load;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadInfo;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.example.image_service.BenchmarkImages;
+import com.example.image_service.ImageServiceApplication;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Prueba de carga de POST /images/upload: levanta image-service en este
+ * proceso contra un Supabase y un cuda_service locales (FakeSupabase,
+ * FakeCuda) con latencia configurable, y para cada tamaño de imagen reporta
+ * throughput, latencia p50/p99, asignación y heap pico.
+ *
+ *   ./gradlew loadTest --args="--sizes=1,5,20 --requests=200 --concurrency=8"
+ *
+ * Opciones (--nombre=valor): sizes (MB), requests y warmup (por tamaño),
+ * concurrency, storage-latency-ms, cuda-latency-ms, processed-mb (PNG que
+ * devuelve la GPU; 0 = del mismo tamaño que el original), filter y mask.
+ *
+ * Cada solicitud lleva un chunk tEXt distinto, así que su SHA-256 es nuevo y
+ * no sale de la caché de resultados. La asignación suma solo los hilos de
+ * image-service (el cliente y los servicios simulados corren en event loops
+ * propios); el heap pico suma el pico de cada pool, una cota superior que
+ * incluye al cliente y los simulados, que solo retienen buffers de red.
+ */
+public final class LoadTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String CLIENT_THREADS = "load-client";
+    private static final String STAND_IN_THREADS = "stand-in";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        List<Integer> sizes = Arrays.stream(option(options, "sizes", "1,5,20").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        int requests = Integer.parseInt(option(options, "requests", "100"));
+        int warmup = Integer.parseInt(option(options, "warmup", "10"));
+        int concurrency = Integer.parseInt(option(options, "concurrency", "8"));
+        Duration storageLatency = Duration.ofMillis(Long.parseLong(option(options, "storage-latency-ms", "30")));
+        Duration cudaLatency = Duration.ofMillis(Long.parseLong(option(options, "cuda-latency-ms", "100")));
+        int processedMb = Integer.parseInt(option(options, "processed-mb", "0"));
+        String filter = option(options, "filter", "gaussian");
+        String mask = option(options, "mask", "5");
+
+        Path workDir = Files.createTempDirectory("image-service-load");
+        LoopResources standInLoops = LoopResources.create(STAND_IN_THREADS, 2, true);
+        LoopResources clientLoops = LoopResources.create(CLIENT_THREADS, 2, true);
+        Scheduler timer = Schedulers.newParallel(STAND_IN_THREADS + "-timer", 1);
+
+        try (FakeSupabase supabase = new FakeSupabase(storageLatency, standInLoops, timer);
+             FakeCuda cuda = new FakeCuda(cudaLatency, standInLoops, timer);
+             ConfigurableApplicationContext app = new SpringApplicationBuilder(ImageServiceApplication.class)
+                     .logStartupInfo(false)
+                     .run("--server.port=0",
+                             "--supabase.url=" + supabase.url(),
+                             "--python.urls=" + cuda.url(),
+                             "--image.storage.backend=supabase",
+                             "--image.upload.spool-dir=" + workDir.resolve("spool"),
+                             "--image.upload.resumable.dir=" + workDir.resolve("resumable"),
+                             "--image.cache.dir=" + workDir.resolve("cache"),
+                             "--image.jobs.dir=" + workDir.resolve("jobs"),
+                             "--logging.level.root=WARN")) {
+
+            String port = app.getEnvironment().getProperty("local.server.port");
+            WebClient client = WebClient.builder()
+                    .baseUrl("http://127.0.0.1:" + port)
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient
+                            .create(ConnectionProvider.create(CLIENT_THREADS, concurrency))
+                            .runOn(clientLoops)))
+                    .build();
+            AtomicLong markers = new AtomicLong();
+
+            System.out.printf("%nSupabase +%d ms, CUDA +%d ms, %d solicitudes por tamaño, concurrencia %d%n%n",
+                    storageLatency.toMillis(), cudaLatency.toMillis(), requests, concurrency);
+            System.out.printf("%-9s %8s %8s %8s %9s %9s %11s %12s %13s%n",
+                    "imagen", "req", "errores", "req/s", "p50 ms", "p99 ms", "asig. MB/s", "asig. MB/req", "heap pico MB");
+
+            for (int sizeMb : sizes) {
+                byte[] original = BenchmarkImages.noisePng(sizeMb * 1_000_000L);
+                cuda.respondWith(processedMb > 0 ? BenchmarkImages.noisePng(processedMb * 1_000_000L) : original);
+                Request request = new Request(client, original, filter, mask, markers);
+
+                run(request, warmup, concurrency);
+                System.gc();
+                List<MemoryPoolMXBean> heap = heapPools();
+                heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+                Map<Long, Long> allocatedBefore = serviceAllocations();
+
+                Result result = run(request, requests, concurrency);
+
+                long allocated = allocatedSince(allocatedBefore);
+                long peakHeap = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+                double seconds = result.elapsedNanos() / 1e9;
+                int succeeded = requests - result.errors();
+                System.out.printf("%-9s %8d %8d %8.1f %9.1f %9.1f %11.1f %12.1f %13.1f%n",
+                        BenchmarkImages.megabytes(original.length),
+                        requests,
+                        result.errors(),
+                        succeeded / seconds,
+                        result.percentileMs(0.50),
+                        result.percentileMs(0.99),
+                        allocated / 1e6 / seconds,
+                        allocated / 1e6 / Math.max(1, succeeded),
+                        peakHeap / 1e6);
+            }
+            System.out.printf("%nObjetos recibidos por Supabase: %d (%s)%n",
+                    supabase.objects(), BenchmarkImages.megabytes(supabase.bytes()));
+        } finally {
+            clientLoops.disposeLater().block();
+            standInLoops.disposeLater().block();
+            timer.dispose();
+        }
+        System.exit(0);
+    }
+
+    private static Result run(Request request, int count, int concurrency) {
+        long[] latencies = new long[count];
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        Flux.range(0, count)
+                .flatMap(i -> Mono.defer(() -> {
+                            long begin = System.nanoTime();
+                            return request.send().doOnSuccess(done -> latencies[i] = System.nanoTime() - begin);
+                        })
+                        .onErrorResume(error -> {
+                            if (errors.getAndIncrement() == 0) {
+                                System.err.println("Primera solicitud fallida: " + error);
+                            }
+                            latencies[i] = -1;
+                            return Mono.empty();
+                        }), concurrency)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+        return new Result(Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray(),
+                errors.get(), elapsed);
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    // Bytes asignados por hilo, sin contar main, el cliente ni los simulados
+    private static Map<Long, Long> serviceAllocations() {
+        Map<Long, Long> allocations = new HashMap<>();
+        for (ThreadInfo info : THREADS.getThreadInfo(THREADS.getAllThreadIds())) {
+            if (info == null || info.getThreadName().equals("main")
+                    || info.getThreadName().startsWith(CLIENT_THREADS)
+                    || info.getThreadName().startsWith(STAND_IN_THREADS)) {
+                continue;
+            }
+            long bytes = THREADS.getThreadAllocatedBytes(info.getThreadId());
+            if (bytes >= 0) {
+                allocations.put(info.getThreadId(), bytes);
+            }
+        }
+        return allocations;
+    }
+
+    // Los hilos que terminaron durante la corrida no se cuentan
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : serviceAllocations().entrySet()) {
+            total += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Opción inválida: " + arg + " (se espera --nombre=valor)");
+            }
+            int equals = arg.indexOf('=');
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Un POST /images/upload con el original. El PNG se envía sin copiarlo:
+     * todo menos IEND, el chunk tEXt de la solicitud y el IEND.
+     */
+    private record Request(WebClient client, byte[] png, String filter, String mask, AtomicLong markers) {
+
+        Mono<Void> send() {
+            byte[] marker = BenchmarkImages.markerChunk(markers.incrementAndGet());
+            int body = png.length - BenchmarkImages.IEND_LENGTH;
+            MultipartBodyBuilder builder = new MultipartBodyBuilder();
+            builder.asyncPart("file", Flux.defer(() -> Flux.just(
+                                    wrap(ByteBuffer.wrap(png, 0, body).slice()),
+                                    wrap(ByteBuffer.wrap(marker)),
+                                    wrap(ByteBuffer.wrap(png, body, BenchmarkImages.IEND_LENGTH).slice()))),
+                            DataBuffer.class)
+                    .filename("image.png")
+                    .contentType(MediaType.IMAGE_PNG);
+            builder.part("mask", mask);
+            builder.part("filter", filter);
+            builder.part("engine", "gpu");
+            return client.post()
+                    .uri("/images/upload")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .body(BodyInserters.fromMultipartData(builder.build()))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .then();
+        }
+
+        private static DataBuffer wrap(ByteBuffer buffer) {
+            return DefaultDataBufferFactory.sharedInstance.wrap(buffer);
+        }
+    }
+
+    private record Result(long[] sortedLatencies, int errors, long elapsedNanos) {
+
+        double percentileMs(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
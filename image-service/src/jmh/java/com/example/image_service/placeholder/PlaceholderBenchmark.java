@@ -0,0 +1,52 @@
+package com.example.image_service.placeholder;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.image_service.dto.ImagePlaceholder;
+
+/**
+ * Costo agregado por el placeholder sobre una imagen ya decodificada.
+ * Debe mantenerse en unos pocos ms incluso para fotos de 12 MP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlaceholderBenchmark {
+
+    @Param({"1920x1080", "4000x3000"})
+    public String size;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(200, 40, 90), width, height, new Color(20, 120, 220)));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.YELLOW);
+        g.fillOval(width / 4, height / 4, width / 2, height / 2);
+        g.dispose();
+    }
+
+    @Benchmark
+    public ImagePlaceholder compute() {
+        return PlaceholderEncoder.compute(image);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.image_service.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+
+import com.example.image_service.BenchmarkImages;
+import com.example.image_service.upload.ImageSpooler;
+import com.example.image_service.upload.SpooledImage;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Armado y codificación del cuerpo multipart que processWithPython envía a
+ * cuda_service, sin la red: el cuerpo se escribe contra un mensaje que solo
+ * cuenta y libera los buffers. streamingPart es el camino actual (asyncPart
+ * sobre SpooledImage.content(), volcado a disco y mapeado en memoria por
+ * encima de 1 MB); byteArrayPart es el anterior, con la imagen entera en un
+ * ByteArrayResource.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CudaMultipartBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int sizeMb;
+
+    private final BodyInserter.Context context = new WriterContext(ExchangeStrategies.withDefaults().messageWriters());
+    private byte[] image;
+    private SpooledImage spooled;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = BenchmarkImages.noisePng(sizeMb * 1_000_000L);
+        ImageSpooler spooler = new ImageSpooler(1024 * 1024, Files.createTempDirectory("multipart-bench").toString(),
+                50_000_000L, 16384);
+        spooled = spooler.spool(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(image)), Long.MAX_VALUE).block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        spooled.release().block();
+    }
+
+    @Benchmark
+    public long streamingPart() {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.asyncPart("image", spooled.content(), DataBuffer.class)
+                .filename("image.png")
+                .contentType(MediaType.IMAGE_PNG);
+        return write(builder);
+    }
+
+    @Benchmark
+    public long byteArrayPart() {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("image", new ByteArrayResource(image) {
+                    @Override
+                    public String getFilename() {
+                        return "image.png";
+                    }
+                })
+                .contentType(MediaType.IMAGE_PNG);
+        return write(builder);
+    }
+
+    private long write(MultipartBodyBuilder builder) {
+        builder.part("filter_type", "gaussian");
+        builder.part("kernel_size", "5");
+        CountingMessage message = new CountingMessage();
+        BodyInserters.fromMultipartData(builder.build()).insert(message, context).block();
+        return message.written;
+    }
+
+    private record WriterContext(List<HttpMessageWriter<?>> messageWriters) implements BodyInserter.Context {
+
+        @Override
+        public Optional<ServerHttpRequest> serverRequest() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Map<String, Object> hints() {
+            return new HashMap<>();
+        }
+    }
+
+    // Mensaje de salida que descarta el cuerpo contando los bytes
+    private static final class CountingMessage implements ReactiveHttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private long written;
+
+        @Override
+        public DataBufferFactory bufferFactory() {
+            return DefaultDataBufferFactory.sharedInstance;
+        }
+
+        @Override
+        public void beforeCommit(Supplier<? extends Mono<Void>> action) {
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return Flux.from(body)
+                    .doOnNext(buffer -> {
+                        written += buffer.readableByteCount();
+                        DataBufferUtils.release(buffer);
+                    })
+                    .then();
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return writeWith(Flux.from(body).concatMap(Flux::from));
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return Mono.empty();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.image_service.upload;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Validación del formato de una subida. probe es el camino actual (ImageProbe
+ * sobre los primeros bytes); imageIoHeader es lo que costaría pedirle las
+ * dimensiones a ImageIO, que isSupportedImage y resolveExtension ni siquiera
+ * hacían (solo miraban el Content-Type y la extensión declarados).
+ *
+ * El JPEG lleva un APP1 de 60 KB antes del SOF, como el EXIF de una cámara.
+ * El lector de WebP de ImageIO es el de TwelveMonkeys (imageio-webp).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageProbeBenchmark {
+
+    @Param({"png", "jpeg", "webp"})
+    public String format;
+
+    private byte[] image;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = switch (format) {
+            case "png" -> encode("png");
+            case "jpeg" -> withExif(encode("jpg"));
+            default -> webpHeader(4032, 3024);
+        };
+    }
+
+    @Benchmark
+    public ImageInfo probe() {
+        ImageProbe probe = new ImageProbe(50_000_000L, 16384);
+        probe.feed(ByteBuffer.wrap(image));
+        return probe.finish();
+    }
+
+    @Benchmark
+    public long imageIoHeader() throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                return -1;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] encode(String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1024, 768, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] withExif(byte[] jpeg) {
+        byte[] app1 = new byte[60_000];
+        app1[0] = (byte) 0xFF;
+        app1[1] = (byte) 0xE1;
+        app1[2] = (byte) ((app1.length - 2) >> 8);
+        app1[3] = (byte) (app1.length - 2);
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+
+    // Cabecera VP8L (sin pérdida): ancho y alto menos uno en 14 bits cada uno
+    private static byte[] webpHeader(int width, int height) {
+        byte[] webp = new byte[30];
+        System.arraycopy("RIFF".getBytes(StandardCharsets.US_ASCII), 0, webp, 0, 4);
+        System.arraycopy("WEBPVP8L".getBytes(StandardCharsets.US_ASCII), 0, webp, 8, 8);
+        webp[20] = 0x2F;
+        long bits = (width - 1) | (long) (height - 1) << 14;
+        for (int i = 0; i < 4; i++) {
+            webp[21 + i] = (byte) (bits >> (8 * i));
+        }
+        return webp;
+    }
+}
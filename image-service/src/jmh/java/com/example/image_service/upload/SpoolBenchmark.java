@@ -0,0 +1,76 @@
+package com.example.image_service.upload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import com.example.image_service.BenchmarkImages;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Recepción de una subida que llega en buffers de 64 KB, como los entrega el
+ * lector multipart. spool es el camino actual (ImageSpooler: cabecera,
+ * SHA-256 y volcado a disco por encima de 1 MB); joinToByteArray es el que
+ * reemplazó (filePartToBytes: DataBufferUtils.join y copia a un byte[]), que
+ * asigna unas dos veces el tamaño del archivo por subida. Con -prof gc
+ * (activado en build.gradle) se ve la asignación por operación de cada uno.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SpoolBenchmark {
+
+    private static final int CHUNK = 64 * 1024;
+
+    @Param({"1", "5", "20"})
+    public int sizeMb;
+
+    private byte[] image;
+    private ImageSpooler spooler;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = BenchmarkImages.noisePng(sizeMb * 1_000_000L);
+        spooler = new ImageSpooler(1024 * 1024, Files.createTempDirectory("spool-bench").toString(),
+                50_000_000L, 16384);
+    }
+
+    @Benchmark
+    public long spool() {
+        SpooledImage spooled = spooler.spool(upload(), Long.MAX_VALUE).block();
+        spooled.release().block();
+        return spooled.size();
+    }
+
+    @Benchmark
+    public byte[] joinToByteArray() {
+        return DataBufferUtils.join(upload())
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .block();
+    }
+
+    private Flux<DataBuffer> upload() {
+        return Flux.range(0, (image.length + CHUNK - 1) / CHUNK)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        ByteBuffer.wrap(image, i * CHUNK, Math.min(CHUNK, image.length - i * CHUNK)).slice()));
+    }
+}
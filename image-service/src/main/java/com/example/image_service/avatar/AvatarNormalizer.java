@@ -0,0 +1,179 @@
+package com.example.image_service.avatar;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.upload.SpooledImage;
+import com.example.image_service.variants.VariantRenderer;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Normaliza avatares: recorte cuadrado centrado, orientación EXIF aplicada,
+ * sin metadatos y re-codificado como JPEG en tamaños fijos.
+ *
+ * Solo se decodifica el cuadrado central, submuestreado al doble del tamaño
+ * mayor, así que una foto de 12 MP no llega a armarse entera en memoria. La
+ * orientación se aplica después de reducir: el recorte centrado no cambia al
+ * rotar. Corre en un pool propio y acotado (image.avatar.threads y
+ * queue-capacity) para no competir con el event loop ni con el resto de
+ * tareas bloqueantes; con la cola llena responde 503.
+ */
+@Component
+public class AvatarNormalizer {
+
+    private final VariantRenderer variantRenderer;
+    private final List<Integer> sizes;
+    private final Scheduler scheduler;
+
+    public AvatarNormalizer(
+            VariantRenderer variantRenderer,
+            @Value("${image.avatar.sizes:64,160,320}") String sizes,
+            @Value("${image.avatar.threads:0}") int threads,
+            @Value("${image.avatar.queue-capacity:64}") int queueCapacity
+    ) {
+        this.variantRenderer = variantRenderer;
+        this.sizes = Arrays.stream(sizes.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(Integer::valueOf)
+                .filter(size -> size > 0)
+                .sorted()
+                .distinct()
+                .toList();
+        this.scheduler = Schedulers.newBoundedElastic(
+                threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                queueCapacity,
+                "avatar-normalizer");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    public List<Integer> sizes() {
+        return sizes;
+    }
+
+    public Mono<NormalizedAvatar> normalize(SpooledImage avatar) {
+        return Mono.fromCallable(() -> normalizeBlocking(avatar))
+                .subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, error -> new ResponseStatusException(
+                        HttpStatus.SERVICE_UNAVAILABLE, "Demasiados avatares en proceso, intenta de nuevo"));
+    }
+
+    /**
+     * Versión bloqueante de normalize; devuelve un JPEG por tamaño, de menor
+     * a mayor. Los tamaños se generan siempre, ampliando si el original es
+     * más chico, para que cada URL exista.
+     */
+    NormalizedAvatar normalizeBlocking(SpooledImage avatar) throws IOException {
+        int orientation = ExifOrientation.NORMAL;
+        if (avatar.info() != null && "jpeg".equals(avatar.info().format())) {
+            try (InputStream input = avatar.openStream()) {
+                orientation = ExifOrientation.read(input);
+            }
+        }
+
+        int largest = sizes.get(sizes.size() - 1);
+        BufferedImage base = orient(VariantRenderer.resize(readCenterSquare(avatar, largest), largest), orientation);
+
+        Map<Integer, byte[]> jpegs = new LinkedHashMap<>();
+        for (int size : sizes) {
+            BufferedImage image = size == largest ? base : VariantRenderer.resize(base, size);
+            // raster nuevo, sin EXIF ni ICC
+            jpegs.put(size, variantRenderer.encode(image));
+        }
+        return new NormalizedAvatar(jpegs, base);
+    }
+
+    private static BufferedImage readCenterSquare(SpooledImage avatar, int largest) throws IOException {
+        try (InputStream input = avatar.openStream();
+             ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se pudo leer la imagen");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int side = Math.min(width, height);
+                int step = Math.max(1, side / (largest * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Aplica una orientación EXIF a un cuadrado RGB (resize siempre devuelve
+     * TYPE_INT_RGB). Las ocho orientaciones conservan el lado.
+     */
+    static BufferedImage orient(BufferedImage square, int orientation) {
+        if (orientation == ExifOrientation.NORMAL) {
+            return square;
+        }
+        int n = square.getWidth();
+        int[] src = ((DataBufferInt) square.getRaster().getDataBuffer()).getData();
+        BufferedImage target = new BufferedImage(n, n, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        int last = n - 1;
+        for (int y = 0; y < n; y++) {
+            int row = y * n;
+            for (int x = 0; x < n; x++) {
+                // píxel de origen que se ve en (x, y)
+                int sx;
+                int sy;
+                switch (orientation) {
+                    case 2 -> { sx = last - x; sy = y; }          // espejo horizontal
+                    case 3 -> { sx = last - x; sy = last - y; }   // 180°
+                    case 4 -> { sx = x; sy = last - y; }          // espejo vertical
+                    case 5 -> { sx = y; sy = x; }                 // transpuesta
+                    case 6 -> { sx = y; sy = last - x; }          // 90° horario
+                    case 7 -> { sx = last - y; sy = last - x; }   // transversa
+                    case 8 -> { sx = last - y; sy = x; }          // 90° antihorario
+                    default -> { sx = x; sy = y; }
+                }
+                dst[row + x] = src[sy * n + sx];
+            }
+        }
+        return target;
+    }
+
+    /**
+     * JPEG por lado en px (de menor a mayor) y el raster del tamaño mayor,
+     * para el placeholder.
+     */
+    public record NormalizedAvatar(Map<Integer, byte[]> jpegs, BufferedImage largest) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.image_service.avatar;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Orientación EXIF (tag 0x0112 del IFD0) de un JPEG, de 1 a 8.
+ *
+ * Recorre los segmentos hasta el SOF sin decodificar la imagen y solo lee
+ * el APP1 de EXIF; cualquier cosa inesperada equivale a 1 (sin rotar).
+ */
+final class ExifOrientation {
+
+    static final int NORMAL = 1;
+
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+
+    private ExifOrientation() {
+    }
+
+    static int read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        try {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return NORMAL;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                while (marker == 0xFFFF) {
+                    // relleno antes del marcador
+                    marker = 0xFF00 | in.readUnsignedByte();
+                }
+                // SOS, EOI o SOF: el EXIF va antes
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9 || isStartOfFrame(marker & 0xFF)) {
+                    return NORMAL;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return NORMAL;
+                }
+                if (marker == 0xFFE1 && length > EXIF_HEADER.length) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    if (startsWithExifHeader(segment)) {
+                        return fromTiff(ByteBuffer.wrap(segment, EXIF_HEADER.length, length - EXIF_HEADER.length).slice());
+                    }
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+        } catch (EOFException e) {
+            return NORMAL;
+        }
+    }
+
+    private static int fromTiff(ByteBuffer tiff) {
+        if (tiff.remaining() < 8) {
+            return NORMAL;
+        }
+        short byteOrder = tiff.getShort(0);
+        if (byteOrder == 0x4949) {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (byteOrder != 0x4D4D) {
+            return NORMAL;
+        }
+        if (tiff.getShort(2) != 42) {
+            return NORMAL;
+        }
+        long ifd = Integer.toUnsignedLong(tiff.getInt(4));
+        if (ifd + 2 > tiff.limit()) {
+            return NORMAL;
+        }
+        int entries = Short.toUnsignedInt(tiff.getShort((int) ifd));
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > tiff.limit()) {
+                return NORMAL;
+            }
+            if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                // tipo SHORT: el valor va en los dos primeros bytes del campo
+                int value = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static boolean startsWithExifHeader(byte[] segment) {
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (segment[i] != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // SOF0..SOF15 salvo DHT (C4), JPG (C8) y DAC (CC)
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.image_service.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
+import com.example.image_service.upload.SpooledImage;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Índice de resultados ya almacenados, por clave de contenido.
+ *
+ * Nivel 1: LRU en memoria acotado. Nivel 2: un archivo pequeño por clave en
+ * disco (directorios por prefijo del hash), que sobrevive reinicios.
+ * Las solicitudes concurrentes con la misma clave comparten una sola
+ * ejecución en curso.
+ */
+@Slf4j
+@Component
+public class ProcessedResultCache {
+
+    private final Map<String, String> lru;
+    private final Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+    private final Path indexDir;
+
+    public ProcessedResultCache(
+            @Value("${image.cache.max-entries:10000}") int maxEntries,
+            @Value("${image.cache.dir:${java.io.tmpdir}/image-service/cache}") String indexDir
+    ) throws IOException {
+        this.lru = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.indexDir = Files.createDirectories(Path.of(indexDir).toAbsolutePath().normalize());
+    }
+
+    public static String processedKey(String sha256, String filter, int kernelSize) {
+        return sha256 + "-" + new FilterStage(filter, kernelSize).cacheKey();
+    }
+
+    /**
+     * Clave de un pipeline; con una sola etapa coincide con la de ese filtro.
+     */
+    public static String processedKey(String sha256, List<FilterStage> stages) {
+        return sha256 + "-" + stages.stream()
+                .map(FilterStage::cacheKey)
+                .collect(Collectors.joining("+"));
+    }
+
+    /**
+     * Clave del resultado según el motor que lo calcula. La CPU usa una clave
+     * aparte: su salida puede diferir de la GPU (±1 nivel, reescalado de ups)
+     * y no debe servirse a quien pide la GPU. GPU y AUTO comparten la de la GPU.
+     */
+    public static String processedKey(String sha256, List<FilterStage> stages, ProcessingEngine engine) {
+        String key = processedKey(sha256, stages);
+        return engine == ProcessingEngine.CPU ? key + "-cpu" : key;
+    }
+
+    public static String originalKey(String sha256) {
+        return sha256 + "-original";
+    }
+
+    /**
+     * Anchos de las variantes generadas para un contenido (ver VariantRenderer).
+     */
+    public static String variantsKey(String contentKey) {
+        return contentKey + "-variants";
+    }
+
+    /**
+     * BlurHash, color dominante y dimensiones de un contenido (ver PlaceholderEncoder).
+     */
+    public static String placeholderKey(String contentKey) {
+        return contentKey + "-placeholder";
+    }
+
+    /**
+     * Valor guardado para la clave, sin calcularlo si falta.
+     */
+    public Mono<String> find(String key) {
+        return Mono.defer(() -> {
+            String cached = memoryGet(key);
+            return cached != null ? Mono.just(cached) : diskGet(key);
+        });
+    }
+
+    /**
+     * Devuelve la URL asociada a la clave o ejecuta el productor una sola vez,
+     * aunque lleguen varias solicitudes iguales a la vez.
+     */
+    public Mono<String> getOrCompute(String key, Supplier<Mono<String>> producer) {
+        return Mono.defer(() -> {
+            String cached = memoryGet(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return inFlight.computeIfAbsent(key, k -> diskGet(k)
+                    .switchIfEmpty(Mono.defer(producer).flatMap(url -> put(k, url)))
+                    .doFinally(signal -> inFlight.remove(k))
+                    .cache());
+        });
+    }
+
+    /**
+     * Como getOrCompute, para productores que leen un spool. El cálculo
+     * compartido lo hace el productor de la primera solicitud y sigue
+     * corriendo para las demás aunque esa solicitud se cancele y libere su
+     * spool; por eso toma su propia referencia al contenido y la suelta al
+     * terminar.
+     */
+    public Mono<String> getOrCompute(String key, SpooledImage input, Function<SpooledImage, Mono<String>> producer) {
+        return Mono.defer(() -> {
+            String cached = memoryGet(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return inFlight.computeIfAbsent(key, k -> {
+                SpooledImage retained = input.retain();
+                return diskGet(k)
+                        .switchIfEmpty(Mono.defer(() -> producer.apply(retained)).flatMap(url -> put(k, url)))
+                        .doFinally(signal -> {
+                            inFlight.remove(k);
+                            retained.release().subscribe();
+                        })
+                        .cache();
+            });
+        });
+    }
+
+    private Mono<String> put(String key, String url) {
+        Path target = indexFile(key);
+        memoryPut(key, url);
+        return Mono.fromCallable(() -> {
+                    Files.createDirectories(target.getParent());
+                    Path tmp = Files.createTempFile(target.getParent(), key, ".tmp");
+                    Files.writeString(tmp, url, StandardCharsets.UTF_8);
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    return url;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(IOException.class, e -> {
+                    log.warn("No se pudo persistir la entrada {} del índice", key, e);
+                    return Mono.just(url);
+                });
+    }
+
+    private Mono<String> diskGet(String key) {
+        return Mono.fromCallable(() -> {
+                    Path file = indexFile(key);
+                    return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8) : null;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(url -> memoryPut(key, url));
+    }
+
+    // Las claves se arman con datos del cliente: el archivo tiene que quedar
+    // justo en {indexDir}/{2 caracteres}/, sin ".." ni separadores de por medio
+    private Path indexFile(String key) {
+        Path file = indexDir.resolve(key.substring(0, 2)).resolve(key).normalize();
+        if (!file.startsWith(indexDir) || file.getNameCount() != indexDir.getNameCount() + 2) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Clave de caché inválida");
+        }
+        return file;
+    }
+
+    private String memoryGet(String key) {
+        synchronized (lru) {
+            return lru.get(key);
+        }
+    }
+
+    private void memoryPut(String key, String url) {
+        synchronized (lru) {
+            lru.put(key, url);
+        }
+    }
+}
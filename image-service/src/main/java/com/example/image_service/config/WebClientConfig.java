@@ -14,17 +14,4 @@ public class WebClientConfig {
                 .baseUrl(url + "/storage/v1")
                 .build();
     }
-
-    @Bean
-    public WebClient pythonClient(@Value("${python.url}") String pythonUrl) {
-        return WebClient.builder()
-                .baseUrl(pythonUrl)
-                .codecs(configurer ->
-                    configurer
-                        .defaultCodecs()
-                        // aumentar límite a 50 MB para respuestas grandes
-                        .maxInMemorySize(50 * 1024 * 1024)
-                )
-                .build();
-    }
 }
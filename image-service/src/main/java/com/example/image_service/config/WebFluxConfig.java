@@ -1,15 +0,0 @@
-package com.example.image_service.config;
-
-import org.springframework.context.annotation.Configuration;
-import org.springframework.http.codec.ServerCodecConfigurer;
-import org.springframework.web.reactive.config.EnableWebFlux;
-import org.springframework.web.reactive.config.WebFluxConfigurer;
-
-@Configuration
-public class WebFluxConfig implements WebFluxConfigurer {
-
-    @Override
-    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
-        configurer.defaultCodecs().maxInMemorySize(20 * 1024 * 1024); // 20MB
-    }
-}
@@ -1,14 +1,22 @@
 package com.example.image_service.controller;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.PartEvent;
 
 import com.example.image_service.dto.ImageUploadResponse;
 import com.example.image_service.dto.AvatarUploadResponse;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
 import com.example.image_service.service.ImageService;
+import com.example.image_service.service.PreviewService;
+import com.example.image_service.upload.MultipartForm;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -17,30 +25,78 @@ import reactor.core.publisher.Mono;
 public class ImageController {
 
     private final ImageService imageService;
+    private final PreviewService previewService;
 
-    // 1) Filtro + máscara (ya lo tenías)
+    @Value("${image.pipeline.max-stages:5}")
+    private int maxStages;
+
+    // 1) Filtro + máscara (ya lo tenías). Partes: file, mask, filter y engine
+    //    (opcional). El archivo pasa de la red al spool sin copia intermedia
+    //    en disco (ver MultipartForm)
     @PostMapping(
             value = "/upload",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE
     )
-    public Mono<ImageUploadResponse> uploadImage(
-            @RequestPart("file") FilePart file,
-            @RequestPart("mask") String mask,
-            @RequestPart("filter") String filter
+    public Mono<ImageUploadResponse> uploadImage(@RequestBody Flux<PartEvent> parts) {
+        return MultipartForm.read(parts, imageService::spoolUpload, form -> imageService.process(
+                form.requireFile(),
+                Integer.parseInt(form.requireField("mask")),
+                form.requireField("filter"),
+                ProcessingEngine.from(form.field("engine"))));
+    }
+
+    // 2) Varios filtros seguidos en una sola solicitud, p. ej. stages=gaussian:5,sobel:3,ups.
+    //    Solo se guarda el resultado final; el original, si original=true.
+    //    Partes: file, stages, engine y original (opcionales)
+    @PostMapping(
+            value = "/pipeline",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    public Mono<ImageUploadResponse> processPipeline(@RequestBody Flux<PartEvent> parts) {
+        return MultipartForm.read(parts, imageService::spoolUpload, form -> imageService.process(
+                form.requireFile(),
+                FilterStage.parse(form.requireField("stages"), maxStages),
+                ProcessingEngine.from(form.field("engine")),
+                Boolean.parseBoolean(form.field("original"))));
+    }
+
+    // 3) Vista previa de un filtro a baja resolución, sin guardar nada. La
+    //    primera llamada manda file; las siguientes, el token de X-Preview-Session
+    //    en la parte session. Además: filter y mask
+    @PostMapping(
+            value = "/preview",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.IMAGE_JPEG_VALUE
+    )
+    public Mono<ResponseEntity<byte[]>> preview(
+            @RequestHeader(value = "X-User-Uid", required = false) String userId,
+            @RequestBody Flux<PartEvent> parts
     ) {
-        int maskInt = Integer.parseInt(mask);
-        return imageService.uploadAndProcess(file, maskInt, filter);
+        return MultipartForm.read(parts, previewService::spool, form -> previewService.preview(
+                        form.file(),
+                        form.field("session"),
+                        userId,
+                        form.requireField("filter"),
+                        Integer.parseInt(form.requireField("mask"))))
+                .map(preview -> ResponseEntity.ok()
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .cacheControl(CacheControl.noStore())
+                        .header("X-Preview-Session", preview.session())
+                        .header("X-Kernel-Size", String.valueOf(preview.kernelSize()))
+                        .header("X-Processing-ms", String.valueOf(preview.processingMs()))
+                        .body(preview.jpeg()));
     }
 
-    // 2) NUEVO: subir avatar de usuario
+    // 4) NUEVO: subir avatar de usuario
     @PostMapping(
             value = "/avatar",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE
     )
-        public Mono<AvatarUploadResponse> uploadAvatar(
-                        @RequestHeader("X-User-Uid") String userId,
-                        @RequestPart("file") FilePart file
-        ) {
-                return imageService.uploadAvatar(file, userId);
+    public Mono<AvatarUploadResponse> uploadAvatar(
+            @RequestHeader("X-User-Uid") String userId,
+            @RequestBody Flux<PartEvent> parts
+    ) {
+        return MultipartForm.read(parts, imageService::spoolAvatar,
+                form -> imageService.uploadAvatar(form.requireFile(), userId));
     }
 }
@@ -0,0 +1,65 @@
+package com.example.image_service.controller;
+
+import java.net.URI;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.jobs.ImageJob;
+import com.example.image_service.jobs.ImageJobQueue;
+import com.example.image_service.service.ImageService;
+import com.example.image_service.upload.MultipartForm;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/images/jobs")
+@RequiredArgsConstructor
+public class ImageJobController {
+
+    private final ImageJobQueue jobQueue;
+    private final ImageService imageService;
+
+    // Acepta la imagen y responde de inmediato con el id del trabajo.
+    // Partes: file, mask, filter y priority (opcional)
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<ImageJob>> submit(@RequestBody Flux<PartEvent> parts) {
+        // Con la cola llena se rechaza antes de leer el cuerpo
+        return jobQueue.checkCapacity()
+                .then(MultipartForm.read(parts, imageService::spoolUpload, form -> {
+                    String priority = form.field("priority");
+                    return jobQueue.submit(
+                            form.requireFile(),
+                            Integer.parseInt(form.requireField("mask")),
+                            form.requireField("filter"),
+                            priority == null ? 0 : Integer.parseInt(priority));
+                }))
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .location(URI.create("/images/jobs/" + job.getId()))
+                        .body(job));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ImageJob> get(@PathVariable String id) {
+        return Mono.justOrEmpty(jobQueue.find(id))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Trabajo no encontrado")));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ImageJob>> events(@PathVariable String id) {
+        if (jobQueue.find(id).isEmpty()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Trabajo no encontrado"));
+        }
+        return jobQueue.watch(id)
+                .map(job -> ServerSentEvent.builder(job)
+                        .event(job.getStatus().name())
+                        .build());
+    }
+}
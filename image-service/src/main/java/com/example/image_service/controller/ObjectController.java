@@ -0,0 +1,78 @@
+package com.example.image_service.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriUtils;
+
+import com.example.image_service.storage.LocalObjectStore;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sirve los objetos de LocalObjectStore (solo con image.storage.backend=local).
+ *
+ * El cuerpo se escribe con transferencia zero-copy del archivo al socket y
+ * WebFlux resuelve los encabezados Range (206) e If-None-Match (304) a partir
+ * del ETag, que es el SHA-256 del contenido. El PUT recibe las subidas
+ * directas a URLs firmadas por LocalObjectStore.signUpload.
+ */
+@RestController
+@RequestMapping("/images/objects")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "image.storage.backend", havingValue = "local")
+public class ObjectController {
+
+    private static final String PREFIX = "/images/objects/";
+
+    private final LocalObjectStore objectStore;
+
+    @GetMapping("/**")
+    public Mono<ResponseEntity<Resource>> getObject(ServerHttpRequest request) {
+        String key = key(request);
+
+        return objectStore.find(key)
+                .map(object -> ResponseEntity.ok()
+                        .eTag(object.sha256())
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePublic())
+                        .contentType(object.contentType())
+                        .<Resource>body(new FileSystemResource(object.file())))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Objeto no encontrado")));
+    }
+
+    @PutMapping("/**")
+    public Mono<ResponseEntity<Void>> putObject(
+            ServerHttpRequest request,
+            @RequestParam("expires") long expires,
+            @RequestParam("max") long max,
+            @RequestParam("signature") String signature
+    ) {
+        // Un Content-Length declarado por encima del máximo se rechaza sin leer el cuerpo
+        if (request.getHeaders().getContentLength() > max) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El archivo excede el límite de " + max + " bytes"));
+        }
+        return objectStore.putSigned(key(request), request.getBody(), request.getHeaders().getContentType(),
+                        expires, max, signature)
+                .map(url -> ResponseEntity.ok().<Void>build());
+    }
+
+    private static String key(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        return UriUtils.decode(path.substring(Math.min(PREFIX.length(), path.length())), StandardCharsets.UTF_8);
+    }
+}
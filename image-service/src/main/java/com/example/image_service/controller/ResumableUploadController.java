@@ -0,0 +1,92 @@
+package com.example.image_service.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.dto.ImageUploadResponse;
+import com.example.image_service.dto.ResumableUploadRequest;
+import com.example.image_service.dto.ResumableUploadResponse;
+import com.example.image_service.dto.UploadConfirmRequest;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
+import com.example.image_service.service.ResumableUploadService;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Subidas reanudables: POST crea la subida, PATCH envía cada trozo con su
+ * offset en Upload-Offset, GET devuelve el offset guardado para retomar tras
+ * un corte y complete procesa el archivo. Con X-User-Uid la subida queda
+ * ligada a ese usuario.
+ */
+@RestController
+@RequestMapping("/images/uploads")
+@RequiredArgsConstructor
+public class ResumableUploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private final ResumableUploadService uploadService;
+
+    @Value("${image.pipeline.max-stages:5}")
+    private int maxStages;
+
+    @PostMapping
+    public Mono<ResponseEntity<ResumableUploadResponse>> create(
+            @RequestHeader(value = "X-User-Uid", required = false) String userId,
+            @RequestBody ResumableUploadRequest request
+    ) {
+        return uploadService.create(userId, request.getSize())
+                .map(upload -> ResponseEntity.status(HttpStatus.CREATED).body(upload));
+    }
+
+    @GetMapping("/{uploadId}")
+    public Mono<ResponseEntity<ResumableUploadResponse>> status(
+            @RequestHeader(value = "X-User-Uid", required = false) String userId,
+            @PathVariable String uploadId
+    ) {
+        return uploadService.status(uploadId, userId).map(ResumableUploadController::withOffset);
+    }
+
+    @PatchMapping("/{uploadId}")
+    public Mono<ResponseEntity<ResumableUploadResponse>> append(
+            @RequestHeader(value = "X-User-Uid", required = false) String userId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            @PathVariable String uploadId,
+            ServerHttpRequest request
+    ) {
+        return uploadService.append(uploadId, userId, offset, request.getBody())
+                .map(ResumableUploadController::withOffset);
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public Mono<ImageUploadResponse> complete(
+            @RequestHeader(value = "X-User-Uid", required = false) String userId,
+            @PathVariable String uploadId,
+            @RequestBody UploadConfirmRequest request
+    ) {
+        List<FilterStage> stages;
+        if (StringUtils.hasText(request.getStages())) {
+            stages = FilterStage.parse(request.getStages(), maxStages);
+        } else if (StringUtils.hasText(request.getFilter()) && request.getMask() != null) {
+            stages = List.of(new FilterStage(request.getFilter(), request.getMask()));
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere stages, o filter y mask");
+        }
+        return uploadService.complete(uploadId, userId, stages, ProcessingEngine.from(request.getEngine()));
+    }
+
+    private static ResponseEntity<ResumableUploadResponse> withOffset(ResumableUploadResponse upload) {
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                .body(upload);
+    }
+}
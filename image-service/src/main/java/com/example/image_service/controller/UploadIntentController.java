@@ -0,0 +1,60 @@
+package com.example.image_service.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.dto.ImageUploadResponse;
+import com.example.image_service.dto.UploadConfirmRequest;
+import com.example.image_service.dto.UploadIntentRequest;
+import com.example.image_service.dto.UploadIntentResponse;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
+import com.example.image_service.service.UploadIntentService;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/images/upload-intents")
+@RequiredArgsConstructor
+public class UploadIntentController {
+
+    private final UploadIntentService intentService;
+
+    @Value("${image.pipeline.max-stages:5}")
+    private int maxStages;
+
+    // 1) URL firmada para subir el archivo directo al almacenamiento
+    @PostMapping
+    public Mono<ResponseEntity<UploadIntentResponse>> create(
+            @RequestHeader("X-User-Uid") String userId,
+            @RequestBody UploadIntentRequest request
+    ) {
+        return intentService.create(userId, request.getSize(), request.getContentType())
+                .map(intent -> ResponseEntity.status(HttpStatus.CREATED).body(intent));
+    }
+
+    // 2) Tras subirlo: validar y procesar el objeto por su clave
+    @PostMapping("/{intentId}/confirm")
+    public Mono<ImageUploadResponse> confirm(
+            @RequestHeader("X-User-Uid") String userId,
+            @PathVariable String intentId,
+            @RequestBody UploadConfirmRequest request
+    ) {
+        List<FilterStage> stages;
+        if (StringUtils.hasText(request.getStages())) {
+            stages = FilterStage.parse(request.getStages(), maxStages);
+        } else if (StringUtils.hasText(request.getFilter()) && request.getMask() != null) {
+            stages = List.of(new FilterStage(request.getFilter(), request.getMask()));
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere stages, o filter y mask");
+        }
+        return intentService.confirm(intentId, userId, stages, ProcessingEngine.from(request.getEngine()));
+    }
+}
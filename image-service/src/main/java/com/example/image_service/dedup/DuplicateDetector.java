@@ -0,0 +1,108 @@
+package com.example.image_service.dedup;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.image_service.upload.SpooledImage;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Detecta re-subidas de la misma foto con cambios leves (recompresión,
+ * cambio de tamaño), que por SHA-256 son contenido nuevo.
+ *
+ * Cada original se registra por su SHA-256 con su dHash en un HashIndex en
+ * memoria (se pierde al reiniciar). La imagen se decodifica submuestreada a
+ * unos 256 px: el dHash solo mira promedios de una grilla de 9x8.
+ */
+@Slf4j
+@Component
+public class DuplicateDetector {
+
+    private static final int DECODE_SIZE = 256;
+
+    private final HashIndex index;
+    private final boolean enabled;
+    private final int maxDistance;
+    private final int reuseDistance;
+
+    public DuplicateDetector(
+            @Value("${image.dedup.enabled:true}") boolean enabled,
+            @Value("${image.dedup.max-entries:200000}") int maxEntries,
+            @Value("${image.dedup.max-distance:6}") int maxDistance,
+            @Value("${image.dedup.reuse-distance:-1}") int reuseDistance
+    ) {
+        if (maxDistance < 0 || maxDistance > HashIndex.MAX_DISTANCE) {
+            throw new IllegalArgumentException("image.dedup.max-distance debe estar entre 0 y " + HashIndex.MAX_DISTANCE);
+        }
+        this.enabled = enabled;
+        this.index = new HashIndex(maxEntries);
+        this.maxDistance = maxDistance;
+        this.reuseDistance = Math.min(reuseDistance, maxDistance);
+    }
+
+    /**
+     * Original ya visto más parecido (distancia <= max-distance, otro
+     * SHA-256), o vacío. Registra la imagen para las siguientes subidas. Un
+     * error al decodificar no falla la subida: solo se omite la detección.
+     */
+    public Mono<HashIndex.Match> check(SpooledImage image) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+                    long hash = PerceptualHash.dHash(decodeSmall(image));
+                    HashIndex.Match match = index.nearest(hash, maxDistance, image.sha256());
+                    index.add(image.sha256(), hash);
+                    return match;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("No se pudo calcular el hash perceptual de {}", image.sha256(), error);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Si el resultado procesado de match puede reutilizarse en lugar de
+     * procesar la imagen nueva (image.dedup.reuse-distance; -1 nunca).
+     */
+    public boolean canReuse(HashIndex.Match match) {
+        return match != null && match.distance() <= reuseDistance;
+    }
+
+    public boolean reusesResults() {
+        return enabled && reuseDistance >= 0;
+    }
+
+    private static BufferedImage decodeSmall(SpooledImage image) throws Exception {
+        try (InputStream input = image.openStream();
+             ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Formato de imagen no reconocido");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / DECODE_SIZE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
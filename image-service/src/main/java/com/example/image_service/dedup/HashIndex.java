@@ -0,0 +1,179 @@
+package com.example.image_service.dedup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Índice en memoria de hashes de 64 bits para buscar el más cercano por
+ * distancia de Hamming (multi-index hashing).
+ *
+ * Cada hash se parte en 4 bloques de 16 bits y se anota en una tabla por
+ * bloque. Si dos hashes difieren en r bits o menos, al menos uno de sus
+ * bloques difiere en r / 4 bits o menos (principio del palomar), así que
+ * basta con recorrer, en cada tabla, los buckets a esa distancia del bloque
+ * buscado: la búsqueda es exacta y solo compara unos cientos o miles de
+ * candidatos aun con millones de entradas (ver HashIndexBenchmark). Cada
+ * bucket guarda los hashes junto a sus posiciones, así que los candidatos se
+ * recorren en memoria contigua sin saltar al arreglo general.
+ *
+ * Acotado a capacity entradas; al llenarse reemplaza la más antigua.
+ * Lecturas concurrentes, escrituras exclusivas.
+ */
+public final class HashIndex {
+
+    public static final int MAX_DISTANCE = 15;
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+    // MASKS[r]: máscaras de 16 bits con a lo sumo r bits en 1
+    private static final int[][] MASKS = new int[MAX_DISTANCE / CHUNKS + 1][];
+
+    static {
+        for (int radius = 0; radius < MASKS.length; radius++) {
+            int r = radius;
+            MASKS[radius] = IntStream.range(0, BUCKETS)
+                    .filter(mask -> Integer.bitCount(mask) <= r)
+                    .toArray();
+        }
+    }
+
+    private final int capacity;
+    private final long[] hashes;
+    private final String[] ids;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final int[][][] bucketSlots = new int[CHUNKS][BUCKETS][];
+    private final long[][][] bucketHashes = new long[CHUNKS][BUCKETS][];
+    private final int[][] bucketSizes = new int[CHUNKS][BUCKETS];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int next;
+
+    public HashIndex(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity debe ser positiva");
+        }
+        this.capacity = capacity;
+        this.hashes = new long[capacity];
+        this.ids = new String[capacity];
+    }
+
+    /**
+     * Agrega el hash bajo el id; si el id ya estaba no hace nada.
+     */
+    public void add(String id, long hash) {
+        lock.writeLock().lock();
+        try {
+            if (slots.containsKey(id)) {
+                return;
+            }
+            int slot = next;
+            next = (next + 1) % capacity;
+            if (ids[slot] != null) {
+                slots.remove(ids[slot]);
+                for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                    removeFromBucket(chunk, chunk(hashes[slot], chunk), slot);
+                }
+            }
+            hashes[slot] = hash;
+            ids[slot] = id;
+            slots.put(id, slot);
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                addToBucket(chunk, chunk(hash, chunk), slot, hash);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Entrada más cercana a hash con distancia <= maxDistance, sin contar la
+     * de excludeId (la misma imagen); null si no hay ninguna.
+     */
+    public Match nearest(long hash, int maxDistance, String excludeId) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance debe estar entre 0 y " + MAX_DISTANCE);
+        }
+        int[] masks = MASKS[maxDistance / CHUNKS];
+        lock.readLock().lock();
+        try {
+            int bestSlot = -1;
+            int bestDistance = maxDistance + 1;
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int value = chunk(hash, chunk);
+                int[][] slotTable = bucketSlots[chunk];
+                long[][] hashTable = bucketHashes[chunk];
+                int[] sizes = bucketSizes[chunk];
+                for (int mask : masks) {
+                    int bucket = value ^ mask;
+                    long[] candidates = hashTable[bucket];
+                    for (int i = 0, n = sizes[bucket]; i < n; i++) {
+                        int distance = Long.bitCount(hash ^ candidates[i]);
+                        if (distance < bestDistance) {
+                            int slot = slotTable[bucket][i];
+                            if (!ids[slot].equals(excludeId)) {
+                                bestDistance = distance;
+                                bestSlot = slot;
+                            }
+                        }
+                    }
+                }
+            }
+            return bestSlot < 0 ? null : new Match(ids[bestSlot], hashes[bestSlot], bestDistance);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int chunk(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & (BUCKETS - 1);
+    }
+
+    private void addToBucket(int chunk, int bucket, int slot, long hash) {
+        int[] slots = bucketSlots[chunk][bucket];
+        long[] values = bucketHashes[chunk][bucket];
+        int size = bucketSizes[chunk][bucket];
+        if (slots == null) {
+            slots = new int[2];
+            values = new long[2];
+        } else if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        slots[size] = slot;
+        values[size] = hash;
+        bucketSlots[chunk][bucket] = slots;
+        bucketHashes[chunk][bucket] = values;
+        bucketSizes[chunk][bucket] = size + 1;
+    }
+
+    // El orden dentro del bucket no importa: el último ocupa el hueco
+    private void removeFromBucket(int chunk, int bucket, int slot) {
+        int[] slots = bucketSlots[chunk][bucket];
+        long[] values = bucketHashes[chunk][bucket];
+        int size = bucketSizes[chunk][bucket];
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[size - 1];
+                values[i] = values[size - 1];
+                bucketSizes[chunk][bucket] = size - 1;
+                return;
+            }
+        }
+    }
+
+    public record Match(String id, long hash, int distance) {
+    }
+}
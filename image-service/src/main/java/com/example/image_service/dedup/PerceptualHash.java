@@ -0,0 +1,61 @@
+package com.example.image_service.dedup;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * dHash de 64 bits: la imagen se reduce a una grilla de 9x8 promedios de
+ * luminancia y cada bit indica si una celda es más oscura que su vecina de la
+ * derecha. Resiste recompresión, cambios de tamaño y ajustes leves de brillo;
+ * dos fotos iguales con esos cambios quedan a pocos bits de distancia.
+ */
+public final class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+    // muestras por eje dentro de cada celda
+    private static final int SAMPLES = 16;
+
+    private PerceptualHash() {
+    }
+
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] luma = new double[COLUMNS * ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            int y0 = row * height / ROWS;
+            int y1 = Math.max(y0 + 1, (row + 1) * height / ROWS);
+            int stepY = Math.max(1, (y1 - y0) / SAMPLES);
+            for (int column = 0; column < COLUMNS; column++) {
+                int x0 = column * width / COLUMNS;
+                int x1 = Math.max(x0 + 1, (column + 1) * width / COLUMNS);
+                int stepX = Math.max(1, (x1 - x0) / SAMPLES);
+                double sum = 0;
+                int count = 0;
+                for (int y = y0; y < y1 && y < height; y += stepY) {
+                    for (int x = x0; x < x1 && x < width; x += stepX) {
+                        int rgb = image.getRGB(x, y);
+                        sum += 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                        count++;
+                    }
+                }
+                luma[row * COLUMNS + column] = sum / Math.max(1, count);
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                hash <<= 1;
+                if (luma[row * COLUMNS + column] < luma[row * COLUMNS + column + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.image_service.dto;
 
+import java.util.Map;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -8,4 +10,8 @@ import lombok.Data;
 public class AvatarUploadResponse {
     private String avatarUrl;
     private long uploadedAt;
+    // ancho en px -> URL de la variante JPEG
+    private Map<String, String> variants;
+    // BlurHash, color dominante y dimensiones; null si no se pudo calcular
+    private ImagePlaceholder placeholder;
 }
@@ -0,0 +1,19 @@
+package com.example.image_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Datos para pintar la imagen antes de descargarla: BlurHash, color
+ * dominante (#rrggbb) y dimensiones originales.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImagePlaceholder {
+    private String blurHash;
+    private String dominantColor;
+    private int width;
+    private int height;
+}
@@ -1,5 +1,7 @@
 package com.example.image_service.dto;
 
+import java.util.Map;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -8,4 +10,9 @@ import lombok.Data;
 public class ImageUploadResponse {
     private String originalUrl;
     private String processedUrl;
+    // ancho en px -> URL de la variante JPEG de la imagen procesada
+    private Map<String, String> variants;
+    // BlurHash, color dominante y dimensiones; null si no se pudo calcular
+    private ImagePlaceholder placeholder;
+    private ProcessingMetadata metadata;
 }
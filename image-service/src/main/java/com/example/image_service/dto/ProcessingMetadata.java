@@ -0,0 +1,41 @@
+package com.example.image_service.dto;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Datos de ejecución de un procesamiento. Los campos de CUDA usan los mismos
+ * nombres que CudaMetadata de post-service, para poder reenviarlos tal cual.
+ * Los tiempos están en milisegundos; en un acierto de caché (cached = true)
+ * solo se informan los tiempos propios de la solicitud. En un pipeline de
+ * varias etapas filterType las une con '+' y stages trae el tiempo de cada una.
+ */
+@Data
+@NoArgsConstructor
+public class ProcessingMetadata {
+    private String engine;
+    private String filterType;
+    private Integer kernelSize;
+    private Integer width;
+    private Integer height;
+    private Double gpuTimeMs;
+    private Integer blocksX;
+    private Integer blocksY;
+    private Integer threadsX;
+    private Integer threadsY;
+    private Integer threadsPerBlock;
+    private List<StageMetadata> stages;
+
+    private boolean cached = true;
+    private Double queueWaitMs;
+    private Double processingMs;
+    private Double originalUploadMs;
+    private Double processedUploadMs;
+    private Double totalMs;
+
+    // original ya visto casi igual (SHA-256) y su distancia en bits de dHash
+    private String nearDuplicateOf;
+    private Integer duplicateDistance;
+}
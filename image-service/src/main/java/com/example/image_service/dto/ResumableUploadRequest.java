@@ -0,0 +1,11 @@
+package com.example.image_service.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ResumableUploadRequest {
+    // bytes totales que el cliente va a enviar en trozos
+    private long size;
+}
@@ -0,0 +1,17 @@
+package com.example.image_service.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ResumableUploadResponse {
+    private String uploadId;
+    private long size;
+    // bytes ya guardados: el próximo trozo empieza aquí
+    private long offset;
+    // se borra si no recibe trozos hasta entonces
+    private Instant expiresAt;
+}
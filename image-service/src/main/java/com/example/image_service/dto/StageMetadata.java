@@ -0,0 +1,17 @@
+package com.example.image_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tiempo de una etapa de un pipeline de filtros (en la GPU o en la CPU).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StageMetadata {
+    private String filterType;
+    private int kernelSize;
+    private Double timeMs;
+}
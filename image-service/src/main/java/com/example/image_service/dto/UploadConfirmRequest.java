@@ -0,0 +1,17 @@
+package com.example.image_service.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filtro a aplicar al objeto subido: filter + mask, o stages como en
+ * /images/pipeline (p. ej. "gaussian:5,sobel:3").
+ */
+@Data
+@NoArgsConstructor
+public class UploadConfirmRequest {
+    private String filter;
+    private Integer mask;
+    private String stages;
+    private String engine;
+}
@@ -0,0 +1,13 @@
+package com.example.image_service.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class UploadIntentRequest {
+    // bytes que el cliente va a subir
+    private long size;
+    // image/png, image/jpeg o image/webp
+    private String contentType;
+}
@@ -0,0 +1,23 @@
+package com.example.image_service.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UploadIntentResponse {
+    // token para POST /images/upload-intents/{intentId}/confirm
+    private String intentId;
+    private String key;
+    // el cliente sube el archivo aquí, con method y headers
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers;
+    // fin de la validez de uploadUrl
+    private Instant expiresAt;
+    // fin del plazo para confirmar
+    private Instant confirmBy;
+}
@@ -0,0 +1,612 @@
+package com.example.image_service.engine;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Implementación en Java de los filtros de cuda_service, usada cuando la GPU
+ * no está disponible o cuando se pide explícitamente engine=cpu.
+ *
+ * Trabaja sobre arreglos primitivos y reparte la imagen en franjas de filas
+ * en un ForkJoinPool propio. Gaussiano, Sobel y media son separables y se
+ * aplican en dos pasadas (horizontal y vertical) con el mismo recorte de
+ * bordes que los kernels CUDA; los bucles internos recorren filas contiguas
+ * para que el JIT los vectorice. Los resultados coinciden con la GPU salvo
+ * redondeos de float (±1 nivel) y el reescalado del marco UPS.
+ */
+@Slf4j
+@Component
+public class CpuFilterEngine {
+
+    public static final Set<String> FILTERS = Set.of("gaussian", "sobel", "emboss", "mean", "ups", "oil_paint");
+
+    private static final Set<String> MASK_FILTERS = Set.of("gaussian", "sobel", "emboss");
+    private static final int TILE_ROWS = 16;
+    private static final int OIL_BINS = 32;
+
+    private final ForkJoinPool pool;
+    private final BufferedImage upsFrame;
+
+    public CpuFilterEngine(@Value("${image.cpu.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.upsFrame = loadUpsFrame();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Decodifica, filtra y devuelve el PNG resultante. Bloqueante: debe
+     * llamarse fuera del event loop.
+     */
+    public Output apply(InputStream input, String filter, int kernelSize) throws IOException {
+        return apply(input, List.of(new FilterStage(filter, kernelSize)));
+    }
+
+    /**
+     * Aplica las etapas en orden sobre el mismo raster: se decodifica y se
+     * codifica una sola vez, sin PNG intermedios.
+     */
+    public Output apply(InputStream input, List<FilterStage> stages) throws IOException {
+        BufferedImage source = ImageIO.read(input);
+        if (source == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se pudo leer la imagen");
+        }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double[] stageMs = new double[stages.size()];
+        BufferedImage result = apply(source, stages, stageMs);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height);
+        ImageIO.write(result, "png", out);
+        return new Output(out.toByteArray(), width, height, stageMs);
+    }
+
+    /**
+     * Igual que apply(InputStream, ...) sobre una imagen ya decodificada, sin
+     * codificar el resultado. Deja el tiempo de cada etapa en stageMs.
+     */
+    public BufferedImage apply(BufferedImage source, List<FilterStage> stages, double[] stageMs) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        for (FilterStage stage : stages) {
+            validate(stage.filter(), stage.kernelSize(), width, height);
+        }
+
+        int[] rgb = readRgb(source);
+        BufferedImage result = source;
+        for (int i = 0; i < stages.size(); i++) {
+            long start = System.nanoTime();
+            if (i > 0) {
+                rgb = readRgb(result);
+            }
+            result = filter(rgb, width, height, stages.get(i));
+            stageMs[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        return result;
+    }
+
+    /**
+     * PNG resultante, dimensiones y tiempo de cada etapa en ms.
+     */
+    public record Output(byte[] png, int width, int height, double[] stageMs) {
+    }
+
+    private BufferedImage filter(int[] rgb, int width, int height, FilterStage stage) {
+        int kernelSize = stage.kernelSize();
+        return switch (stage.filter()) {
+            case "gaussian" -> rgbImage(gaussian(rgb, width, height, kernelSize), width, height);
+            case "mean" -> rgbImage(mean(rgb, width, height, kernelSize), width, height);
+            case "oil_paint" -> rgbImage(oilPaint(rgb, width, height, kernelSize), width, height);
+            case "ups" -> withUpsFrame(rgbImage(ups(rgb, width, height), width, height));
+            case "sobel" -> grayImage(sobel(luma(rgb, width, height), width, height, kernelSize), width, height);
+            default -> grayImage(emboss(luma(rgb, width, height), width, height, kernelSize), width, height);
+        };
+    }
+
+    // Mismas reglas y mensajes que cuda_service
+    private static void validate(String type, int kernelSize, int width, int height) {
+        if (!FILTERS.contains(type)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "filter_type debe ser uno de: 'gaussian', 'sobel', 'emboss', 'mean', 'ups', 'oil_paint'.");
+        }
+        if (MASK_FILTERS.contains(type) && (kernelSize < 3 || kernelSize % 2 == 0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "kernel_size debe ser un entero impar y >= 3.");
+        }
+        if (kernelSize < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "kernel_size debe ser >= 1.");
+        }
+        int minDim = Math.min(width, height);
+        if (kernelSize > minDim) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El kernel " + kernelSize + "x" + kernelSize + " es demasiado grande para la imagen de "
+                            + width + "x" + height + ". Debe ser <= " + minDim + ".");
+        }
+    }
+
+    // ===============================================================
+    // Filtros
+    // ===============================================================
+
+    private int[] gaussian(int[] rgb, int width, int height, int kernelSize) {
+        float[] kernel = FilterMasks.gaussian1d(kernelSize);
+        float[][] planes = splitChannels(rgb, width, height);
+        float[] tmp = new float[width * height];
+        for (float[] plane : planes) {
+            horizontal(plane, width, height, kernel, tmp);
+            vertical(tmp, width, height, kernel, plane);
+        }
+        return mergeChannels(planes, width, height);
+    }
+
+    private int[] mean(int[] rgb, int width, int height, int n) {
+        float[] ones = new float[n];
+        Arrays.fill(ones, 1.0f);
+        float denom = (float) (n * n);
+        float[][] planes = splitChannels(rgb, width, height);
+        float[] tmp = new float[width * height];
+        for (float[] plane : planes) {
+            // Las sumas son enteras y exactas en float: mismo resultado que la GPU
+            horizontal(plane, width, height, ones, tmp);
+            vertical(tmp, width, height, ones, plane);
+            forEachTile(height, (from, to) -> {
+                for (int i = from * width, end = to * width; i < end; i++) {
+                    float value = Math.min(255.0f, plane[i] / denom);
+                    plane[i] = (int) (value + 0.5f);
+                }
+            });
+        }
+        return mergeChannels(planes, width, height);
+    }
+
+    private int[] sobel(int[] gray, int width, int height, int n) {
+        // Kx[i][j] = (j - c) * (|i - c| + 1) y Ky es su transpuesta: ambas separables
+        int c = n / 2;
+        float[] offset = new float[n];
+        float[] weight = new float[n];
+        for (int i = 0; i < n; i++) {
+            offset[i] = i - c;
+            weight[i] = Math.abs(i - c) + 1;
+        }
+
+        float[] src = toFloat(gray);
+        float[] byOffset = new float[width * height];
+        float[] byWeight = new float[width * height];
+        horizontal(src, width, height, offset, byOffset);
+        horizontal(src, width, height, weight, byWeight);
+        float[] gx = src;
+        float[] gy = new float[width * height];
+        vertical(byOffset, width, height, weight, gx);
+        vertical(byWeight, width, height, offset, gy);
+
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                gx[i] = (float) Math.sqrt(gx[i] * gx[i] + gy[i] * gy[i]);
+            }
+        });
+
+        float max = 0.0f;
+        for (float value : gx) {
+            max = Math.max(max, value);
+        }
+        float maxVal = max == 0.0f ? 1.0f : max;
+
+        int[] out = new int[width * height];
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                float value = (gx[i] / maxVal) * 255.0f;
+                out[i] = (int) Math.max(0.0f, Math.min(255.0f, value));
+            }
+        });
+        return out;
+    }
+
+    private int[] emboss(int[] gray, int width, int height, int k) {
+        // Cada fila del kernel es -s a la izquierda de la antidiagonal y +s a la
+        // derecha: con sumas prefijas por fila el costo es O(k) por píxel
+        int r = k / 2;
+        int diag = k - 1;
+        int stride = width + k;
+        float scale = FilterMasks.embossScale(k);
+
+        int[] prefix = new int[height * stride];
+        forEachTile(height, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int base = y * stride;
+                int row = y * width;
+                for (int p = 0; p < stride - 1; p++) {
+                    prefix[base + p + 1] = prefix[base + p] + gray[row + clamp(p - r, width)];
+                }
+            }
+        });
+
+        int[] out = new int[width * height];
+        forEachTile(height, (from, to) -> {
+            int[] acc = new int[width];
+            for (int y = from; y < to; y++) {
+                Arrays.fill(acc, 0);
+                for (int i = 0; i < k; i++) {
+                    int base = clamp(y + i - r, height) * stride;
+                    int split = diag - i;
+                    for (int x = 0; x < width; x++) {
+                        int negative = prefix[base + x + split] - prefix[base + x];
+                        int positive = prefix[base + x + k] - prefix[base + x + split + 1];
+                        acc[x] += positive - negative;
+                    }
+                }
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    float value = acc[x] * scale + 128.0f;
+                    out[row + x] = (int) Math.max(0.0f, Math.min(255.0f, value));
+                }
+            }
+        });
+        return out;
+    }
+
+    private int[] oilPaint(int[] rgb, int width, int height, int kernelSize) {
+        int r = kernelSize / 2;
+        byte[] bins = new byte[width * height];
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                int p = rgb[i];
+                int intensity = (((p >> 16) & 0xFF) + ((p >> 8) & 0xFF) + (p & 0xFF)) / 3;
+                bins[i] = (byte) Math.min(OIL_BINS - 1, (intensity * OIL_BINS) / 256);
+            }
+        });
+
+        // Histograma deslizante: al avanzar en x solo entra y sale una columna
+        int[] out = new int[width * height];
+        forEachTile(height, (from, to) -> {
+            int[] hist = new int[OIL_BINS];
+            int[] sumR = new int[OIL_BINS];
+            int[] sumG = new int[OIL_BINS];
+            int[] sumB = new int[OIL_BINS];
+            for (int y = from; y < to; y++) {
+                int y0 = Math.max(0, y - r);
+                int y1 = Math.min(height - 1, y + r);
+                Arrays.fill(hist, 0);
+                Arrays.fill(sumR, 0);
+                Arrays.fill(sumG, 0);
+                Arrays.fill(sumB, 0);
+                for (int col = 0; col <= Math.min(r, width - 1); col++) {
+                    accumulateColumn(rgb, bins, width, col, y0, y1, 1, hist, sumR, sumG, sumB);
+                }
+                for (int x = 0; x < width; x++) {
+                    if (x > 0) {
+                        if (x - 1 - r >= 0) {
+                            accumulateColumn(rgb, bins, width, x - 1 - r, y0, y1, -1, hist, sumR, sumG, sumB);
+                        }
+                        if (x + r < width) {
+                            accumulateColumn(rgb, bins, width, x + r, y0, y1, 1, hist, sumR, sumG, sumB);
+                        }
+                    }
+                    int maxBin = 0;
+                    int maxCount = 0;
+                    for (int b = 0; b < OIL_BINS; b++) {
+                        if (hist[b] > maxCount) {
+                            maxCount = hist[b];
+                            maxBin = b;
+                        }
+                    }
+                    out[y * width + x] = (sumR[maxBin] / maxCount) << 16
+                            | (sumG[maxBin] / maxCount) << 8
+                            | (sumB[maxBin] / maxCount);
+                }
+            }
+        });
+        return out;
+    }
+
+    private static void accumulateColumn(int[] rgb, byte[] bins, int width, int col, int y0, int y1, int sign,
+                                         int[] hist, int[] sumR, int[] sumG, int[] sumB) {
+        for (int y = y0; y <= y1; y++) {
+            int i = y * width + col;
+            int p = rgb[i];
+            int bin = bins[i];
+            hist[bin] += sign;
+            sumR[bin] += sign * ((p >> 16) & 0xFF);
+            sumG[bin] += sign * ((p >> 8) & 0xFF);
+            sumB[bin] += sign * (p & 0xFF);
+        }
+    }
+
+    private int[] ups(int[] rgb, int width, int height) {
+        int[] out = new int[width * height];
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                out[i] = upsPixel(rgb[i]);
+            }
+        });
+        return out;
+    }
+
+    // Misma aritmética float que ups_color_highlight en CUDA
+    static int upsPixel(int p) {
+        int r8 = (p >> 16) & 0xFF;
+        int g8 = (p >> 8) & 0xFF;
+        int b8 = p & 0xFF;
+        float r = r8 / 255.0f;
+        float g = g8 / 255.0f;
+        float b = b8 / 255.0f;
+
+        float maxv = Math.max(r, Math.max(g, b));
+        float minv = Math.min(r, Math.min(g, b));
+        float delta = maxv - minv;
+
+        float hueDeg = 0.0f;
+        if (delta > 1e-6f) {
+            if (maxv == r) {
+                hueDeg = 60.0f * (((g - b) / delta) % 6.0f);
+            } else if (maxv == g) {
+                hueDeg = 60.0f * (((b - r) / delta) + 2.0f);
+            } else {
+                hueDeg = 60.0f * (((r - g) / delta) + 4.0f);
+            }
+            if (hueDeg < 0.0f) {
+                hueDeg += 360.0f;
+            }
+        }
+        float s = maxv <= 0.0f ? 0.0f : delta / maxv;
+
+        int hue = (int) (hueDeg / 2.0f + 0.5f);
+        int sat = (int) (s * 255.0f + 0.5f);
+        int val = (int) (maxv * 255.0f + 0.5f);
+
+        boolean inBlue = hue >= 90 && hue <= 140 && sat >= 50 && val >= 40;
+        boolean inYellow = hue >= 15 && hue <= 40 && sat >= 70 && val >= 70;
+        if (inBlue || inYellow) {
+            return p & 0xFFFFFF;
+        }
+        int gray = (int) (0.299f * r8 + 0.587f * g8 + 0.114f * b8);
+        return gray << 16 | gray << 8 | gray;
+    }
+
+    private BufferedImage withUpsFrame(BufferedImage base) {
+        if (upsFrame == null) {
+            return base;
+        }
+        Graphics2D graphics = base.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(upsFrame, 0, 0, base.getWidth(), base.getHeight(), null);
+        } finally {
+            graphics.dispose();
+        }
+        return base;
+    }
+
+    // ===============================================================
+    // Convolución separable por filas
+    // ===============================================================
+
+    private void horizontal(float[] src, int width, int height, float[] kernel, float[] dst) {
+        int r = kernel.length / 2;
+        forEachTile(height, (from, to) -> {
+            float[] padded = new float[width + kernel.length - 1];
+            float[] acc = new float[width];
+            for (int y = from; y < to; y++) {
+                int row = y * width;
+                for (int p = 0; p < padded.length; p++) {
+                    padded[p] = src[row + clamp(p - r, width)];
+                }
+                Arrays.fill(acc, 0.0f);
+                for (int j = 0; j < kernel.length; j++) {
+                    float kj = kernel[j];
+                    for (int x = 0; x < width; x++) {
+                        acc[x] += padded[x + j] * kj;
+                    }
+                }
+                System.arraycopy(acc, 0, dst, row, width);
+            }
+        });
+    }
+
+    private void vertical(float[] src, int width, int height, float[] kernel, float[] dst) {
+        int r = kernel.length / 2;
+        forEachTile(height, (from, to) -> {
+            float[] acc = new float[width];
+            for (int y = from; y < to; y++) {
+                Arrays.fill(acc, 0.0f);
+                for (int i = 0; i < kernel.length; i++) {
+                    int row = clamp(y + i - r, height) * width;
+                    float ki = kernel[i];
+                    for (int x = 0; x < width; x++) {
+                        acc[x] += src[row + x] * ki;
+                    }
+                }
+                System.arraycopy(acc, 0, dst, y * width, width);
+            }
+        });
+    }
+
+    private void forEachTile(int height, RowRange body) {
+        pool.invoke(new RowTiles(0, height, body));
+    }
+
+    @FunctionalInterface
+    private interface RowRange {
+        void apply(int fromRow, int toRow);
+    }
+
+    private static final class RowTiles extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final RowRange body;
+
+        RowTiles(int from, int to, RowRange body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TILE_ROWS) {
+                body.apply(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowTiles(from, mid, body), new RowTiles(mid, to, body));
+        }
+    }
+
+    // ===============================================================
+    // Conversión de píxeles
+    // ===============================================================
+
+    private static int clamp(int value, int size) {
+        return value < 0 ? 0 : (value >= size ? size - 1 : value);
+    }
+
+    // RGB empaquetado 0xRRGGBB; el alpha se descarta como en convert("RGB")
+    private static int[] readRgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        if (image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY
+                && raster.getSampleModel().getSampleSize(0) == 8) {
+            // getRGB aplicaría una corrección gamma a las imágenes en gris
+            int[] samples = raster.getSamples(0, 0, width, height, 0, (int[]) null);
+            for (int i = 0; i < samples.length; i++) {
+                int v = samples[i];
+                samples[i] = v << 16 | v << 8 | v;
+            }
+            return samples;
+        }
+        int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] &= 0xFFFFFF;
+        }
+        return rgb;
+    }
+
+    // Escala de grises con la fórmula entera de Pillow (modo "L")
+    private int[] luma(int[] rgb, int width, int height) {
+        int[] gray = new int[rgb.length];
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                int p = rgb[i];
+                gray[i] = (((p >> 16) & 0xFF) * 19595 + ((p >> 8) & 0xFF) * 38470 + (p & 0xFF) * 7471 + 0x8000) >> 16;
+            }
+        });
+        return gray;
+    }
+
+    private float[][] splitChannels(int[] rgb, int width, int height) {
+        float[][] planes = new float[3][rgb.length];
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                int p = rgb[i];
+                planes[0][i] = (p >> 16) & 0xFF;
+                planes[1][i] = (p >> 8) & 0xFF;
+                planes[2][i] = p & 0xFF;
+            }
+        });
+        return planes;
+    }
+
+    private int[] mergeChannels(float[][] planes, int width, int height) {
+        int[] rgb = new int[planes[0].length];
+        forEachTile(height, (from, to) -> {
+            for (int i = from * width, end = to * width; i < end; i++) {
+                rgb[i] = toByte(planes[0][i]) << 16 | toByte(planes[1][i]) << 8 | toByte(planes[2][i]);
+            }
+        });
+        return rgb;
+    }
+
+    // np.clip(..., 0, 255).astype(np.uint8): recorta y trunca
+    private static int toByte(float value) {
+        return (int) Math.max(0.0f, Math.min(255.0f, value));
+    }
+
+    private static float[] toFloat(int[] values) {
+        float[] out = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = values[i];
+        }
+        return out;
+    }
+
+    private static BufferedImage rgbImage(int[] rgb, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(rgb, 0, data, 0, rgb.length);
+        return image;
+    }
+
+    private static BufferedImage grayImage(int[] gray, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < gray.length; i++) {
+            data[i] = (byte) gray[i];
+        }
+        return image;
+    }
+
+    // Marco institucional recortado a su área visible, como en cuda_service
+    private static BufferedImage loadUpsFrame() {
+        try (InputStream in = CpuFilterEngine.class.getResourceAsStream("/filters/ups-frame.png")) {
+            if (in == null) {
+                log.warn("No se encontró el marco UPS; el filtro ups se aplicará sin marco");
+                return null;
+            }
+            BufferedImage frame = ImageIO.read(in);
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            int[] argb = frame.getRGB(0, 0, width, height, null, 0, width);
+
+            int minX = width, minY = height, maxX = -1, maxY = -1;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if ((argb[y * width + x] >>> 24) != 0) {
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        maxX = Math.max(maxX, x);
+                        maxY = Math.max(maxY, y);
+                    }
+                }
+            }
+            if (maxX < 0) {
+                return null;
+            }
+
+            int cropWidth = maxX - minX + 1;
+            int cropHeight = maxY - minY + 1;
+            BufferedImage cropped = new BufferedImage(cropWidth, cropHeight, BufferedImage.TYPE_INT_ARGB);
+            cropped.setRGB(0, 0, cropWidth, cropHeight, argb, minY * width + minX, width);
+            return cropped;
+        } catch (IOException e) {
+            log.warn("No se pudo cargar el marco UPS", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.image_service.engine;
+
+/**
+ * Máscaras equivalentes a cuda_service/cuda/mask_builder.py. Se guardan en
+ * float para reproducir la aritmética float32 de los kernels CUDA.
+ */
+final class FilterMasks {
+
+    private FilterMasks() {
+    }
+
+    /**
+     * Kernel gaussiano 1D normalizado; el 2D de la GPU es su producto externo.
+     */
+    static float[] gaussian1d(int maskSize) {
+        if (maskSize < 3) {
+            maskSize = 3;
+        }
+        if (maskSize % 2 == 0) {
+            maskSize++;
+        }
+        int r = (maskSize - 1) / 2;
+        double sigma = r > 0 ? r / 3.0 : 0.8;
+        double twoSigma2 = 2.0 * sigma * sigma;
+
+        double[] values = new double[maskSize];
+        double sum = 0.0;
+        for (int i = -r; i <= r; i++) {
+            values[i + r] = Math.exp(-(i * i) / twoSigma2);
+            sum += values[i + r];
+        }
+        float[] kernel = new float[maskSize];
+        for (int i = 0; i < maskSize; i++) {
+            kernel[i] = (float) (values[i] / sum);
+        }
+        return kernel;
+    }
+
+    /**
+     * Factor de escala del emboss: ±1 fuera de la antidiagonal, por
+     * 1/sqrt(celdas no nulas).
+     */
+    static float embossScale(int k) {
+        int nonZero = k * k - k;
+        return nonZero > 0 ? (float) (1.0 / Math.sqrt(nonZero)) : 1.0f;
+    }
+}
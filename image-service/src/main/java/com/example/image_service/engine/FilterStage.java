@@ -0,0 +1,95 @@
+package com.example.image_service.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Una etapa de un pipeline de filtros: filtro y tamaño de kernel.
+ */
+public record FilterStage(String filter, int kernelSize) {
+
+    private static final Set<String> ODD_KERNEL_FILTERS = Set.of("gaussian", "sobel", "emboss");
+
+    public FilterStage {
+        filter = filter == null ? "" : filter.trim().toLowerCase(Locale.ROOT);
+        // El nombre termina en claves de caché, rutas del índice en disco y
+        // nombres de objeto: solo se aceptan los filtros conocidos
+        if (!CpuFilterEngine.FILTERS.contains(filter)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "filter debe ser uno de: 'gaussian', 'sobel', 'emboss', 'mean', 'ups', 'oil_paint'.");
+        }
+    }
+
+    /**
+     * Parte de la clave de caché: "ups" ignora el tamaño de kernel.
+     */
+    public String cacheKey() {
+        return filter + "-" + ("ups".equals(filter) ? 0 : kernelSize);
+    }
+
+    /**
+     * La misma etapa sobre una imagen reducida por el factor dado: el kernel
+     * se escala para que el efecto se vea como en tamaño completo.
+     */
+    public FilterStage scaled(double scale) {
+        if ("ups".equals(filter) || scale >= 1.0) {
+            return this;
+        }
+        int scaledKernel = (int) Math.round(kernelSize * scale);
+        if (ODD_KERNEL_FILTERS.contains(filter)) {
+            // impar y >= 3, como exige la máscara
+            scaledKernel = Math.max(3, scaledKernel | 1);
+        }
+        return new FilterStage(filter, Math.max(1, scaledKernel));
+    }
+
+    /**
+     * Lee "gaussian:5,sobel:3,ups": etapas en orden, separadas por coma, con
+     * el kernel después de ':' (opcional solo para ups).
+     */
+    public static List<FilterStage> parse(String spec, int maxStages) {
+        if (!StringUtils.hasText(spec)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "stages es obligatorio");
+        }
+        List<FilterStage> stages = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pieces = part.trim().split(":");
+            String filter = pieces[0];
+            if (!CpuFilterEngine.FILTERS.contains(filter.trim().toLowerCase(Locale.ROOT)) || pieces.length > 2) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Etapa inválida: '" + part.trim() + "'");
+            }
+            int kernelSize = 1;
+            if (pieces.length == 1 && !"ups".equalsIgnoreCase(filter.trim())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falta el kernel en la etapa '" + part.trim() + "'");
+            }
+            if (pieces.length == 2) {
+                try {
+                    kernelSize = Integer.parseInt(pieces[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Etapa inválida: '" + part.trim() + "'");
+                }
+            }
+            stages.add(new FilterStage(filter, kernelSize));
+        }
+        if (stages.size() > maxStages) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Máximo " + maxStages + " etapas por solicitud");
+        }
+        return stages;
+    }
+
+    /**
+     * Forma canónica usada en las claves de caché y hacia cuda_service.
+     */
+    public static String format(List<FilterStage> stages) {
+        return stages.stream()
+                .map(stage -> stage.filter() + ":" + stage.kernelSize())
+                .collect(Collectors.joining(","));
+    }
+}
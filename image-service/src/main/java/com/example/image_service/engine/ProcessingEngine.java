@@ -0,0 +1,28 @@
+package com.example.image_service.engine;
+
+import java.util.Locale;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Dónde se aplica el filtro: en el servicio CUDA, en la JVM, o en la GPU con
+ * respaldo en CPU si la GPU no está disponible o rechaza la carga.
+ */
+public enum ProcessingEngine {
+    GPU,
+    CPU,
+    AUTO;
+
+    public static ProcessingEngine from(String value) {
+        if (!StringUtils.hasText(value)) {
+            return AUTO;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "engine debe ser 'gpu', 'cpu' o 'auto'");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.image_service.gpu;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Un nodo de cuda_service con su propio pool de conexiones y el estado que
+ * usa el balanceador: solicitudes en curso, latencia reciente (EWMA), salud
+ * según el chequeo activo y expulsión temporal por fallos consecutivos.
+ */
+public final class CudaWorker {
+
+    private final String url;
+    private final WebClient client;
+    private final ConnectionProvider connections;
+    private final double latencyAlpha;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private volatile boolean healthy = true;
+    private volatile long ejectedUntil;
+    private volatile double latencyMs;
+    private int consecutiveFailures;
+    private int ejections;
+
+    CudaWorker(String url, WebClient client, ConnectionProvider connections, double initialLatencyMs, double latencyAlpha) {
+        this.url = url;
+        this.client = client;
+        this.connections = connections;
+        this.latencyMs = initialLatencyMs;
+        this.latencyAlpha = latencyAlpha;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    WebClient client() {
+        return client;
+    }
+
+    ConnectionProvider connections() {
+        return connections;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    public double latencyMs() {
+        return latencyMs;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public boolean isEjected(long nowMillis) {
+        return nowMillis < ejectedUntil;
+    }
+
+    boolean isAvailable(long nowMillis) {
+        return healthy && !isEjected(nowMillis);
+    }
+
+    /**
+     * Costo estimado de enviarle una solicitud más: cola propia por latencia.
+     */
+    double score() {
+        return (outstanding.get() + 1) * latencyMs;
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    boolean markHealthy(boolean value) {
+        boolean changed = healthy != value;
+        healthy = value;
+        return changed;
+    }
+
+    synchronized void recordSuccess(double elapsedMs) {
+        latencyMs = latencyMs + latencyAlpha * (elapsedMs - latencyMs);
+        consecutiveFailures = 0;
+        ejections = 0;
+    }
+
+    /**
+     * Registra un fallo; devuelve true si el worker quedó expulsado. Cada
+     * expulsión seguida dura más que la anterior, hasta maxEjectionMs.
+     */
+    synchronized boolean recordFailure(long nowMillis, int threshold, long baseEjectionMs, long maxEjectionMs) {
+        if (++consecutiveFailures < threshold) {
+            return false;
+        }
+        consecutiveFailures = 0;
+        ejections++;
+        ejectedUntil = nowMillis + Math.min(maxEjectionMs, baseEjectionMs * ejections);
+        return true;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.image_service.gpu;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Pool de nodos cuda_service (python.urls).
+ *
+ * Cada solicitud va al worker disponible con menor (en curso + 1) × latencia
+ * reciente. Un chequeo activo a /health marca nodos caídos, y los fallos
+ * consecutivos (conexión, 5xx) expulsan al worker durante un tiempo
+ * creciente. Agregar nodos a la lista aumenta la capacidad sin cambios en
+ * los clientes.
+ */
+@Slf4j
+@Component
+public class CudaWorkerPool {
+
+    private final List<CudaWorker> workers;
+    private final Duration healthInterval;
+    private final Duration healthTimeout;
+    private final int failureThreshold;
+    private final long baseEjectionMs;
+    private final long maxEjectionMs;
+    private final long retryAfterSeconds;
+    private Disposable healthChecks;
+
+    public CudaWorkerPool(
+            MeterRegistry registry,
+            @Value("${python.urls:${python.url}}") String urls,
+            @Value("${image.workers.max-connections:16}") int maxConnections,
+            @Value("${image.workers.initial-latency-ms:500}") double initialLatencyMs,
+            @Value("${image.workers.latency-alpha:0.2}") double latencyAlpha,
+            @Value("${image.workers.health-interval-ms:5000}") long healthIntervalMs,
+            @Value("${image.workers.health-timeout-ms:2000}") long healthTimeoutMs,
+            @Value("${image.workers.failure-threshold:3}") int failureThreshold,
+            @Value("${image.workers.base-ejection-ms:10000}") long baseEjectionMs,
+            @Value("${image.workers.max-ejection-ms:120000}") long maxEjectionMs,
+            @Value("${image.gpu.retry-after-seconds:2}") long retryAfterSeconds
+    ) {
+        this.healthInterval = Duration.ofMillis(healthIntervalMs);
+        this.healthTimeout = Duration.ofMillis(healthTimeoutMs);
+        this.failureThreshold = failureThreshold;
+        this.baseEjectionMs = baseEjectionMs;
+        this.maxEjectionMs = maxEjectionMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        List<String> urlList = Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .distinct()
+                .toList();
+        if (urlList.isEmpty()) {
+            throw new IllegalStateException("python.urls no contiene ningún worker CUDA");
+        }
+
+        this.workers = urlList.stream()
+                .map(url -> createWorker(url, maxConnections, initialLatencyMs, latencyAlpha))
+                .toList();
+
+        for (CudaWorker worker : workers) {
+            Gauge.builder("image.gpu.worker.outstanding", worker, CudaWorker::outstanding)
+                    .tag("worker", worker.url())
+                    .register(registry);
+            Gauge.builder("image.gpu.worker.latency", worker, CudaWorker::latencyMs)
+                    .tag("worker", worker.url())
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("image.gpu.worker.available", worker, w -> w.isAvailable(System.currentTimeMillis()) ? 1 : 0)
+                    .tag("worker", worker.url())
+                    .register(registry);
+        }
+    }
+
+    private static CudaWorker createWorker(String url, int maxConnections, double initialLatencyMs, double latencyAlpha) {
+        ConnectionProvider connections = ConnectionProvider.builder("cuda-" + url)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient client = WebClient.builder()
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .codecs(configurer ->
+                    configurer
+                        .defaultCodecs()
+                        // aumentar límite a 50 MB para respuestas grandes
+                        .maxInMemorySize(50 * 1024 * 1024)
+                )
+                .build();
+        return new CudaWorker(url, client, connections, initialLatencyMs, latencyAlpha);
+    }
+
+    @PostConstruct
+    public void startHealthChecks() {
+        healthChecks = Flux.interval(Duration.ZERO, healthInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(workers).flatMap(this::checkHealth))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (healthChecks != null) {
+            healthChecks.dispose();
+        }
+        workers.forEach(worker -> worker.connections().dispose());
+    }
+
+    public List<CudaWorker> workers() {
+        return workers;
+    }
+
+    /**
+     * Ejecuta la llamada contra el mejor worker disponible. Si no se pudo
+     * conectar (la solicitud no llegó al nodo) se reintenta una vez en otro.
+     */
+    public <T> Mono<T> execute(Function<WebClient, Mono<T>> call) {
+        return execute(call, null);
+    }
+
+    private <T> Mono<T> execute(Function<WebClient, Mono<T>> call, CudaWorker excluded) {
+        return Mono.defer(() -> {
+            CudaWorker worker = select(excluded);
+            if (worker == null) {
+                return Mono.error(new GpuOverloadedException("No hay workers CUDA disponibles", retryAfterSeconds));
+            }
+
+            worker.acquire();
+            long start = System.nanoTime();
+            // defer: si call lanza al armar el Mono, doFinally igual devuelve el worker
+            Mono<T> result = Mono.defer(() -> call.apply(worker.client()))
+                    .doOnSuccess(value -> worker.recordSuccess(elapsedMs(start)))
+                    .doOnError(error -> {
+                        if (isWorkerFault(error) && worker.recordFailure(
+                                System.currentTimeMillis(), failureThreshold, baseEjectionMs, maxEjectionMs)) {
+                            log.warn("Worker CUDA {} expulsado temporalmente tras fallos consecutivos", worker.url());
+                        }
+                    })
+                    .doFinally(signal -> worker.release());
+
+            if (excluded != null || workers.size() == 1) {
+                return result;
+            }
+            return result.onErrorResume(WebClientRequestException.class, error -> execute(call, worker));
+        });
+    }
+
+    // Menor (en curso + 1) × latencia; los empates se rompen al azar
+    private CudaWorker select(CudaWorker excluded) {
+        long now = System.currentTimeMillis();
+        CudaWorker best = null;
+        double bestScore = Double.MAX_VALUE;
+        int ties = 0;
+        for (CudaWorker worker : workers) {
+            if (worker == excluded || !worker.isAvailable(now)) {
+                continue;
+            }
+            double score = worker.score();
+            if (score < bestScore) {
+                best = worker;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                best = worker;
+            }
+        }
+        return best;
+    }
+
+    private Mono<Void> checkHealth(CudaWorker worker) {
+        return worker.client().get()
+                .uri("/health")
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(healthTimeout)
+                .map(response -> true)
+                .onErrorReturn(false)
+                .doOnNext(healthy -> {
+                    if (worker.markHealthy(healthy)) {
+                        log.info("Worker CUDA {} {}", worker.url(), healthy ? "disponible" : "no responde al chequeo de salud");
+                    }
+                })
+                .then();
+    }
+
+    private static boolean isWorkerFault(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return error instanceof WebClientRequestException;
+    }
+
+    private static double elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.image_service.gpu;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Control de admisión frente al servicio CUDA.
+ *
+ * El número de llamadas simultáneas se ajusta con AIMD: crece en 1/limit por
+ * cada respuesta rápida y se multiplica por backoff-ratio cuando una llamada
+ * supera la latencia objetivo, expira o el servicio responde 429/503. Lo que
+ * no cabe espera en una cola acotada; si la cola está llena, o la espera
+ * supera queue-timeout, se responde 503 con Retry-After de inmediato en vez
+ * de acumular trabajo dentro del proceso Python.
+ */
+@Slf4j
+@Component
+public class GpuAdmissionController {
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int ABANDONED = 2;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double backoffRatio;
+    private final long latencyTargetNanos;
+    private final int queueCapacity;
+    private final Duration queueTimeout;
+    private final Duration callTimeout;
+    private final long retryAfterSeconds;
+
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedQueueTimeout;
+    private final Timer callTimer;
+
+    private double limit;
+    private int inFlight;
+
+    public GpuAdmissionController(
+            MeterRegistry registry,
+            @Value("${image.gpu.initial-limit:4}") int initialLimit,
+            @Value("${image.gpu.min-limit:1}") int minLimit,
+            @Value("${image.gpu.max-limit:32}") int maxLimit,
+            @Value("${image.gpu.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${image.gpu.latency-target-ms:2000}") long latencyTargetMs,
+            @Value("${image.gpu.queue-capacity:50}") int queueCapacity,
+            @Value("${image.gpu.queue-timeout-ms:10000}") long queueTimeoutMs,
+            @Value("${image.gpu.call-timeout-ms:30000}") long callTimeoutMs,
+            @Value("${image.gpu.retry-after-seconds:2}") long retryAfterSeconds
+    ) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.queueCapacity = queueCapacity;
+        this.queueTimeout = Duration.ofMillis(queueTimeoutMs);
+        this.callTimeout = Duration.ofMillis(callTimeoutMs);
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("image.gpu.queue.depth", this, GpuAdmissionController::queueDepth)
+                .description("Solicitudes esperando turno para la GPU")
+                .register(registry);
+        Gauge.builder("image.gpu.inflight", this, GpuAdmissionController::inFlight)
+                .description("Llamadas en curso al servicio CUDA")
+                .register(registry);
+        Gauge.builder("image.gpu.limit", this, GpuAdmissionController::currentLimit)
+                .description("Límite de concurrencia calculado por AIMD")
+                .register(registry);
+        this.rejectedQueueFull = Counter.builder("image.gpu.rejected")
+                .tag("reason", "queue_full")
+                .register(registry);
+        this.rejectedQueueTimeout = Counter.builder("image.gpu.rejected")
+                .tag("reason", "queue_timeout")
+                .register(registry);
+        this.callTimer = Timer.builder("image.gpu.call")
+                .description("Latencia de las llamadas admitidas")
+                .register(registry);
+    }
+
+    /**
+     * Ejecuta la llamada cuando haya un permiso libre. El permiso se mantiene
+     * hasta que el Mono devuelto termina, se cancela o expira.
+     */
+    public <T> Mono<T> admit(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Waiter waiter;
+            synchronized (lock) {
+                if (queue.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                    waiter = null;
+                } else if (queue.size() >= queueCapacity) {
+                    rejectedQueueFull.increment();
+                    return Mono.error(overloaded("El servicio de procesamiento está saturado"));
+                } else {
+                    waiter = new Waiter();
+                    queue.add(waiter);
+                }
+            }
+
+            Mono<Void> permit = waiter == null ? Mono.empty() : awaitTurn(waiter);
+            return permit.then(Mono.defer(() -> run(call)));
+        });
+    }
+
+    public int queueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public int inFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public double currentLimit() {
+        synchronized (lock) {
+            return limit;
+        }
+    }
+
+    private Mono<Void> awaitTurn(Waiter waiter) {
+        return waiter.granted.asMono()
+                .timeout(queueTimeout)
+                .onErrorMap(TimeoutException.class, e -> {
+                    if (abandon(waiter)) {
+                        rejectedQueueTimeout.increment();
+                    }
+                    return overloaded("Tiempo de espera agotado en la cola de procesamiento");
+                })
+                .doOnCancel(() -> abandon(waiter));
+    }
+
+    private <T> Mono<T> run(Supplier<Mono<T>> call) {
+        long start = System.nanoTime();
+        AtomicBoolean dropped = new AtomicBoolean();
+        // defer: si call lanza al armar el Mono, el error pasa por doFinally y el permiso se devuelve
+        return Mono.defer(call)
+                .timeout(callTimeout)
+                .doOnError(error -> dropped.set(isOverloadSignal(error)))
+                .doFinally(signal -> release(System.nanoTime() - start, dropped.get()));
+    }
+
+    // Devuelve true si la espera se abandonó antes de recibir permiso
+    private boolean abandon(Waiter waiter) {
+        if (waiter.state.compareAndSet(WAITING, ABANDONED)) {
+            synchronized (lock) {
+                queue.remove(waiter);
+            }
+            return true;
+        }
+        if (waiter.state.compareAndSet(GRANTED, ABANDONED)) {
+            // El permiso llegó a la vez que la cancelación: devolverlo sin medir
+            releasePermit();
+        }
+        return false;
+    }
+
+    private void release(long elapsedNanos, boolean dropped) {
+        callTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        synchronized (lock) {
+            if (dropped || elapsedNanos > latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight * 2 >= limit) {
+                // Solo crecer si el límite actual realmente se está usando
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        releasePermit();
+    }
+
+    private void releasePermit() {
+        List<Waiter> toGrant = new ArrayList<>();
+        synchronized (lock) {
+            inFlight--;
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                Waiter next = queue.poll();
+                if (next.state.compareAndSet(WAITING, GRANTED)) {
+                    inFlight++;
+                    toGrant.add(next);
+                }
+            }
+        }
+        toGrant.forEach(waiter -> waiter.granted.tryEmitEmpty());
+    }
+
+    private boolean isOverloadSignal(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == HttpStatus.SERVICE_UNAVAILABLE.value()
+                    || status == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return false;
+    }
+
+    private GpuOverloadedException overloaded(String reason) {
+        return new GpuOverloadedException(reason, retryAfterSeconds);
+    }
+
+    private static final class Waiter {
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final Sinks.Empty<Void> granted = Sinks.empty();
+    }
+}
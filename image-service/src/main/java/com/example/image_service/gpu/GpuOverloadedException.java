@@ -0,0 +1,30 @@
+package com.example.image_service.gpu;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * 503 con cabecera Retry-After; el manejador de WebFlux copia las cabeceras
+ * de la excepción a la respuesta.
+ */
+public class GpuOverloadedException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public GpuOverloadedException(String reason, long retryAfterSeconds) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
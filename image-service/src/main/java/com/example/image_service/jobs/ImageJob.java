@@ -0,0 +1,35 @@
+package com.example.image_service.jobs;
+
+import com.example.image_service.dto.ProcessingMetadata;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ImageJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private String id;
+    private Status status;
+    private int priority;
+    private long sequence;
+    private String filter;
+    private int mask;
+    private String sha256;
+    private long size;
+    private int attempts;
+    private long createdAt;
+    private long updatedAt;
+    private String originalUrl;
+    private String processedUrl;
+    private ProcessingMetadata metadata;
+    private String error;
+
+    @JsonIgnore
+    public boolean isTerminal() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.image_service.jobs;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.gpu.GpuOverloadedException;
+import com.example.image_service.service.ImageService;
+import com.example.image_service.upload.SpooledImage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Cola de procesamiento asíncrono en el propio proceso.
+ *
+ * Acotada (image.jobs.capacity), ordenada por prioridad y luego por orden de
+ * llegada, con un máximo de trabajos simultáneos ajustado a la capacidad de
+ * la GPU y reintentos con espera exponencial solo ante errores transitorios.
+ * Cada cambio de estado se persiste con ImageJobStore y se publica para los
+ * clientes SSE. Los trabajos terminados se conservan image.jobs.retention-ms
+ * para consultarlos y después se borran de memoria y del disco.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageJobQueue {
+
+    private static final Comparator<ImageJob> ORDER = Comparator
+            .comparingInt(ImageJob::getPriority).reversed()
+            .thenComparingLong(ImageJob::getSequence);
+
+    private final ImageService imageService;
+    private final ImageJobStore store;
+
+    private final PriorityQueue<ImageJob> pending = new PriorityQueue<>(ORDER);
+    private final Map<String, ImageJob> jobs = new ConcurrentHashMap<>();
+    private final Sinks.Many<ImageJob> updates = Sinks.many().multicast().directBestEffort();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+    private int running;
+    private Disposable cleanup;
+
+    @Value("${image.jobs.capacity:200}")
+    private int capacity;
+
+    @Value("${image.jobs.concurrency:2}")
+    private int concurrency;
+
+    @Value("${image.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${image.jobs.retry-backoff-ms:2000}")
+    private long retryBackoffMs;
+
+    @Value("${image.jobs.retention-ms:86400000}")
+    private long retentionMs;
+
+    @Value("${image.jobs.cleanup-interval-ms:600000}")
+    private long cleanupIntervalMs;
+
+    @PostConstruct
+    public void startCleanup() {
+        cleanup = Flux.interval(Duration.ofMillis(cleanupIntervalMs), Duration.ofMillis(cleanupIntervalMs),
+                        Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> removeExpired());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (cleanup != null) {
+            cleanup.dispose();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() throws IOException {
+        int recovered = 0;
+        int expired = 0;
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        for (ImageJob job : store.loadAll()) {
+            sequence.accumulateAndGet(job.getSequence() + 1, Math::max);
+            if (job.isTerminal() && job.getUpdatedAt() < cutoff) {
+                store.delete(job.getId());
+                expired++;
+                continue;
+            }
+            jobs.put(job.getId(), job);
+            if (!job.isTerminal()) {
+                job.setStatus(ImageJob.Status.QUEUED);
+                active.incrementAndGet();
+                synchronized (this) {
+                    pending.add(job);
+                }
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            log.info("Recuperados {} trabajos pendientes", recovered);
+        }
+        if (expired > 0) {
+            log.info("Eliminados {} trabajos terminados hace más de {} ms", expired, retentionMs);
+        }
+        drain();
+    }
+
+    /**
+     * Encola una imagen ya recibida: el contenido se copia al almacén de
+     * trabajos, así que quien creó el spool puede liberarlo al terminar.
+     */
+    public Mono<ImageJob> submit(SpooledImage spooled, int mask, String filter, int priority) {
+        return Mono.defer(() -> {
+            FilterStage stage = new FilterStage(filter, mask);
+            if (active.incrementAndGet() > capacity) {
+                active.decrementAndGet();
+                return Mono.error(queueFull());
+            }
+
+            long now = System.currentTimeMillis();
+            ImageJob job = new ImageJob();
+            job.setId(UUID.randomUUID().toString());
+            job.setStatus(ImageJob.Status.QUEUED);
+            job.setPriority(priority);
+            job.setSequence(sequence.getAndIncrement());
+            job.setFilter(stage.filter());
+            job.setMask(mask);
+            job.setSha256(spooled.sha256());
+            job.setSize(spooled.size());
+            job.setCreatedAt(now);
+            job.setUpdatedAt(now);
+
+            return spooled.persistTo(store.payloadPath(job.getId()))
+                    .then(persist(job))
+                    .doOnNext(this::enqueue)
+                    .doOnError(error -> active.decrementAndGet());
+        });
+    }
+
+    /**
+     * Falla con 503 si la cola ya está llena, para no recibir una imagen que
+     * submit rechazaría.
+     */
+    public Mono<Void> checkCapacity() {
+        return Mono.defer(() -> active.get() >= capacity ? Mono.error(queueFull()) : Mono.empty());
+    }
+
+    public Optional<ImageJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Estado actual seguido de cada cambio hasta que el trabajo termina.
+     */
+    public Flux<ImageJob> watch(String id) {
+        return Flux.merge(
+                        updates.asFlux().filter(job -> job.getId().equals(id)),
+                        Mono.justOrEmpty(jobs.get(id)))
+                .takeUntil(ImageJob::isTerminal);
+    }
+
+    public int pendingCount() {
+        synchronized (this) {
+            return pending.size();
+        }
+    }
+
+    public int runningCount() {
+        synchronized (this) {
+            return running;
+        }
+    }
+
+    private void enqueue(ImageJob job) {
+        jobs.put(job.getId(), job);
+        synchronized (this) {
+            pending.add(job);
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<ImageJob> toStart = new ArrayList<>();
+        synchronized (this) {
+            while (running < concurrency && !pending.isEmpty()) {
+                toStart.add(pending.poll());
+                running++;
+            }
+        }
+        toStart.forEach(this::execute);
+    }
+
+    private void execute(ImageJob job) {
+        job.setStatus(ImageJob.Status.RUNNING);
+        job.setAttempts(job.getAttempts() + 1);
+
+        // El archivo se conserva entre reintentos; se borra al terminar
+        SpooledImage payload = SpooledImage.onDisk(store.payloadPath(job.getId()), job.getSize(), job.getSha256());
+
+        persist(job)
+                .then(imageService.process(payload, job.getMask(), job.getFilter()))
+                .flatMap(result -> {
+                    job.setStatus(ImageJob.Status.SUCCEEDED);
+                    job.setOriginalUrl(result.getOriginalUrl());
+                    job.setProcessedUrl(result.getProcessedUrl());
+                    job.setMetadata(result.getMetadata());
+                    job.setError(null);
+                    return finish(job);
+                })
+                .onErrorResume(error -> handleFailure(job, error))
+                .doFinally(signal -> {
+                    synchronized (this) {
+                        running--;
+                    }
+                    drain();
+                })
+                .subscribe();
+    }
+
+    private Mono<ImageJob> handleFailure(ImageJob job, Throwable error) {
+        job.setError(error.getMessage());
+        if (!isTransient(error)) {
+            log.warn("Trabajo {} rechazado sin reintentos: {}", job.getId(), error.toString());
+            job.setStatus(ImageJob.Status.FAILED);
+            return finish(job);
+        }
+        if (job.getAttempts() >= maxAttempts) {
+            log.warn("Trabajo {} falló tras {} intentos", job.getId(), job.getAttempts(), error);
+            job.setStatus(ImageJob.Status.FAILED);
+            return finish(job);
+        }
+
+        job.setStatus(ImageJob.Status.QUEUED);
+        long backoff = retryBackoffMs << (job.getAttempts() - 1);
+        return persist(job)
+                .doOnNext(saved -> Mono.delay(Duration.ofMillis(backoff))
+                        .subscribe(tick -> enqueue(saved)));
+    }
+
+    // Saturación, 5xx o timeout de la GPU o del almacenamiento. Un 4xx (kernel
+    // más grande que la imagen, formato inválido) fallaría igual al reintentar
+    private boolean isTransient(Throwable error) {
+        if (error instanceof GpuOverloadedException) {
+            return true;
+        }
+        if (error instanceof ResponseStatusException status) {
+            return status.getStatusCode().is5xxServerError();
+        }
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException
+                || error instanceof IOException;
+    }
+
+    private void removeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        int removed = 0;
+        for (ImageJob job : jobs.values()) {
+            if (!job.isTerminal() || job.getUpdatedAt() >= cutoff) {
+                continue;
+            }
+            try {
+                store.delete(job.getId());
+                jobs.remove(job.getId());
+                removed++;
+            } catch (IOException e) {
+                log.warn("No se pudo borrar el trabajo {}", job.getId(), e);
+            }
+        }
+        if (removed > 0) {
+            log.info("Eliminados {} trabajos terminados hace más de {} ms", removed, retentionMs);
+        }
+    }
+
+    private Mono<ImageJob> finish(ImageJob job) {
+        active.decrementAndGet();
+        return persist(job)
+                .flatMap(saved -> Mono.fromCallable(() -> {
+                            store.deletePayload(saved.getId());
+                            return saved;
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<ImageJob> persist(ImageJob job) {
+        job.setUpdatedAt(System.currentTimeMillis());
+        return Mono.fromCallable(() -> {
+                    store.save(job);
+                    synchronized (updates) {
+                        updates.tryEmitNext(job);
+                    }
+                    return job;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ResponseStatusException queueFull() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "La cola de procesamiento está llena");
+    }
+}
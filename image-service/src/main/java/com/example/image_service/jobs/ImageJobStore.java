@@ -0,0 +1,73 @@
+package com.example.image_service.jobs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persistencia local de la cola: un JSON por trabajo más el archivo con la
+ * imagen original, para que los trabajos aceptados sobrevivan un reinicio.
+ */
+@Slf4j
+@Component
+public class ImageJobStore {
+
+    private final Path dir;
+    private final ObjectMapper mapper;
+
+    public ImageJobStore(
+            @Value("${image.jobs.dir:${java.io.tmpdir}/image-service/jobs}") String dir,
+            ObjectMapper mapper
+    ) throws IOException {
+        this.dir = Files.createDirectories(Path.of(dir));
+        this.mapper = mapper;
+    }
+
+    public Path payloadPath(String jobId) {
+        return dir.resolve(jobId + ".bin");
+    }
+
+    public void save(ImageJob job) throws IOException {
+        Path target = dir.resolve(job.getId() + ".json");
+        Path tmp = dir.resolve(job.getId() + ".json.tmp");
+        mapper.writeValue(tmp.toFile(), job);
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void deletePayload(String jobId) throws IOException {
+        Files.deleteIfExists(payloadPath(jobId));
+    }
+
+    /**
+     * Borra el trabajo y su imagen, si todavía la tiene.
+     */
+    public void delete(String jobId) throws IOException {
+        Files.deleteIfExists(dir.resolve(jobId + ".json"));
+        deletePayload(jobId);
+    }
+
+    public List<ImageJob> loadAll() throws IOException {
+        List<ImageJob> jobs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".json")).toList()) {
+                try {
+                    jobs.add(mapper.readValue(file.toFile(), ImageJob.class));
+                } catch (IOException e) {
+                    log.warn("Trabajo ilegible, se omite: {}", file, e);
+                }
+            }
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.image_service.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.example.image_service.dto.ProcessingMetadata;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Histogramas por filtro y tamaño de kernel a partir de ProcessingMetadata,
+ * para seguir la eficiencia y la capacidad de la GPU.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProcessingMetrics {
+
+    // Por encima de este tamaño el kernel se agrupa para acotar las series
+    private static final int MAX_KERNEL_TAG = 151;
+
+    private final MeterRegistry registry;
+
+    public void record(ProcessingMetadata metadata) {
+        // Los pipelines se agrupan en una sola serie para acotar la cardinalidad
+        String filter = metadata.getStages() != null ? "pipeline"
+                : metadata.getFilterType() == null ? "unknown" : metadata.getFilterType();
+        String kernel = kernelTag(metadata.getKernelSize());
+        String engine = metadata.getEngine() == null ? "none" : metadata.getEngine();
+
+        timer("image.processing.total", metadata.getTotalMs(),
+                "filter", filter, "engine", engine, "cached", String.valueOf(metadata.isCached()));
+
+        if (metadata.isCached()) {
+            return;
+        }
+
+        timer("image.processing.queue.wait", metadata.getQueueWaitMs(), "engine", engine);
+        timer("image.processing.roundtrip", metadata.getProcessingMs(),
+                "filter", filter, "kernel", kernel, "engine", engine);
+        timer("image.processing.gpu.time", metadata.getGpuTimeMs(), "filter", filter, "kernel", kernel);
+        timer("image.storage.upload", metadata.getOriginalUploadMs(), "kind", "original");
+        timer("image.storage.upload", metadata.getProcessedUploadMs(), "kind", "processed");
+
+        Double gpuTimeMs = metadata.getGpuTimeMs();
+        if (gpuTimeMs != null && gpuTimeMs > 0 && metadata.getWidth() != null && metadata.getHeight() != null) {
+            double megapixels = metadata.getWidth() * (double) metadata.getHeight() / 1_000_000.0;
+            DistributionSummary.builder("image.processing.gpu.throughput")
+                    .description("Megapíxeles por segundo de tiempo de GPU")
+                    .baseUnit("megapixels/s")
+                    .tags("filter", filter, "kernel", kernel)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(megapixels / (gpuTimeMs / 1000.0));
+        }
+    }
+
+    private void timer(String name, Double millis, String... tags) {
+        if (millis == null) {
+            return;
+        }
+        Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record((long) (millis * 1_000_000), TimeUnit.NANOSECONDS);
+    }
+
+    private static String kernelTag(Integer kernelSize) {
+        if (kernelSize == null) {
+            return "none";
+        }
+        return kernelSize > MAX_KERNEL_TAG ? "large" : String.valueOf(kernelSize);
+    }
+}
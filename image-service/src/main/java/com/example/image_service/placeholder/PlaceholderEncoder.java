@@ -0,0 +1,201 @@
+package com.example.image_service.placeholder;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import com.example.image_service.dto.ImagePlaceholder;
+
+/**
+ * Calcula BlurHash y color dominante a partir de la imagen ya decodificada.
+ *
+ * Ambos se obtienen de una miniatura de a lo sumo 32 px de lado, así que el
+ * costo no depende del tamaño de la imagen (ver PlaceholderBenchmark).
+ */
+public final class PlaceholderEncoder {
+
+    private static final int SAMPLE_SIZE = 32;
+    private static final int COMPONENTS_X = 4;
+    private static final int COMPONENTS_Y = 3;
+    private static final String BASE83 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+    private static final double[] SRGB_TO_LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double v = i / 255.0;
+            SRGB_TO_LINEAR[i] = v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    private PlaceholderEncoder() {
+    }
+
+    public static ImagePlaceholder compute(BufferedImage image) {
+        BufferedImage sample = thumbnail(image);
+        int[] pixels = ((DataBufferInt) sample.getRaster().getDataBuffer()).getData();
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        return new ImagePlaceholder(
+                blurHash(pixels, width, height),
+                dominantColor(pixels),
+                image.getWidth(),
+                image.getHeight());
+    }
+
+    // ===============================================================
+    // Formato para ProcessedResultCache: ancho;alto;#color;blurhash
+    // (el blurhash va al final porque su alfabeto incluye ';')
+    // ===============================================================
+
+    public static String serialize(ImagePlaceholder placeholder) {
+        return placeholder.getWidth() + ";" + placeholder.getHeight() + ";"
+                + placeholder.getDominantColor() + ";" + placeholder.getBlurHash();
+    }
+
+    public static ImagePlaceholder parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String[] parts = value.split(";", 4);
+        if (parts.length < 4) {
+            return null;
+        }
+        return new ImagePlaceholder(parts[3], parts[2], Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private static BufferedImage thumbnail(BufferedImage image) {
+        double scale = Math.min(1.0, SAMPLE_SIZE / (double) Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage sample = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = sample.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return sample;
+    }
+
+    // Color más frecuente con 4 bits por canal, promediando los píxeles del grupo
+    static String dominantColor(int[] pixels) {
+        int[] counts = new int[4096];
+        long[] sums = new long[4096 * 3];
+        int best = 0;
+        for (int p : pixels) {
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            int bucket = (r >> 4) << 8 | (g >> 4) << 4 | (b >> 4);
+            sums[bucket * 3] += r;
+            sums[bucket * 3 + 1] += g;
+            sums[bucket * 3 + 2] += b;
+            if (++counts[bucket] > counts[best]) {
+                best = bucket;
+            }
+        }
+        int count = Math.max(1, counts[best]);
+        int r = (int) (sums[best * 3] / count);
+        int g = (int) (sums[best * 3 + 1] / count);
+        int b = (int) (sums[best * 3 + 2] / count);
+        return String.format("#%02x%02x%02x", r, g, b);
+    }
+
+    // Algoritmo de referencia de BlurHash (https://blurha.sh)
+    static String blurHash(int[] pixels, int width, int height) {
+        double[][] factors = new double[COMPONENTS_X * COMPONENTS_Y][3];
+        double[] cosX = new double[COMPONENTS_X * width];
+        double[] cosY = new double[COMPONENTS_Y * height];
+        for (int i = 0; i < COMPONENTS_X; i++) {
+            for (int x = 0; x < width; x++) {
+                cosX[i * width + x] = Math.cos(Math.PI * i * x / width);
+            }
+        }
+        for (int j = 0; j < COMPONENTS_Y; j++) {
+            for (int y = 0; y < height; y++) {
+                cosY[j * height + y] = Math.cos(Math.PI * j * y / height);
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = pixels[y * width + x];
+                double r = SRGB_TO_LINEAR[(p >> 16) & 0xFF];
+                double g = SRGB_TO_LINEAR[(p >> 8) & 0xFF];
+                double b = SRGB_TO_LINEAR[p & 0xFF];
+                for (int j = 0; j < COMPONENTS_Y; j++) {
+                    double cy = cosY[j * height + y];
+                    for (int i = 0; i < COMPONENTS_X; i++) {
+                        double basis = cosX[i * width + x] * cy;
+                        double[] factor = factors[j * COMPONENTS_X + i];
+                        factor[0] += basis * r;
+                        factor[1] += basis * g;
+                        factor[2] += basis * b;
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < factors.length; k++) {
+            double normalisation = (k == 0 ? 1.0 : 2.0) / (width * height);
+            factors[k][0] *= normalisation;
+            factors[k][1] *= normalisation;
+            factors[k][2] *= normalisation;
+        }
+
+        StringBuilder hash = new StringBuilder(6 + 2 * factors.length);
+        encode83((COMPONENTS_X - 1) + (COMPONENTS_Y - 1) * 9, 1, hash);
+
+        double maximumValue;
+        double actualMax = 0;
+        for (int k = 1; k < factors.length; k++) {
+            for (double component : factors[k]) {
+                actualMax = Math.max(actualMax, Math.abs(component));
+            }
+        }
+        int quantisedMax = (int) Math.max(0, Math.min(82, Math.floor(actualMax * 166 - 0.5)));
+        maximumValue = (quantisedMax + 1) / 166.0;
+        encode83(quantisedMax, 1, hash);
+
+        double[] dc = factors[0];
+        encode83((linearToSrgb(dc[0]) << 16) | (linearToSrgb(dc[1]) << 8) | linearToSrgb(dc[2]), 4, hash);
+        for (int k = 1; k < factors.length; k++) {
+            double[] ac = factors[k];
+            int value = quantiseAc(ac[0], maximumValue) * 19 * 19
+                    + quantiseAc(ac[1], maximumValue) * 19
+                    + quantiseAc(ac[2], maximumValue);
+            encode83(value, 2, hash);
+        }
+        return hash.toString();
+    }
+
+    private static int quantiseAc(double value, double maximumValue) {
+        double normalized = value / maximumValue;
+        double signPow = Math.copySign(Math.pow(Math.abs(normalized), 0.5), normalized);
+        return (int) Math.max(0, Math.min(18, Math.floor(signPow * 9 + 9.5)));
+    }
+
+    private static int linearToSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void encode83(int value, int length, StringBuilder out) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / pow83(length - i)) % 83;
+            out.append(BASE83.charAt(digit));
+        }
+    }
+
+    private static int pow83(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 83;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.image_service.preview;
+
+/**
+ * Vista previa ya codificada (JPEG), con el token para las siguientes pruebas.
+ */
+public record Preview(String session, byte[] jpeg, int kernelSize, double processingMs) {
+}
@@ -0,0 +1,68 @@
+package com.example.image_service.preview;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rasters reducidos para vistas previas, por token de sesión.
+ *
+ * LRU acotado en memoria con expiración por inactividad: el cliente sube la
+ * imagen una vez y prueba filtros reutilizando el token. Cada entrada ocupa
+ * a lo sumo max-size² × 4 bytes.
+ */
+@Component
+public class PreviewSessions {
+
+    private final Map<String, Session> sessions;
+    private final long ttlMs;
+
+    public PreviewSessions(
+            @Value("${image.preview.max-sessions:200}") int maxSessions,
+            @Value("${image.preview.ttl-ms:600000}") long ttlMs
+    ) {
+        this.ttlMs = ttlMs;
+        this.sessions = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    public synchronized Session create(String owner, BufferedImage image, double scale) {
+        Session session = new Session(UUID.randomUUID().toString(), owner, image, scale,
+                System.currentTimeMillis() + ttlMs);
+        sessions.put(session.token(), session);
+        return session;
+    }
+
+    /**
+     * Sesión vigente del mismo usuario, o null. Cada acceso renueva la expiración.
+     */
+    public synchronized Session get(String token, String owner) {
+        Session session = sessions.get(token);
+        long now = System.currentTimeMillis();
+        if (session == null || !Objects.equals(session.owner(), owner)) {
+            return null;
+        }
+        if (session.expiresAt() < now) {
+            sessions.remove(token);
+            return null;
+        }
+        Session renewed = new Session(session.token(), owner, session.image(), session.scale(), now + ttlMs);
+        sessions.put(token, renewed);
+        return renewed;
+    }
+
+    /**
+     * scale = ancho reducido / ancho original.
+     */
+    public record Session(String token, String owner, BufferedImage image, double scale, long expiresAt) {
+    }
+}
@@ -1,209 +1,586 @@
 package com.example.image_service.service;
 
-import java.util.Base64;
-import java.util.UUID;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import javax.imageio.ImageIO;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.client.MultipartBodyBuilder;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.web.reactive.function.BodyInserters;
 
+import com.example.image_service.avatar.AvatarNormalizer;
+import com.example.image_service.cache.ProcessedResultCache;
+import com.example.image_service.dedup.DuplicateDetector;
+import com.example.image_service.dedup.HashIndex;
 import com.example.image_service.dto.ImageUploadResponse;
-import com.example.image_service.dto.PythonRequest;
-import com.example.image_service.dto.PythonResponse;
+import com.example.image_service.dto.ProcessingMetadata;
+import com.example.image_service.dto.StageMetadata;
 import com.example.image_service.dto.AvatarUploadResponse;
+import com.example.image_service.engine.CpuFilterEngine;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
+import com.example.image_service.gpu.CudaWorkerPool;
+import com.example.image_service.gpu.GpuAdmissionController;
+import com.example.image_service.gpu.GpuOverloadedException;
+import com.example.image_service.metrics.ProcessingMetrics;
+import com.example.image_service.placeholder.PlaceholderEncoder;
+import com.example.image_service.storage.ObjectStore;
+import com.example.image_service.upload.ImageInfo;
+import com.example.image_service.upload.ImageSpooler;
+import com.example.image_service.upload.SpooledImage;
+import com.example.image_service.variants.VariantRenderer;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ImageService {
 
-    private final WebClient supabaseClient;
-    private final WebClient pythonClient;
+    private static final Set<String> AVATAR_FORMATS = Set.of("png", "jpeg");
 
-    @Value("${supabase.anon-key}")
-    private String supabaseKey;
+    private final ObjectStore objectStore;
+    private final CudaWorkerPool cudaWorkers;
+    private final ImageSpooler spooler;
+    private final ProcessedResultCache resultCache;
+    private final GpuAdmissionController gpuAdmission;
+    private final CpuFilterEngine cpuEngine;
+    private final ProcessingMetrics processingMetrics;
+    private final VariantRenderer variantRenderer;
+    private final AvatarNormalizer avatarNormalizer;
+    private final DuplicateDetector duplicateDetector;
 
-    @Value("${supabase.bucket}")
-    private String bucket;
+    @Value("${image.upload.max-bytes:20971520}")
+    private long maxUploadBytes;
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
+    @Value("${image.avatar.max-bytes:5242880}")
+    private long maxAvatarBytes;
+
+    @Value("${image.processed.max-bytes:52428800}")
+    private long maxProcessedBytes;
 
 
     // ===============================================================
     // 1) Procesamiento de imágenes via Python
     // ===============================================================
-    private Mono<byte[]> processWithPython(byte[] imageBytes, int mask, String filter) {
+    private Mono<SpooledImage> processWithPython(SpooledImage image, List<FilterStage> stages, ProcessingMetadata metadata) {
 
         MultipartBodyBuilder builder = new MultipartBodyBuilder();
 
-        // nombre de la parte "image" debe coincidir con FastAPI
-        builder.part("image", imageBytes)
+        // nombre de la parte "image" debe coincidir con FastAPI;
+        // se envía como flujo desde el spool, sin copiar a un byte[]
+        builder.asyncPart("image", image.content(), DataBuffer.class)
             .filename("image.png")
             .contentType(MediaType.IMAGE_PNG);
 
-        // FastAPI: filter_type: str = Form(...)
-        builder.part("filter_type", filter);
+        String uri;
+        if (stages.size() == 1) {
+            uri = "/api/convolucion";
+
+            // FastAPI: filter_type: str = Form(...)
+            builder.part("filter_type", stages.get(0).filter());
+
+            // FastAPI: kernel_size: int = Form(...)
+            // Para el filtro "ups" puedes mandar un valor dummy (por ejemplo 3),
+            // aunque no lo uses en CUDA.
+            builder.part("kernel_size", String.valueOf(stages.get(0).kernelSize()));
+        } else {
+            // Las etapas se encadenan en el worker sin devolver intermedios
+            uri = "/api/pipeline";
+            builder.part("stages", FilterStage.format(stages));
+        }
+
+        // El permiso de la GPU se mantiene hasta terminar de recibir la respuesta
+        // y el worker se elige por menor carga
+        return Mono.defer(() -> {
+            long requested = System.nanoTime();
+            return gpuAdmission.admit(() -> {
+                long admitted = System.nanoTime();
+                metadata.setQueueWaitMs(millisBetween(requested, admitted));
+                return cudaWorkers.execute(client -> client.post()
+                                .uri(uri)
+                                .contentType(MediaType.MULTIPART_FORM_DATA)
+                                .body(BodyInserters.fromMultipartData(builder.build()))
+                                .exchangeToMono(response -> {
+                                    if (response.statusCode().isError()) {
+                                        return response.<SpooledImage>createError();
+                                    }
+                                    readGpuHeaders(response.headers().asHttpHeaders(), metadata);
+                                    readStageHeaders(response.headers().asHttpHeaders(), stages, metadata);
+                                    // la imagen procesada (PNG) también se recibe como flujo
+                                    return spooler.spool(response.bodyToFlux(DataBuffer.class), maxProcessedBytes);
+                                }))
+                        .doOnNext(processed -> {
+                            metadata.setEngine("gpu");
+                            metadata.setProcessingMs(millisBetween(admitted, System.nanoTime()));
+                        });
+            });
+        });
+    }
+
+    // Cabeceras X-* que agrega cuda_service a la respuesta
+    private static void readGpuHeaders(HttpHeaders headers, ProcessingMetadata metadata) {
+        metadata.setWidth(intHeader(headers, "X-Width"));
+        metadata.setHeight(intHeader(headers, "X-Height"));
+        metadata.setGpuTimeMs(doubleHeader(headers, "X-GPU-Time-ms"));
+        metadata.setBlocksX(intHeader(headers, "X-Blocks-X"));
+        metadata.setBlocksY(intHeader(headers, "X-Blocks-Y"));
+        metadata.setThreadsX(intHeader(headers, "X-Threads-X"));
+        metadata.setThreadsY(intHeader(headers, "X-Threads-Y"));
+        if (metadata.getThreadsX() != null && metadata.getThreadsY() != null) {
+            metadata.setThreadsPerBlock(metadata.getThreadsX() * metadata.getThreadsY());
+        }
+        String filterType = headers.getFirst("X-Filter-Type");
+        if (StringUtils.hasText(filterType)) {
+            metadata.setFilterType(filterType);
+        }
+        Integer kernelSize = intHeader(headers, "X-Kernel-Size");
+        if (kernelSize != null) {
+            metadata.setKernelSize(kernelSize);
+        }
+    }
+
+    // X-Stage-Times-ms: tiempo de GPU de cada etapa, separados por coma
+    private static void readStageHeaders(HttpHeaders headers, List<FilterStage> stages, ProcessingMetadata metadata) {
+        if (stages.size() == 1) {
+            return;
+        }
+        String value = headers.getFirst("X-Stage-Times-ms");
+        String[] times = value == null ? new String[0] : value.split(",");
+        double[] stageMs = new double[stages.size()];
+        for (int i = 0; i < stageMs.length; i++) {
+            try {
+                stageMs[i] = i < times.length ? Double.parseDouble(times[i].trim()) : Double.NaN;
+            } catch (NumberFormatException e) {
+                stageMs[i] = Double.NaN;
+            }
+        }
+        metadata.setStages(stageMetadata(stages, stageMs));
+    }
+
+    private static List<StageMetadata> stageMetadata(List<FilterStage> stages, double[] stageMs) {
+        List<StageMetadata> result = new ArrayList<>(stages.size());
+        for (int i = 0; i < stages.size(); i++) {
+            FilterStage stage = stages.get(i);
+            Double time = Double.isNaN(stageMs[i]) ? null : stageMs[i];
+            result.add(new StageMetadata(stage.filter(), stage.kernelSize(), time));
+        }
+        return result;
+    }
 
-        // FastAPI: kernel_size: int = Form(...)
-        // Para el filtro "ups" puedes mandar un valor dummy (por ejemplo 3),
-        // aunque no lo uses en CUDA.
-        builder.part("kernel_size", String.valueOf(mask));
+    private static Integer intHeader(HttpHeaders headers, String name) {
+        Double value = doubleHeader(headers, name);
+        return value == null ? null : value.intValue();
+    }
 
-        return pythonClient.post()
-                .uri("/api/convolucion")
-                .contentType(MediaType.MULTIPART_FORM_DATA)
-                .body(BodyInserters.fromMultipartData(builder.build()))
-                .retrieve()
-                // ahora esperamos la imagen como bytes (PNG)
-                .bodyToMono(byte[].class);
+    // Valores ausentes o no numéricos (p. ej. "None") se informan como null
+    private static Double doubleHeader(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Misma operación que processWithPython pero en la JVM (CpuFilterEngine).
+     */
+    private Mono<SpooledImage> processWithCpu(SpooledImage image, List<FilterStage> stages, ProcessingMetadata metadata) {
+        return Mono.fromCallable(() -> {
+                    long start = System.nanoTime();
+                    try (InputStream input = image.openStream()) {
+                        CpuFilterEngine.Output output = cpuEngine.apply(input, stages);
+                        metadata.setEngine("cpu");
+                        metadata.setWidth(output.width());
+                        metadata.setHeight(output.height());
+                        metadata.setGpuTimeMs(null);
+                        if (stages.size() > 1) {
+                            metadata.setStages(stageMetadata(stages, output.stageMs()));
+                        }
+                        metadata.setProcessingMs(millisBetween(start, System.nanoTime()));
+                        return output.png();
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(png -> spooler.spool(
+                        Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(png)),
+                        maxProcessedBytes));
+    }
+
+    // El respaldo de AUTO se decide en processAs, que guarda cada motor bajo su clave
+    private Mono<SpooledImage> applyFilter(SpooledImage image, List<FilterStage> stages, ProcessingEngine engine,
+                                           ProcessingMetadata metadata) {
+        return engine == ProcessingEngine.CPU
+                ? processWithCpu(image, stages, metadata)
+                : processWithPython(image, stages, metadata);
+    }
+
+    // Caída, saturación o timeout del servicio CUDA; un 4xx (p. ej. kernel
+    // inválido) se propaga porque la CPU lo rechazaría igual
+    private boolean isGpuUnavailable(Throwable error) {
+        if (error instanceof GpuOverloadedException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
     }
 
     // ===============================================================
-    // 2) Subir bytes directamente a Supabase
+    // 2) Subir contenido al ObjectStore (en streaming)
     // ===============================================================
-    private Mono<String> uploadBytes(byte[] bytes, String fileName) {
+    private Mono<String> uploadContent(SpooledImage image, String fileName) {
+        return uploadContent(image.content(), image.size(), fileName, MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    // Cada suscripción envuelve los bytes de nuevo: el almacenamiento puede
+    // reintentar la subida y un DataBuffer ya leído quedaría vacío
+    private Mono<String> uploadContent(byte[] content, String fileName, MediaType contentType) {
+        return uploadContent(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(content))),
+                content.length, fileName, contentType);
+    }
 
-        return supabaseClient.post()
-                .uri("/object/" + bucket + "/" + fileName)
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header("Authorization", "Bearer " + supabaseKey)
-                .header("apikey", supabaseKey)
-                .header("x-upsert", "true")
-                .bodyValue(bytes)
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(r -> supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + fileName);
+    private Mono<String> uploadContent(Flux<DataBuffer> content, long size, String fileName, MediaType contentType) {
+        return objectStore.put(fileName, content, size, contentType);
     }
 
 
     // ===============================================================
     // 3) Upload + Process + Upload processed image
     // ===============================================================
-    public Mono<ImageUploadResponse> uploadAndProcess(FilePart file, int mask, String filter) {
+    /**
+     * Recibe el contenido de una subida en el spool, validando el límite de
+     * tamaño y la cabecera mientras llegan los bytes.
+     */
+    public Mono<SpooledImage> spoolUpload(Flux<DataBuffer> content) {
+        return spooler.spool(content, maxUploadBytes);
+    }
 
-        return filePartToBytes(file)
-                .flatMap(originalBytes -> {
+    /**
+     * Igual que spoolUpload con el límite de avatares y solo PNG o JPEG.
+     */
+    public Mono<SpooledImage> spoolAvatar(Flux<DataBuffer> content) {
+        return spooler.spool(content, maxAvatarBytes, AVATAR_FORMATS);
+    }
 
-                    String originalName = UUID.randomUUID() + "-original.png";
-                    String processedName = UUID.randomUUID() + "-processed.png";
+    /**
+     * Sube el original y su versión procesada a partir de un contenido ya
+     * recibido. No libera el spool: eso queda a cargo de quien lo creó.
+     */
+    public Mono<ImageUploadResponse> process(SpooledImage original, int mask, String filter) {
+        return process(original, mask, filter, ProcessingEngine.AUTO);
+    }
 
-                    Mono<String> urlOriginal = uploadBytes(originalBytes, originalName);
+    public Mono<ImageUploadResponse> process(SpooledImage original, int mask, String filter, ProcessingEngine engine) {
+        return Mono.defer(() -> process(original, List.of(new FilterStage(filter, mask)), engine, true));
+    }
 
-                    Mono<String> urlProcessed =
-                            processWithPython(originalBytes, mask, filter)
-                                    .flatMap(processedBytes -> uploadBytes(processedBytes, processedName));
+    public Mono<ImageUploadResponse> process(SpooledImage original, List<FilterStage> stages, ProcessingEngine engine,
+                                             boolean storeOriginal) {
+
+        // Con las dimensiones de la cabecera, un kernel que no cabe se rechaza
+        // antes de subir nada o de ocupar la GPU
+        ImageInfo info = original.info();
+        if (info != null) {
+            int minDim = Math.min(info.width(), info.height());
+            for (FilterStage stage : stages) {
+                if (stage.kernelSize() > minDim) {
+                    return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "El kernel " + stage.kernelSize() + "x" + stage.kernelSize()
+                                    + " es demasiado grande para la imagen de " + info.width() + "x" + info.height()
+                                    + ". Debe ser <= " + minDim + "."));
+                }
+            }
+        }
 
-                    return Mono.zip(urlOriginal, urlProcessed)
-                            .map(tuple -> new ImageUploadResponse(
-                                    tuple.getT1(),  // original
-                                    tuple.getT2()   // processed
-                            ));
-                });
+        // El hash perceptual corre en paralelo con el procesamiento; solo hace
+        // falta antes si un casi duplicado puede reutilizar su resultado
+        Mono<Optional<HashIndex.Match>> duplicate = duplicateDetector.check(original)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+        if (duplicateDetector.reusesResults()) {
+            return duplicate.flatMap(match -> resultHash(original, match, stages, engine)
+                    .flatMap(resultHash -> processAs(original, resultHash, stages, engine, storeOriginal))
+                    .map(response -> flagDuplicate(response, match)));
+        }
+        return Mono.zip(processAs(original, original.sha256(), stages, engine, storeOriginal), duplicate)
+                .map(tuple -> flagDuplicate(tuple.getT1(), tuple.getT2()));
     }
 
+    /**
+     * El resultado de un casi duplicado solo se reutiliza si ya está en la
+     * caché con estos filtros. Si no, se procesa bajo el SHA-256 propio: de
+     * lo contrario el resultado de esta imagen quedaría guardado con la clave
+     * del otro contenido y lo recibiría quien suba ese contenido después.
+     */
+    private Mono<String> resultHash(SpooledImage original, Optional<HashIndex.Match> match, List<FilterStage> stages,
+                                    ProcessingEngine engine) {
+        return match.filter(duplicateDetector::canReuse)
+                .map(found -> resultCache.find(ProcessedResultCache.processedKey(found.id(), stages, engine))
+                        .map(url -> found.id())
+                        .defaultIfEmpty(original.sha256()))
+                .orElseGet(() -> Mono.just(original.sha256()));
+    }
 
-    // ===============================================================
-    // 4) Upload Avatar (solo subir imagen, sin python)
-    // ===============================================================
-    public Mono<AvatarUploadResponse> uploadAvatar(FilePart file, String userId) {
+    /**
+     * resultHash es el SHA-256 bajo el que se guarda y busca el resultado
+     * procesado: el del original, o el de un casi duplicado ya procesado.
+     */
+    private Mono<ImageUploadResponse> processAs(SpooledImage original, String resultHash, List<FilterStage> stages,
+                                                ProcessingEngine engine, boolean storeOriginal) {
+
+        // Claves por contenido: la misma imagen (y los mismos filtros)
+        // nunca se sube ni se procesa dos veces
+        String hash = original.sha256();
+        String originalName = "originals/" + hash + ".png";
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            ProcessingMetadata metadata = new ProcessingMetadata();
+            if (stages.size() == 1) {
+                metadata.setFilterType(stages.get(0).filter());
+                metadata.setKernelSize(stages.get(0).kernelSize());
+            } else {
+                metadata.setFilterType(stages.stream().map(FilterStage::filter).collect(Collectors.joining("+")));
+            }
 
-        if (!StringUtils.hasText(userId)) {
-            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "El identificador de usuario es obligatorio"));
-        }
+            // El almacenamiento y CUDA leen el mismo spool en paralelo; los tiempos solo
+            // se registran cuando esta solicitud hace el trabajo (no en caché)
+            Mono<String> urlOriginal = storeOriginal
+                    ? resultCache.getOrCompute(
+                            ProcessedResultCache.originalKey(hash),
+                            original,
+                            input -> timed(uploadIfAbsent(input, originalName), metadata::setOriginalUploadMs))
+                    : Mono.just("");
+
+            // Con AUTO se busca o calcula el resultado de la GPU; si la GPU no
+            // está disponible, el de la CPU queda bajo su propia clave
+            Mono<Tuple2<String, String>> processed = switch (engine) {
+                case GPU, CPU -> storeProcessed(original, resultHash, stages, engine, metadata);
+                case AUTO -> storeProcessed(original, resultHash, stages, ProcessingEngine.GPU, metadata)
+                        .onErrorResume(this::isGpuUnavailable, error -> {
+                            log.warn("GPU no disponible ({}), se usa el motor CPU", error.toString());
+                            return storeProcessed(original, resultHash, stages, ProcessingEngine.CPU, metadata);
+                        });
+            };
+
+            return Mono.zip(urlOriginal, processed)
+                    .flatMap(urls -> {
+                        String processedKey = urls.getT2().getT1();
+                        return Mono.zip(
+                                        resultCache.find(ProcessedResultCache.variantsKey(processedKey)).defaultIfEmpty(""),
+                                        resultCache.find(ProcessedResultCache.placeholderKey(processedKey)).defaultIfEmpty(""))
+                                .map(extras -> {
+                                    metadata.setTotalMs(millisBetween(start, System.nanoTime()));
+                                    processingMetrics.record(metadata);
+                                    return new ImageUploadResponse(
+                                            StringUtils.hasText(urls.getT1()) ? urls.getT1() : null,  // original
+                                            urls.getT2().getT2(),  // processed
+                                            variantUrls(variantPrefix(processedKey), extras.getT1()),
+                                            PlaceholderEncoder.parse(extras.getT2()),
+                                            metadata
+                                    );
+                                });
+                    });
+        });
+    }
 
-        HttpHeaders headers = file.headers();
-        MediaType contentType = headers.getContentType();
-        String originalFilename = file.filename();
+    /**
+     * Busca o calcula el resultado con un motor concreto (GPU o CPU) y sube
+     * la imagen procesada, sus variantes y el placeholder. Devuelve la clave
+     * bajo la que quedó el resultado y su URL.
+     */
+    private Mono<Tuple2<String, String>> storeProcessed(SpooledImage original, String resultHash,
+                                                       List<FilterStage> stages, ProcessingEngine engine,
+                                                       ProcessingMetadata metadata) {
+        String processedKey = ProcessedResultCache.processedKey(resultHash, stages, engine);
+        String processedName = "processed/" + processedKey + ".png";
+        String variantsKey = ProcessedResultCache.variantsKey(processedKey);
+        String placeholderKey = ProcessedResultCache.placeholderKey(processedKey);
+
+        return resultCache.getOrCompute(
+                        processedKey,
+                        original,
+                        input -> Mono.usingWhen(
+                                applyFilter(input, stages, engine, metadata)
+                                        .doOnNext(processed -> metadata.setCached(false)),
+                                // variantes y placeholder salen de una sola decodificación,
+                                // mientras sube la imagen completa
+                                processed -> {
+                                    Mono<BufferedImage> decoded = decode(processed).cache();
+                                    return Mono.zip(
+                                                    timed(uploadContent(processed, processedName), metadata::setProcessedUploadMs),
+                                                    resultCache.getOrCompute(variantsKey,
+                                                                    () -> renderVariants(decoded, variantPrefix(processedKey), variantRenderer::imageWidths))
+                                                            .defaultIfEmpty(""),
+                                                    resultCache.getOrCompute(placeholderKey, () -> placeholder(decoded))
+                                                            .defaultIfEmpty(""))
+                                            .map(Tuple3::getT1);
+                                },
+                                SpooledImage::release))
+                .map(url -> Tuples.of(processedKey, url));
+    }
 
-        if (!isSupportedImage(contentType, originalFilename)) {
-            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Solo se permiten PNG o JPG"));
-        }
+    private static String variantPrefix(String processedKey) {
+        return "variants/" + processedKey + "/";
+    }
 
-        return filePartToBytes(file)
-                .flatMap(bytes -> {
-                    // Validación tamaño máx 5 MB
-                    if (bytes.length > 5 * 1024 * 1024) {
-                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo excede el límite de 5MB"));
-                    }
+    private static ImageUploadResponse flagDuplicate(ImageUploadResponse response, Optional<HashIndex.Match> match) {
+        match.ifPresent(found -> {
+            response.getMetadata().setNearDuplicateOf(found.id());
+            response.getMetadata().setDuplicateDistance(found.distance());
+        });
+        return response;
+    }
 
-                    String ext = resolveExtension(contentType, originalFilename);
-                    String fileName = "avatars/" + userId + "/" + UUID.randomUUID() + ext;
+    private static <T> Mono<T> timed(Mono<T> source, DoubleConsumer sink) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return source.doOnSuccess(value -> sink.accept(millisBetween(start, System.nanoTime())));
+        });
+    }
 
-                    return uploadBytes(bytes, fileName)
-                            .map(url -> new AvatarUploadResponse(url, System.currentTimeMillis()));
-                });
+    private static double millisBetween(long startNanos, long endNanos) {
+        return (endNanos - startNanos) / 1_000_000.0;
     }
 
-    private Mono<byte[]> filePartToBytes(FilePart file) {
-        return DataBufferUtils.join(file.content())
-                .map(this::toByteArray)
-                .subscribeOn(Schedulers.boundedElastic());
+    private Mono<String> uploadIfAbsent(SpooledImage image, String fileName) {
+        return objectStore.exists(fileName)
+                .flatMap(exists -> exists
+                        ? Mono.just(objectStore.publicUrl(fileName))
+                        : uploadContent(image, fileName));
     }
 
-    private byte[] toByteArray(DataBuffer buffer) {
-        try {
-            byte[] bytes = new byte[buffer.readableByteCount()];
-            buffer.read(bytes);
-            return bytes;
-        } finally {
-            DataBufferUtils.release(buffer);
+
+    // ===============================================================
+    // 4) Upload Avatar (solo subir imagen, sin python)
+    // ===============================================================
+    public Mono<AvatarUploadResponse> uploadAvatar(SpooledImage avatar, String userId) {
+
+        if (!StringUtils.hasText(userId)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "El identificador de usuario es obligatorio"));
         }
+
+        // El límite de 5 MB y la cabecera (solo PNG o JPEG) ya se validaron en
+        // spoolAvatar. El original no se guarda: solo los tamaños
+        // normalizados, bajo avatars/{userId}/{hash}/{lado}.jpg. No libera el
+        // spool: eso queda a cargo de quien lo creó
+        String prefix = "avatars/" + userId + "/" + avatar.sha256().substring(0, 16) + "/";
+        return avatarNormalizer.normalize(avatar)
+                .flatMap(normalized -> Mono.zip(
+                        Flux.fromIterable(normalized.jpegs().entrySet())
+                                .flatMap(entry -> uploadContent(
+                                        entry.getValue(),
+                                        prefix + entry.getKey() + VariantRenderer.EXTENSION,
+                                        MediaType.IMAGE_JPEG))
+                                .then(Mono.just(normalized.jpegs().keySet().stream()
+                                        .map(String::valueOf)
+                                        .collect(Collectors.joining(",")))),
+                        placeholder(Mono.just(normalized.largest())).defaultIfEmpty("")))
+                .map(tuple -> {
+                    Map<String, String> urls = variantUrls(prefix, tuple.getT1());
+                    int largest = avatarNormalizer.sizes().get(avatarNormalizer.sizes().size() - 1);
+                    return new AvatarUploadResponse(
+                            urls.get(String.valueOf(largest)),
+                            System.currentTimeMillis(),
+                            urls,
+                            PlaceholderEncoder.parse(tuple.getT2()));
+                });
     }
 
-    private boolean isSupportedImage(MediaType contentType, String filename) {
-        if (contentType != null) {
-            if (MediaType.IMAGE_PNG.isCompatibleWith(contentType) || MediaType.IMAGE_JPEG.isCompatibleWith(contentType)) {
-                return true;
-            }
-        }
+    // ===============================================================
+    // 5) Variantes redimensionadas (JPEG progresivo, sin metadatos) y placeholder
+    // ===============================================================
 
-        if (filename != null) {
-            String lower = filename.toLowerCase();
-            return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
-        }
+    /**
+     * Genera y sube las variantes en paralelo. Devuelve los anchos generados
+     * separados por coma, o vacío si falló (la subida principal no se
+     * interrumpe por eso).
+     */
+    private Mono<String> renderVariants(Mono<BufferedImage> decoded, String prefix, IntFunction<List<Integer>> widthsFor) {
+        return decoded
+                .flatMapMany(image -> Flux.fromIterable(widthsFor.apply(image.getWidth()))
+                        .flatMap(width -> Mono.fromCallable(() -> variantRenderer.render(image, width))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(jpeg -> uploadContent(
+                                        jpeg,
+                                        prefix + width + VariantRenderer.EXTENSION,
+                                        MediaType.IMAGE_JPEG))
+                                .thenReturn(width)))
+                .collectSortedList()
+                .map(widths -> widths.stream().map(String::valueOf).collect(Collectors.joining(",")))
+                .onErrorResume(error -> {
+                    log.warn("No se pudieron generar las variantes de {}", prefix, error);
+                    return Mono.empty();
+                });
+    }
 
-        return false;
+    /**
+     * BlurHash, color dominante y dimensiones, serializados para la caché.
+     */
+    private Mono<String> placeholder(Mono<BufferedImage> decoded) {
+        return decoded
+                .map(image -> PlaceholderEncoder.serialize(PlaceholderEncoder.compute(image)))
+                .onErrorResume(error -> {
+                    log.warn("No se pudo calcular el placeholder", error);
+                    return Mono.empty();
+                });
     }
 
-    private String resolveExtension(MediaType contentType, String filename) {
-        if (contentType != null) {
-            if (MediaType.IMAGE_PNG.isCompatibleWith(contentType)) {
-                return ".png";
-            }
-            if (MediaType.IMAGE_JPEG.isCompatibleWith(contentType)) {
-                return ".jpg";
-            }
-        }
+    private Mono<BufferedImage> decode(SpooledImage image) {
+        return Mono.fromCallable(() -> {
+                    try (InputStream input = image.openStream()) {
+                        BufferedImage decoded = ImageIO.read(input);
+                        if (decoded == null) {
+                            throw new IOException("Formato de imagen no reconocido");
+                        }
+                        return decoded;
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
 
-        if (filename != null) {
-            String lower = filename.toLowerCase();
-            if (lower.endsWith(".png")) {
-                return ".png";
-            }
-            if (lower.endsWith(".jpeg")) {
-                return ".jpg";
-            }
-            if (lower.endsWith(".jpg")) {
-                return ".jpg";
+    private Map<String, String> variantUrls(String prefix, String widths) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (StringUtils.hasText(widths)) {
+            for (String width : widths.split(",")) {
+                urls.put(width, objectStore.publicUrl(prefix + width + VariantRenderer.EXTENSION));
             }
         }
-
-        // Fallback seguro
-        return ".jpg";
+        return urls;
     }
 }
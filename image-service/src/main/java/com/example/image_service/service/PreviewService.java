@@ -0,0 +1,126 @@
+package com.example.image_service.service;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.engine.CpuFilterEngine;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.preview.Preview;
+import com.example.image_service.preview.PreviewSessions;
+import com.example.image_service.upload.ImageSpooler;
+import com.example.image_service.upload.SpooledImage;
+import com.example.image_service.variants.VariantRenderer;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Vistas previas de filtros a baja resolución.
+ *
+ * La imagen se decodifica y se reduce una sola vez por sesión; cada prueba
+ * aplica el filtro en el motor CPU sobre el raster reducido y devuelve el
+ * JPEG sin guardar nada ni pasar por la GPU.
+ */
+@Service
+@RequiredArgsConstructor
+public class PreviewService {
+
+    private final ImageSpooler spooler;
+    private final PreviewSessions sessions;
+    private final CpuFilterEngine cpuEngine;
+    private final VariantRenderer variantRenderer;
+
+    @Value("${image.upload.max-bytes:20971520}")
+    private long maxUploadBytes;
+
+    @Value("${image.preview.max-size:480}")
+    private int maxSize;
+
+    public Mono<SpooledImage> spool(Flux<DataBuffer> content) {
+        return spooler.spool(content, maxUploadBytes);
+    }
+
+    /**
+     * Con file abre una sesión nueva; sin file reutiliza la del token. No
+     * libera file: eso queda a cargo de quien lo creó.
+     */
+    public Mono<Preview> preview(SpooledImage file, String token, String userId, String filter, int mask) {
+        Mono<PreviewSessions.Session> session;
+        if (file != null) {
+            session = open(file, userId);
+        } else if (StringUtils.hasText(token)) {
+            session = Mono.justOrEmpty(sessions.get(token, userId))
+                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "La sesión de vista previa no existe o expiró")));
+        } else {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere file o session"));
+        }
+
+        return session.flatMap(current -> Mono.fromCallable(() -> render(current, new FilterStage(filter, mask)))
+                .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<PreviewSessions.Session> open(SpooledImage file, String userId) {
+        return Mono.fromCallable(() -> downscale(file))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(reduced -> sessions.create(userId, reduced.image(), reduced.scale()));
+    }
+
+    // Submuestrea al decodificar (no se arma el raster completo) y termina
+    // con reducciones a la mitad hasta max-size en el lado mayor
+    private Reduced downscale(SpooledImage spooled) throws Exception {
+        try (InputStream input = spooled.openStream();
+             ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se pudo leer la imagen");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = Math.max(1, Math.max(width, height) / (maxSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(0, param);
+
+                int longest = Math.max(image.getWidth(), image.getHeight());
+                if (longest > maxSize) {
+                    int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * (maxSize / (double) longest)));
+                    image = VariantRenderer.resize(image, targetWidth);
+                }
+                return new Reduced(image, image.getWidth() / (double) width);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Preview render(PreviewSessions.Session session, FilterStage requested) throws Exception {
+        long start = System.nanoTime();
+        FilterStage stage = requested.scaled(session.scale());
+        BufferedImage filtered = cpuEngine.apply(session.image(), List.of(stage), new double[1]);
+        byte[] jpeg = variantRenderer.encode(filtered);
+        return new Preview(session.token(), jpeg, stage.kernelSize(), (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    private record Reduced(BufferedImage image, double scale) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.image_service.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+
+import com.example.image_service.dto.ImageUploadResponse;
+import com.example.image_service.dto.ResumableUploadResponse;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
+import com.example.image_service.upload.ImageSpooler;
+import com.example.image_service.upload.ResumableUploads;
+import com.example.image_service.upload.SpooledImage;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Subidas reanudables: los trozos se guardan en ResumableUploads y, al
+ * completar, el archivo armado pasa por el spooler (tamaño, cabecera, SHA-256)
+ * y se procesa como una subida normal. La subida parcial se borra solo si el
+ * procesamiento termina bien; si falla (p. ej. Supabase caído), el cliente
+ * puede volver a completar sin reenviar los bytes.
+ */
+@Service
+@RequiredArgsConstructor
+public class ResumableUploadService {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final ResumableUploads uploads;
+    private final ImageSpooler spooler;
+    private final ImageService imageService;
+
+    @Value("${image.upload.max-bytes:20971520}")
+    private long maxUploadBytes;
+
+    public Mono<ResumableUploadResponse> create(String userId, long size) {
+        return uploads.create(userId, size).map(ResumableUploadService::toResponse);
+    }
+
+    public Mono<ResumableUploadResponse> status(String uploadId, String userId) {
+        return uploads.find(uploadId, userId).map(ResumableUploadService::toResponse);
+    }
+
+    public Mono<ResumableUploadResponse> append(String uploadId, String userId, long offset, Flux<DataBuffer> chunk) {
+        return uploads.append(uploadId, userId, offset, chunk).map(ResumableUploadService::toResponse);
+    }
+
+    public Mono<ImageUploadResponse> complete(String uploadId, String userId, List<FilterStage> stages,
+                                              ProcessingEngine engine) {
+        return uploads.complete(uploadId, userId)
+                .flatMap(part -> Mono.usingWhen(
+                        spooler.spool(DataBufferUtils.read(part, DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE),
+                                maxUploadBytes),
+                        original -> imageService.process(original, stages, engine, true),
+                        SpooledImage::release))
+                .flatMap(response -> uploads.discard(uploadId).thenReturn(response));
+    }
+
+    private static ResumableUploadResponse toResponse(ResumableUploads.Session session) {
+        return new ResumableUploadResponse(session.id(), session.size(), session.offset(), session.expiresAt());
+    }
+}
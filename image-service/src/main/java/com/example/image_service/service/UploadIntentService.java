@@ -0,0 +1,147 @@
+package com.example.image_service.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.dto.ImageUploadResponse;
+import com.example.image_service.dto.UploadIntentResponse;
+import com.example.image_service.engine.FilterStage;
+import com.example.image_service.engine.ProcessingEngine;
+import com.example.image_service.storage.ObjectStore;
+import com.example.image_service.upload.HmacSigner;
+import com.example.image_service.upload.ImageSpooler;
+import com.example.image_service.upload.SpooledImage;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Subida directa al almacenamiento: el cliente pide una intención, sube el
+ * archivo a la URL firmada sin pasar por este servicio y luego la confirma.
+ * Al confirmar se lee el objeto por su clave, se valida como cualquier subida
+ * (tamaño y cabecera) y se procesa.
+ *
+ * La intención no se guarda: su id es un token firmado con la clave, el
+ * usuario, el tamaño declarado y el plazo para confirmar, así que cualquier
+ * réplica con el mismo image.signing-secret puede confirmarla. El tamaño
+ * declarado es el límite al leer el objeto: la URL firmada de Supabase no lo
+ * impone.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadIntentService {
+
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            MediaType.IMAGE_PNG_VALUE, ".png",
+            MediaType.IMAGE_JPEG_VALUE, ".jpg",
+            "image/webp", ".webp");
+    private static final Pattern USER_ID = Pattern.compile("[A-Za-z0-9_-]{1,128}");
+
+    private final ObjectStore objectStore;
+    private final ImageSpooler spooler;
+    private final ImageService imageService;
+    private final HmacSigner signer;
+
+    @Value("${image.upload.max-bytes:20971520}")
+    private long maxUploadBytes;
+
+    @Value("${image.upload-intents.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${image.upload-intents.confirm-window-seconds:900}")
+    private long confirmWindowSeconds;
+
+    public Mono<UploadIntentResponse> create(String userId, long size, String contentType) {
+        if (userId == null || !USER_ID.matcher(userId).matches()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "X-User-Uid inválido"));
+        }
+        String type = contentType == null ? "" : contentType.trim().toLowerCase(Locale.ROOT);
+        String extension = EXTENSIONS.get(type);
+        if (extension == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Solo se permiten imágenes PNG, JPEG o WebP"));
+        }
+        if (size <= 0 || size > maxUploadBytes) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El archivo excede el límite de " + (maxUploadBytes / (1024 * 1024)) + "MB"));
+        }
+
+        String key = "uploads/" + userId + "/" + UUID.randomUUID() + extension;
+        Instant confirmBy = Instant.now().plusSeconds(ttlSeconds + confirmWindowSeconds);
+        return objectStore.signUpload(key, MediaType.parseMediaType(type), size, Duration.ofSeconds(ttlSeconds))
+                .map(signed -> new UploadIntentResponse(
+                        token(key, userId, size, confirmBy),
+                        key,
+                        signed.url(),
+                        signed.method(),
+                        signed.headers(),
+                        signed.expiresAt(),
+                        confirmBy));
+    }
+
+    /**
+     * Procesa el objeto subido. Confirmar dos veces la misma intención
+     * devuelve el resultado en caché.
+     */
+    public Mono<ImageUploadResponse> confirm(String intentId, String userId, List<FilterStage> stages,
+                                             ProcessingEngine engine) {
+        return Mono.defer(() -> {
+            Intent intent = parse(intentId);
+            if (!intent.userId().equals(userId)) {
+                return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN,
+                        "La intención de subida pertenece a otro usuario"));
+            }
+            if (Instant.now().isAfter(intent.confirmBy())) {
+                return Mono.error(new ResponseStatusException(HttpStatus.GONE, "La intención de subida expiró"));
+            }
+
+            // El original ya está en el almacenamiento: solo se sube el resultado
+            return Mono.usingWhen(
+                            spooler.spool(objectStore.get(intent.key()), intent.size()),
+                            original -> imageService.process(original, stages, engine, false),
+                            SpooledImage::release)
+                    .map(response -> {
+                        response.setOriginalUrl(objectStore.publicUrl(intent.key()));
+                        return response;
+                    });
+        });
+    }
+
+    private String token(String key, String userId, long size, Instant confirmBy) {
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (key + "\n" + userId + "\n" + size + "\n" + confirmBy.getEpochSecond())
+                        .getBytes(StandardCharsets.UTF_8));
+        return payload + "." + signer.sign(payload);
+    }
+
+    private Intent parse(String token) {
+        int dot = token == null ? -1 : token.indexOf('.');
+        if (dot < 0 || !signer.verify(token.substring(0, dot), token.substring(dot + 1))) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Intención de subida no encontrada");
+        }
+        String[] fields = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8)
+                .split("\n");
+        if (fields.length != 4) {
+            // Firmado con el formato anterior, sin tamaño
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Intención de subida no encontrada");
+        }
+        return new Intent(fields[0], fields[1], Long.parseLong(fields[2]),
+                Instant.ofEpochSecond(Long.parseLong(fields[3])));
+    }
+
+    private record Intent(String key, String userId, long size, Instant confirmBy) {
+    }
+}
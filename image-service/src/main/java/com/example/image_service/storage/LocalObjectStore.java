@@ -0,0 +1,308 @@
+package com.example.image_service.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.upload.HmacSigner;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Almacenamiento en disco local, para correr y medir el servicio sin Supabase.
+ *
+ * El contenido se guarda por su SHA-256 en blobs/ab/cd/{sha256} (el mismo
+ * contenido bajo varias claves ocupa un solo archivo) y cada clave es un
+ * archivo pequeño en keys/ab/cd/{sha256 de la clave} que apunta al blob.
+ * Ambos se escriben en un temporal, se sincronizan a disco y se publican con
+ * un move atómico, así que un lector nunca ve un objeto a medias y un corte
+ * de energía no deja objetos truncados. Se sirven desde ObjectController.
+ *
+ * Las subidas directas usan URLs firmadas con HMAC (clave, tipo, tamaño
+ * máximo y expiración) que recibe el PUT de ObjectController, en el papel que
+ * cumple la URL firmada de Supabase.
+ */
+@Component
+@ConditionalOnProperty(name = "image.storage.backend", havingValue = "local")
+public class LocalObjectStore implements ObjectStore {
+
+    private final Path blobsDir;
+    private final Path keysDir;
+    private final Path tmpDir;
+    private final String publicBaseUrl;
+    private final HmacSigner signer;
+
+    public LocalObjectStore(
+            @Value("${image.storage.local.dir:${java.io.tmpdir}/image-service/objects}") String dir,
+            @Value("${image.storage.local.public-url:http://localhost:8083/images/objects}") String publicBaseUrl,
+            HmacSigner signer
+    ) throws IOException {
+        Path root = Path.of(dir);
+        this.blobsDir = Files.createDirectories(root.resolve("blobs"));
+        this.keysDir = Files.createDirectories(root.resolve("keys"));
+        this.tmpDir = Files.createDirectories(root.resolve("tmp"));
+        this.publicBaseUrl = publicBaseUrl.endsWith("/")
+                ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1)
+                : publicBaseUrl;
+        this.signer = signer;
+    }
+
+    @Override
+    public Mono<String> put(String key, Flux<DataBuffer> content, long size, MediaType contentType) {
+        return Mono.defer(() -> {
+            Path keyFile = keyPath(key);
+            BlobWriter writer = new BlobWriter();
+            return content
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(buffer -> {
+                        try {
+                            writer.write(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(() -> {
+                        StoredObject stored = writer.commit(resolveType(key, contentType));
+                        writePointer(keyFile, key, stored);
+                        return publicUrl(key);
+                    }))
+                    .doOnError(error -> writer.abort())
+                    .doOnCancel(writer::abort)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> exists(String key) {
+        return Mono.fromCallable(() -> Files.exists(keyPath(key)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<DataBuffer> get(String key) {
+        return find(key)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Objeto no encontrado")))
+                .flatMapMany(object -> DataBufferUtils.read(object.file(), DefaultDataBufferFactory.sharedInstance, 64 * 1024));
+    }
+
+    @Override
+    public Mono<SignedUpload> signUpload(String key, MediaType contentType, long maxBytes, Duration ttl) {
+        return Mono.fromCallable(() -> {
+            keyPath(key);
+            Instant expiresAt = Instant.now().plus(ttl);
+            long expires = expiresAt.getEpochSecond();
+            String signature = signer.sign(uploadPayload(key, contentType, maxBytes, expires));
+            String url = publicUrl(key) + "?expires=" + expires + "&max=" + maxBytes + "&signature=" + signature;
+            return new SignedUpload(url, "PUT", Map.of("Content-Type", contentType.toString()), expiresAt);
+        });
+    }
+
+    /**
+     * Escribe el cuerpo de un PUT a una URL de signUpload: la firma cubre la
+     * clave, el Content-Type enviado, el tamaño máximo y la expiración. Los
+     * bytes se cuentan mientras llegan y la subida se corta al exceder max.
+     * Como en Supabase sin x-upsert, la URL no sobrescribe un objeto ya subido.
+     */
+    public Mono<String> putSigned(String key, Flux<DataBuffer> content, MediaType contentType,
+                                  long expires, long maxBytes, String signature) {
+        return Mono.defer(() -> {
+            if (contentType == null || !signer.verify(uploadPayload(key, contentType, maxBytes, expires), signature)) {
+                return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "Firma de subida inválida"));
+            }
+            if (Instant.now().getEpochSecond() > expires) {
+                return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "La URL de subida expiró"));
+            }
+            if (Files.exists(keyPath(key))) {
+                return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "El objeto ya existe"));
+            }
+            AtomicLong received = new AtomicLong();
+            Flux<DataBuffer> limited = content.handle((buffer, sink) -> {
+                if (received.addAndGet(buffer.readableByteCount()) > maxBytes) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "El archivo excede el límite de " + maxBytes + " bytes"));
+                } else {
+                    sink.next(buffer);
+                }
+            });
+            return put(key, limited, -1, contentType);
+        });
+    }
+
+    private static String uploadPayload(String key, MediaType contentType, long maxBytes, long expires) {
+        return "PUT\n" + key + "\n" + contentType + "\n" + maxBytes + "\n" + expires;
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return publicBaseUrl + "/" + key;
+    }
+
+    /**
+     * Objeto guardado bajo la clave, o vacío si no existe.
+     */
+    public Mono<StoredObject> find(String key) {
+        return Mono.fromCallable(() -> {
+                    Path keyFile = keyPath(key);
+                    if (!Files.exists(keyFile)) {
+                        return null;
+                    }
+                    List<String> lines = Files.readAllLines(keyFile, StandardCharsets.UTF_8);
+                    String sha256 = lines.get(0);
+                    return new StoredObject(blobPath(sha256), sha256, Long.parseLong(lines.get(1)),
+                            MediaType.parseMediaType(lines.get(2)));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Path keyPath(String key) {
+        if (key == null || key.isBlank() || key.startsWith("/") || key.contains("..") || key.contains("\\")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Clave de objeto inválida");
+        }
+        return sharded(keysDir, sha256Hex(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Path blobPath(String sha256) {
+        return sharded(blobsDir, sha256);
+    }
+
+    private static Path sharded(Path base, String hash) {
+        return base.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static MediaType resolveType(String key, MediaType contentType) {
+        if (contentType != null && !MediaType.APPLICATION_OCTET_STREAM.equals(contentType)) {
+            return contentType;
+        }
+        return MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private void writePointer(Path keyFile, String key, StoredObject stored) throws IOException {
+        String pointer = stored.sha256() + "\n" + stored.size() + "\n" + stored.contentType() + "\n" + key + "\n";
+        Path tmp = Files.createTempFile(tmpDir, "key-", ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(pointer.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        publish(tmp, keyFile);
+    }
+
+    // Move atómico al destino y fsync del directorio para que el nombre
+    // también sobreviva un corte
+    private static void publish(Path tmp, Path target) throws IOException {
+        Path parent = Files.createDirectories(target.getParent());
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel directory = FileChannel.open(parent, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+            // algunos sistemas (Windows) no permiten abrir directorios
+        }
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Archivo del blob, su SHA-256 (ETag fuerte), tamaño y tipo.
+     */
+    public record StoredObject(Path file, String sha256, long size, MediaType contentType) {
+    }
+
+    private final class BlobWriter {
+
+        private final MessageDigest digest = newDigest();
+        private Path file;
+        private FileChannel channel;
+        private long size;
+
+        void write(DataBuffer buffer) {
+            try {
+                if (channel == null) {
+                    file = Files.createTempFile(tmpDir, "blob-", ".tmp");
+                    channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                }
+                try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                    while (iterator.hasNext()) {
+                        ByteBuffer byteBuffer = iterator.next();
+                        digest.update(byteBuffer.duplicate());
+                        while (byteBuffer.hasRemaining()) {
+                            size += channel.write(byteBuffer);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        StoredObject commit(MediaType contentType) throws IOException {
+            if (channel == null) {
+                // contenido vacío
+                file = Files.createTempFile(tmpDir, "blob-", ".tmp");
+            } else {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            Path target = blobPath(sha256);
+            if (Files.exists(target)) {
+                // mismo contenido ya guardado bajo otra clave
+                Files.delete(file);
+            } else {
+                publish(file, target);
+            }
+            file = null;
+            return new StoredObject(target, sha256, size, contentType);
+        }
+
+        void abort() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException ignored) {
+                // el temporal queda en tmp/
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.image_service.storage;
+
+import java.time.Duration;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Almacenamiento de objetos donde quedan originales, procesadas, variantes y
+ * avatares. Se elige con image.storage.backend (supabase | local).
+ */
+public interface ObjectStore {
+
+    /**
+     * Escribe el contenido bajo la clave (reemplazando si ya existe) y
+     * devuelve su URL pública.
+     */
+    Mono<String> put(String key, Flux<DataBuffer> content, long size, MediaType contentType);
+
+    Mono<Boolean> exists(String key);
+
+    /**
+     * Contenido guardado bajo la clave; falla con 404 si no existe.
+     */
+    Flux<DataBuffer> get(String key);
+
+    /**
+     * URL firmada para que el cliente suba hasta maxBytes de contentType bajo
+     * la clave sin pasar por este servicio.
+     */
+    Mono<SignedUpload> signUpload(String key, MediaType contentType, long maxBytes, Duration ttl);
+
+    String publicUrl(String key);
+}
@@ -0,0 +1,11 @@
+package com.example.image_service.storage;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * URL a la que el cliente sube el contenido directamente, con el método y
+ * los encabezados que debe enviar.
+ */
+public record SignedUpload(String url, String method, Map<String, String> headers, Instant expiresAt) {
+}
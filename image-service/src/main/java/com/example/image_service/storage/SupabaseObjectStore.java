@@ -0,0 +1,148 @@
+package com.example.image_service.storage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Bucket público de Supabase Storage (API REST). Los objetos se sirven desde
+ * el CDN de Supabase.
+ *
+ * Las URLs de subida firmadas de Supabase valen dos horas sin importar el ttl
+ * pedido y no limitan el tamaño (solo el límite del bucket): el plazo corto y
+ * maxBytes los impone UploadIntentService al confirmar. Se firman sin
+ * x-upsert, así que cada URL sirve para una sola subida: una vez escrito el
+ * objeto, Supabase rechaza otro PUT sobre la misma clave y lo confirmado ya
+ * no se puede reemplazar.
+ *
+ * Los errores transitorios (conexión, timeout, 5xx, 429) se reintentan con
+ * backoff exponencial y jitter. Reintentar es seguro: las claves dependen del
+ * contenido o son únicas por subida y put sobrescribe (x-upsert), así que un
+ * reintento de una subida que sí llegó deja el mismo objeto, no uno nuevo.
+ * Quien llama a put debe pasar un contenido que se pueda volver a leer.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "image.storage.backend", havingValue = "supabase", matchIfMissing = true)
+public class SupabaseObjectStore implements ObjectStore {
+
+    private final WebClient supabaseClient;
+
+    @Value("${supabase.anon-key}")
+    private String supabaseKey;
+
+    @Value("${supabase.bucket}")
+    private String bucket;
+
+    @Value("${supabase.url}")
+    private String supabaseUrl;
+
+    @Value("${image.storage.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${image.storage.retry.min-backoff-ms:200}")
+    private long minBackoffMs;
+
+    @Value("${image.storage.retry.max-backoff-ms:5000}")
+    private long maxBackoffMs;
+
+    @Override
+    public Mono<String> put(String key, Flux<DataBuffer> content, long size, MediaType contentType) {
+        return supabaseClient.post()
+                .uri("/object/" + bucket + "/" + key)
+                .contentType(contentType)
+                .contentLength(size)
+                .header("Authorization", "Bearer " + supabaseKey)
+                .header("apikey", supabaseKey)
+                .header("x-upsert", "true")
+                .body(BodyInserters.fromDataBuffers(content))
+                .retrieve()
+                .bodyToMono(String.class)
+                .retryWhen(retry("put " + key))
+                .map(r -> publicUrl(key));
+    }
+
+    @Override
+    public Mono<Boolean> exists(String key) {
+        return supabaseClient.head()
+                .uri("/object/public/" + bucket + "/" + key)
+                .exchangeToMono(response -> response.releaseBody()
+                        .thenReturn(response.statusCode().is2xxSuccessful()))
+                .onErrorReturn(false);
+    }
+
+    @Override
+    public Flux<DataBuffer> get(String key) {
+        return supabaseClient.get()
+                .uri("/object/" + bucket + "/" + key)
+                .header("Authorization", "Bearer " + supabaseKey)
+                .header("apikey", supabaseKey)
+                .retrieve()
+                .onStatus(status -> status.value() == 400 || status.value() == 404,
+                        response -> response.releaseBody()
+                                .thenReturn(new ResponseStatusException(HttpStatus.NOT_FOUND, "Objeto no encontrado")))
+                .bodyToFlux(DataBuffer.class);
+    }
+
+    @Override
+    public Mono<SignedUpload> signUpload(String key, MediaType contentType, long maxBytes, Duration ttl) {
+        return supabaseClient.post()
+                .uri("/object/upload/sign/" + bucket + "/" + key)
+                .header("Authorization", "Bearer " + supabaseKey)
+                .header("apikey", supabaseKey)
+                .retrieve()
+                .bodyToMono(SignedUrl.class)
+                .retryWhen(retry("sign " + key))
+                .map(signed -> new SignedUpload(
+                        supabaseUrl + "/storage/v1" + signed.url(),
+                        "PUT",
+                        Map.of("Content-Type", contentType.toString()),
+                        Instant.now().plus(ttl)));
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + key;
+    }
+
+    private Retry retry(String operation) {
+        return Retry.backoff(Math.max(0, maxAttempts - 1), Duration.ofMillis(minBackoffMs))
+                .maxBackoff(Duration.ofMillis(maxBackoffMs))
+                .jitter(0.5)
+                .filter(SupabaseObjectStore::isTransient)
+                .doBeforeRetry(signal -> log.warn("Supabase falló en {} (intento {}): {}",
+                        operation, signal.totalRetries() + 1, signal.failure().toString()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+
+    // Respuesta de /object/upload/sign: "/object/upload/sign/{bucket}/{key}?token=..."
+    private record SignedUrl(String url) {
+    }
+}
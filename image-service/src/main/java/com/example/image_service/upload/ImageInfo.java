@@ -0,0 +1,21 @@
+package com.example.image_service.upload;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Formato y dimensiones leídos de la cabecera, sin decodificar la imagen.
+ */
+public record ImageInfo(String format, int width, int height, int bitDepth) {
+
+    public MediaType mediaType() {
+        return switch (format) {
+            case "png" -> MediaType.IMAGE_PNG;
+            case "jpeg" -> MediaType.IMAGE_JPEG;
+            default -> MediaType.parseMediaType("image/" + format);
+        };
+    }
+
+    public String extension() {
+        return "jpeg".equals(format) ? ".jpg" : "." + format;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.image_service.upload;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Lee la cabecera de una imagen a medida que llegan los bytes, sin
+ * decodificarla: firma de PNG, JPEG o WebP y, de sus cabeceras, ancho, alto
+ * y profundidad de bits. Rechaza formatos desconocidos, cabeceras
+ * malformadas y dimensiones fuera de los límites (bombas de descompresión:
+ * pocos bytes que se expanden a un raster enorme) antes de que el contenido
+ * se vuelque a disco, se suba o llegue a la GPU.
+ *
+ * En JPEG los segmentos previos al SOF (EXIF, ICC...) se saltan sin
+ * guardarlos; el resto de formatos necesita menos de 32 bytes.
+ */
+final class ImageProbe {
+
+    // Cabeceras de PNG y WebP completas, y la firma de cualquier formato
+    private static final int HEAD_BYTES = 30;
+    // Metadatos que se aceptan en un JPEG antes del SOF
+    private static final int MAX_SCAN_BYTES = 1024 * 1024;
+
+    private final long maxPixels;
+    private final int maxDimension;
+
+    private final byte[] head = new byte[HEAD_BYTES];
+    private int headLength;
+    private long scanned;
+    private ImageInfo info;
+
+    // Estado del recorrido de segmentos JPEG
+    private final byte[] segment = new byte[9];
+    private int segmentLength;
+    private long skip;
+
+    ImageProbe(long maxPixels, int maxDimension) {
+        this.maxPixels = maxPixels;
+        this.maxDimension = maxDimension;
+    }
+
+    boolean isDone() {
+        return info != null;
+    }
+
+    ImageInfo info() {
+        return info;
+    }
+
+    /**
+     * Consume bytes hasta conocer las dimensiones; no modifica la posición
+     * del buffer recibido.
+     */
+    void feed(ByteBuffer buffer) {
+        ByteBuffer bytes = buffer.duplicate();
+        while (info == null && bytes.hasRemaining()) {
+            if (headLength < HEAD_BYTES && !isJpegBody()) {
+                int n = Math.min(HEAD_BYTES - headLength, bytes.remaining());
+                bytes.get(head, headLength, n);
+                headLength += n;
+                scanned += n;
+                inspectHead();
+            } else {
+                scanJpeg(bytes);
+            }
+            if (scanned > MAX_SCAN_BYTES) {
+                throw invalid("No se encontraron las dimensiones en la cabecera de la imagen");
+            }
+        }
+    }
+
+    /**
+     * Se llama al terminar el contenido: una imagen sin cabecera completa
+     * está truncada.
+     */
+    ImageInfo finish() {
+        if (info == null) {
+            throw invalid("Imagen truncada o en un formato no soportado (PNG, JPEG o WebP)");
+        }
+        return info;
+    }
+
+    private boolean isJpegBody() {
+        return headLength >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8;
+    }
+
+    private void inspectHead() {
+        if (headLength >= 2 && isJpegBody()) {
+            // Los bytes ya leídos después de SOI se recorren como segmentos
+            ByteBuffer rest = ByteBuffer.wrap(head, 2, headLength - 2);
+            headLength = 2;
+            scanJpeg(rest);
+            return;
+        }
+        if (headLength >= 8 && startsWith(head, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            if (headLength >= 26) {
+                inspectPng();
+            }
+            return;
+        }
+        if (headLength >= 12 && startsWith(head, 'R', 'I', 'F', 'F') && regionEquals(8, "WEBP")) {
+            if (headLength >= HEAD_BYTES) {
+                inspectWebp();
+            }
+            return;
+        }
+        if (headLength >= 12) {
+            throw invalid("Solo se permiten imágenes PNG, JPEG o WebP");
+        }
+    }
+
+    private void inspectPng() {
+        if (!regionEquals(12, "IHDR")) {
+            throw invalid("Cabecera PNG inválida");
+        }
+        int width = int32(16);
+        int height = int32(20);
+        int bitDepth = head[24] & 0xFF;
+        int colorType = head[25] & 0xFF;
+        boolean validDepth = switch (colorType) {
+            case 0 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+            case 3 -> bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+            case 2, 4, 6 -> bitDepth == 8 || bitDepth == 16;
+            default -> false;
+        };
+        if (!validDepth) {
+            throw invalid("Cabecera PNG inválida");
+        }
+        accept("png", width, height, bitDepth);
+    }
+
+    private void inspectWebp() {
+        int width;
+        int height;
+        if (regionEquals(12, "VP8 ")) {
+            // Frame con pérdida: código de inicio 9D 01 2A y dimensiones de 14 bits
+            if ((head[23] & 0xFF) != 0x9D || (head[24] & 0xFF) != 0x01 || (head[25] & 0xFF) != 0x2A) {
+                throw invalid("Cabecera WebP inválida");
+            }
+            width = uint16le(26) & 0x3FFF;
+            height = uint16le(28) & 0x3FFF;
+        } else if (regionEquals(12, "VP8L")) {
+            // Sin pérdida: firma 0x2F y (ancho - 1), (alto - 1) de 14 bits
+            if ((head[20] & 0xFF) != 0x2F) {
+                throw invalid("Cabecera WebP inválida");
+            }
+            long bits = (head[21] & 0xFFL) | (head[22] & 0xFFL) << 8 | (head[23] & 0xFFL) << 16 | (head[24] & 0xFFL) << 24;
+            width = (int) (bits & 0x3FFF) + 1;
+            height = (int) ((bits >> 14) & 0x3FFF) + 1;
+        } else if (regionEquals(12, "VP8X")) {
+            // Extendido: lienzo de 24 bits (valor - 1)
+            width = uint24le(24) + 1;
+            height = uint24le(27) + 1;
+        } else {
+            throw invalid("Cabecera WebP inválida");
+        }
+        accept("webp", width, height, 8);
+    }
+
+    private void scanJpeg(ByteBuffer bytes) {
+        while (info == null && bytes.hasRemaining()) {
+            if (skip > 0) {
+                int n = (int) Math.min(skip, bytes.remaining());
+                bytes.position(bytes.position() + n);
+                skip -= n;
+                scanned += n;
+                continue;
+            }
+            segment[segmentLength++] = bytes.get();
+            scanned++;
+            processJpegSegment();
+        }
+    }
+
+    // segment acumula FF y el marcador y, en un SOF, longitud, precisión, alto y ancho
+    private void processJpegSegment() {
+        if ((segment[0] & 0xFF) != 0xFF) {
+            throw invalid("Cabecera JPEG inválida");
+        }
+        if (segmentLength < 2) {
+            return;
+        }
+        int marker = segment[1] & 0xFF;
+        if (marker == 0xFF) {
+            // relleno entre segmentos
+            segmentLength = 1;
+            return;
+        }
+        if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+            segmentLength = 0;
+            return;
+        }
+        if (marker == 0xDA || marker == 0xD9 || marker == 0x00) {
+            throw invalid("Cabecera JPEG inválida");
+        }
+        if (segmentLength < 4) {
+            return;
+        }
+        int length = (segment[2] & 0xFF) << 8 | (segment[3] & 0xFF);
+        if (length < 2) {
+            throw invalid("Cabecera JPEG inválida");
+        }
+        if (!isStartOfFrame(marker)) {
+            skip = length - 2;
+            segmentLength = 0;
+            return;
+        }
+        if (segmentLength < segment.length) {
+            return;
+        }
+        int precision = segment[4] & 0xFF;
+        int height = (segment[5] & 0xFF) << 8 | (segment[6] & 0xFF);
+        int width = (segment[7] & 0xFF) << 8 | (segment[8] & 0xFF);
+        if (precision != 8 && precision != 12 && precision != 16) {
+            throw invalid("Cabecera JPEG inválida");
+        }
+        accept("jpeg", width, height, precision);
+    }
+
+    private void accept(String format, int width, int height, int bitDepth) {
+        if (width <= 0 || height <= 0) {
+            throw invalid("La imagen no tiene dimensiones válidas");
+        }
+        if (width > maxDimension || height > maxDimension) {
+            throw invalid("La imagen excede " + maxDimension + " px por lado (" + width + "x" + height + ")");
+        }
+        if ((long) width * height > maxPixels) {
+            throw invalid("La imagen excede " + (maxPixels / 1_000_000) + " megapíxeles (" + width + "x" + height + ")");
+        }
+        info = new ImageInfo(format, width, height, bitDepth);
+    }
+
+    // SOF0..SOF15 salvo DHT (C4), JPG (C8) y DAC (CC)
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private boolean regionEquals(int offset, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (head[offset + i] != (byte) ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int int32(int offset) {
+        return (head[offset] & 0xFF) << 24 | (head[offset + 1] & 0xFF) << 16
+                | (head[offset + 2] & 0xFF) << 8 | (head[offset + 3] & 0xFF);
+    }
+
+    private int uint16le(int offset) {
+        return (head[offset] & 0xFF) | (head[offset + 1] & 0xFF) << 8;
+    }
+
+    private int uint24le(int offset) {
+        return (head[offset] & 0xFF) | (head[offset + 1] & 0xFF) << 8 | (head[offset + 2] & 0xFF) << 16;
+    }
+
+    private static ResponseStatusException invalid(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+}
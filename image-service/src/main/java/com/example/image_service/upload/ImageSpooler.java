@@ -0,0 +1,182 @@
+package com.example.image_service.upload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Recibe el contenido de una imagen como flujo de buffers sin juntarlo en un
+ * solo byte[]: hasta el umbral se guarda en memoria, por encima se vuelca a
+ * un archivo temporal. El límite de tamaño se valida mientras llegan los
+ * bytes, cancelando la subida en cuanto se excede. El SHA-256 del contenido
+ * se calcula en la misma pasada, y la cabecera se valida con ImageProbe con
+ * los primeros bytes, antes de guardar nada.
+ */
+@Component
+public class ImageSpooler {
+
+    private final int memoryThreshold;
+    private final Path spoolDir;
+    private final long maxPixels;
+    private final int maxDimension;
+
+    public ImageSpooler(
+            @Value("${image.upload.memory-threshold:1048576}") int memoryThreshold,
+            @Value("${image.upload.spool-dir:${java.io.tmpdir}/image-service/spool}") String spoolDir,
+            @Value("${image.upload.max-pixels:50000000}") long maxPixels,
+            @Value("${image.upload.max-dimension:16384}") int maxDimension
+    ) throws IOException {
+        this.memoryThreshold = memoryThreshold;
+        this.spoolDir = Files.createDirectories(Path.of(spoolDir));
+        this.maxPixels = maxPixels;
+        this.maxDimension = maxDimension;
+    }
+
+    public Mono<SpooledImage> spool(Flux<DataBuffer> content, long maxBytes) {
+        return spool(content, maxBytes, null);
+    }
+
+    /**
+     * Igual que spool(content, maxBytes), aceptando solo los formatos dados
+     * ("png", "jpeg", "webp"); null acepta los tres.
+     */
+    public Mono<SpooledImage> spool(Flux<DataBuffer> content, long maxBytes, Set<String> formats) {
+        return Mono.defer(() -> {
+            SpoolWriter writer = new SpoolWriter(maxBytes, formats);
+            return content
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(buffer -> {
+                        try {
+                            writer.write(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(writer::finish))
+                    .doOnError(error -> writer.abort())
+                    .doOnCancel(writer::abort)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    private final class SpoolWriter {
+
+        private final long maxBytes;
+        private final Set<String> formats;
+        private final MessageDigest digest = sha256();
+        private final ImageProbe probe = new ImageProbe(maxPixels, maxDimension);
+        private byte[] memory = new byte[8192];
+        private long size;
+        private Path file;
+        private FileChannel channel;
+
+        private SpoolWriter(long maxBytes, Set<String> formats) {
+            this.maxBytes = maxBytes;
+            this.formats = formats;
+        }
+
+        void write(DataBuffer buffer) {
+            int length = buffer.readableByteCount();
+            if (size + length > maxBytes) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "El archivo excede el límite de " + (maxBytes / (1024 * 1024)) + "MB");
+            }
+
+            if (!probe.isDone()) {
+                try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                    while (iterator.hasNext()) {
+                        probe.feed(iterator.next());
+                    }
+                }
+                if (probe.isDone() && formats != null && !formats.contains(probe.info().format())) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Formato de imagen no permitido: " + probe.info().format());
+                }
+            }
+
+            try {
+                if (channel == null && size + length <= memoryThreshold) {
+                    if (size + length > memory.length) {
+                        memory = Arrays.copyOf(memory, (int) Math.min(memoryThreshold, Math.max(memory.length * 2, size + length)));
+                    }
+                    buffer.read(memory, (int) size, length);
+                    digest.update(memory, (int) size, length);
+                } else {
+                    if (channel == null) {
+                        spill();
+                    }
+                    try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                        while (iterator.hasNext()) {
+                            ByteBuffer byteBuffer = iterator.next();
+                            digest.update(byteBuffer.duplicate());
+                            while (byteBuffer.hasRemaining()) {
+                                channel.write(byteBuffer);
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            size += length;
+        }
+
+        SpooledImage finish() throws IOException {
+            ImageInfo info = probe.finish();
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            if (channel == null) {
+                return SpooledImage.inMemory(memory, (int) size, sha256, info);
+            }
+            channel.close();
+            return SpooledImage.onDisk(file, size, sha256, info);
+        }
+
+        void abort() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException ignored) {
+                // nada más que hacer: el archivo queda en el directorio temporal
+            }
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void spill() throws IOException {
+            file = Files.createTempFile(spoolDir, "upload-", ".bin");
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.write(ByteBuffer.wrap(memory, 0, (int) size));
+            memory = null;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.image_service.upload;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Formulario multipart leído como flujo de PartEvent: el contenido de la
+ * parte "file" va directo de la red al spool, sin que el lector de multipart
+ * lo escriba antes en su propio temporal. Así el límite de tamaño y la
+ * validación de la cabecera cortan la subida en cuanto se exceden, y el
+ * archivo toca el disco una sola vez. Los campos de texto se juntan en un
+ * mapa; otras partes de archivo se descartan.
+ */
+public record MultipartForm(Map<String, String> fields, SpooledImage file) {
+
+    public static final String FILE_PART = "file";
+
+    /**
+     * Lee el formulario y ejecuta handler con él; el spool se libera al
+     * terminar, con éxito, error o cancelación.
+     */
+    public static <T> Mono<T> read(Flux<PartEvent> parts, Function<Flux<DataBuffer>, Mono<SpooledImage>> spool,
+                                   Function<MultipartForm, Mono<T>> handler) {
+        return Mono.usingWhen(read(parts, spool), handler, MultipartForm::release);
+    }
+
+    public static Mono<MultipartForm> read(Flux<PartEvent> parts, Function<Flux<DataBuffer>, Mono<SpooledImage>> spool) {
+        return Mono.defer(() -> {
+            Map<String, String> fields = new HashMap<>();
+            AtomicReference<SpooledImage> file = new AtomicReference<>();
+
+            // Las partes llegan en orden y concatMap las procesa de a una, así
+            // que el mapa no necesita sincronización
+            return parts
+                    .windowUntil(PartEvent::isLast)
+                    .concatMap(part -> part.switchOnFirst((signal, events) -> {
+                        PartEvent first = signal.get();
+                        if (first instanceof FilePartEvent && FILE_PART.equals(first.name())) {
+                            if (file.get() != null) {
+                                return discard(events).then(Mono.error(new ResponseStatusException(
+                                        HttpStatus.BAD_REQUEST, "Solo se admite una parte file")));
+                            }
+                            return spool.apply(events.map(PartEvent::content)).doOnNext(file::set).then();
+                        }
+                        if (first instanceof FormPartEvent form) {
+                            fields.put(form.name(), form.value());
+                        }
+                        return discard(events);
+                    }))
+                    .then(Mono.fromSupplier(() -> new MultipartForm(Map.copyOf(fields), file.get())))
+                    // Si el formulario falla después de recibir el archivo, el
+                    // spool no llega a usingWhen y hay que liberarlo aquí
+                    .doOnError(error -> close(file))
+                    .doOnCancel(() -> close(file));
+        });
+    }
+
+    /**
+     * Valor del campo, o null si no vino.
+     */
+    public String field(String name) {
+        return fields.get(name);
+    }
+
+    public String requireField(String name) {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falta la parte " + name);
+        }
+        return value;
+    }
+
+    public SpooledImage requireFile() {
+        if (file == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falta la parte " + FILE_PART);
+        }
+        return file;
+    }
+
+    public Mono<Void> release() {
+        return file == null ? Mono.empty() : file.release();
+    }
+
+    private static Mono<Void> discard(Flux<PartEvent> events) {
+        return events.doOnNext(event -> DataBufferUtils.release(event.content())).then();
+    }
+
+    private static void close(AtomicReference<SpooledImage> file) {
+        SpooledImage spooled = file.getAndSet(null);
+        if (spooled != null) {
+            spooled.close();
+        }
+    }
+}
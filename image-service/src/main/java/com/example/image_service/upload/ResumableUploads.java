@@ -0,0 +1,293 @@
+package com.example.image_service.upload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Subidas reanudables por partes: el cliente declara el tamaño, envía el
+ * contenido en trozos indicando el offset de cada uno y, si la conexión se
+ * corta, consulta el offset guardado y sigue desde ahí en vez de reenviar
+ * todo.
+ *
+ * Cada subida es un archivo {id}.part, al que se agregan los bytes a medida
+ * que llegan (lo recibido antes de un corte queda guardado), y un {id}.meta
+ * con el tamaño y el dueño; el offset es el tamaño del .part, así que una
+ * subida sobrevive un reinicio. Solo se acepta un trozo a la vez por subida.
+ * Las que no reciben nada durante ttl se borran.
+ */
+@Slf4j
+@Component
+public class ResumableUploads {
+
+    private static final Pattern ID = Pattern.compile("[0-9a-f\\-]{36}");
+
+    private final Path dir;
+    private final Duration ttl;
+    private final Duration cleanupInterval;
+    private final long maxBytes;
+    private final long maxPixels;
+    private final int maxDimension;
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+    private Disposable cleanup;
+
+    public ResumableUploads(
+            @Value("${image.upload.resumable.dir:${java.io.tmpdir}/image-service/resumable}") String dir,
+            @Value("${image.upload.resumable.ttl-ms:86400000}") long ttlMs,
+            @Value("${image.upload.resumable.cleanup-interval-ms:600000}") long cleanupIntervalMs,
+            @Value("${image.upload.max-bytes:20971520}") long maxBytes,
+            @Value("${image.upload.max-pixels:50000000}") long maxPixels,
+            @Value("${image.upload.max-dimension:16384}") int maxDimension
+    ) throws IOException {
+        this.dir = Files.createDirectories(Path.of(dir));
+        this.ttl = Duration.ofMillis(ttlMs);
+        this.cleanupInterval = Duration.ofMillis(cleanupIntervalMs);
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+        this.maxDimension = maxDimension;
+    }
+
+    @PostConstruct
+    public void startCleanup() {
+        cleanup = Flux.interval(cleanupInterval, cleanupInterval, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> removeExpired());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (cleanup != null) {
+            cleanup.dispose();
+        }
+    }
+
+    public Mono<Session> create(String owner, long size) {
+        if (size <= 0 || size > maxBytes) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El archivo excede el límite de " + (maxBytes / (1024 * 1024)) + "MB"));
+        }
+        return Mono.fromCallable(() -> {
+                    String id = UUID.randomUUID().toString();
+                    Files.createFile(partPath(id));
+                    Files.writeString(metaPath(id), size + "\n" + (owner == null ? "" : owner) + "\n",
+                            StandardCharsets.UTF_8);
+                    return new Session(id, owner, size, 0, Instant.now().plus(ttl));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Estado de la subida; 404 si no existe o es de otro usuario.
+     */
+    public Mono<Session> find(String id, String owner) {
+        return Mono.fromCallable(() -> load(id, owner))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Agrega un trozo que empieza en offset. Si offset no coincide con lo ya
+     * guardado responde 409 (el cliente debe consultar el estado y seguir
+     * desde ahí). En el primer trozo se valida la cabecera de la imagen para
+     * no recibir el resto de un archivo que se va a rechazar.
+     */
+    public Mono<Session> append(String id, String owner, long offset, Flux<DataBuffer> body) {
+        return find(id, owner).flatMap(session -> {
+            if (!busy.add(id)) {
+                return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Ya hay un trozo en curso para esta subida"));
+            }
+            ChunkWriter writer;
+            try {
+                // El offset se lee del archivo ya tomado el turno: el de session
+                // puede ser anterior a un trozo que terminó mientras tanto
+                writer = new ChunkWriter(session);
+            } catch (UncheckedIOException e) {
+                busy.remove(id);
+                return Mono.error(e);
+            }
+            if (offset != writer.offset) {
+                writer.close();
+                busy.remove(id);
+                return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Offset " + offset + " no coincide con lo recibido (" + writer.offset + ")"));
+            }
+            return body
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(buffer -> {
+                        try {
+                            writer.write(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(writer::finish))
+                    .doOnError(error -> writer.close())
+                    .doOnCancel(writer::close)
+                    .doFinally(signal -> busy.remove(id))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    /**
+     * Archivo con el contenido completo; 409 si todavía faltan bytes. La
+     * subida sigue existiendo hasta discard, así que si el procesamiento
+     * falla se puede volver a completar sin reenviar nada.
+     */
+    public Mono<Path> complete(String id, String owner) {
+        return find(id, owner).flatMap(session -> session.offset() == session.size()
+                ? Mono.just(partPath(id))
+                : Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Faltan bytes: recibidos " + session.offset() + " de " + session.size())));
+    }
+
+    public Mono<Void> discard(String id) {
+        return Mono.fromRunnable(() -> delete(id))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Session load(String id, String owner) throws IOException {
+        if (id == null || !ID.matcher(id).matches() || !Files.exists(metaPath(id))) {
+            throw notFound();
+        }
+        List<String> meta = Files.readAllLines(metaPath(id), StandardCharsets.UTF_8);
+        String storedOwner = meta.size() > 1 && !meta.get(1).isEmpty() ? meta.get(1) : null;
+        if (storedOwner != null && !Objects.equals(storedOwner, owner)) {
+            throw notFound();
+        }
+        Instant lastActivity = Files.getLastModifiedTime(metaPath(id)).toInstant();
+        return new Session(id, storedOwner, Long.parseLong(meta.get(0)), Files.size(partPath(id)),
+                lastActivity.plus(ttl));
+    }
+
+    private void removeExpired() {
+        Instant limit = Instant.now().minus(ttl);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path meta : files.filter(f -> f.getFileName().toString().endsWith(".meta")).toList()) {
+                String id = meta.getFileName().toString().replace(".meta", "");
+                if (!busy.contains(id) && Files.getLastModifiedTime(meta).toInstant().isBefore(limit)) {
+                    delete(id);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se pudieron limpiar las subidas reanudables vencidas", e);
+        }
+    }
+
+    private void delete(String id) {
+        try {
+            Files.deleteIfExists(partPath(id));
+            Files.deleteIfExists(metaPath(id));
+        } catch (IOException e) {
+            log.warn("No se pudo borrar la subida {}", id, e);
+        }
+    }
+
+    private Path partPath(String id) {
+        return dir.resolve(id + ".part");
+    }
+
+    private Path metaPath(String id) {
+        return dir.resolve(id + ".meta");
+    }
+
+    private static ResponseStatusException notFound() {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Subida no encontrada o vencida");
+    }
+
+    /**
+     * offset: bytes ya guardados; expiresAt: se borra si no recibe nada hasta entonces.
+     */
+    public record Session(String id, String owner, long size, long offset, Instant expiresAt) {
+    }
+
+    private final class ChunkWriter {
+
+        private final Session session;
+        private final ImageProbe probe;
+        private final FileChannel channel;
+        private long offset;
+
+        ChunkWriter(Session session) {
+            this.session = session;
+            try {
+                this.channel = FileChannel.open(partPath(session.id()), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                this.offset = channel.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.probe = offset == 0 ? new ImageProbe(maxPixels, maxDimension) : null;
+        }
+
+        void write(DataBuffer buffer) {
+            int length = buffer.readableByteCount();
+            if (offset + length > session.size()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "El trozo excede el tamaño declarado de " + session.size() + " bytes");
+            }
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer byteBuffer = iterator.next();
+                    if (probe != null && !probe.isDone()) {
+                        probe.feed(byteBuffer);
+                    }
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            offset += length;
+        }
+
+        Session finish() throws IOException {
+            close();
+            Files.setLastModifiedTime(metaPath(session.id()), FileTime.from(Instant.now()));
+            return new Session(session.id(), session.owner(), session.size(), offset, Instant.now().plus(ttl));
+        }
+
+        // Lo escrito antes de un corte o un error se conserva: es el offset
+        // desde el que el cliente retoma
+        void close() {
+            try {
+                if (channel.isOpen()) {
+                    channel.force(false);
+                    channel.close();
+                }
+            } catch (IOException e) {
+                log.warn("No se pudo cerrar la subida {}", session.id(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.image_service.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Contenido de una imagen recibida, guardado en memoria si es pequeño o en un
+ * archivo temporal si supera el umbral. Puede leerse varias veces: los
+ * archivos se mapean en memoria una sola vez y se entregan en bloques sin
+ * copiar a la heap.
+ */
+public final class SpooledImage implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final byte[] memory;
+    private final Path file;
+    private final long size;
+    private final String sha256;
+    private final ImageInfo info;
+    // Quien lo creó tiene la primera referencia; el archivo se borra al soltar la última
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private MappedByteBuffer mapped;
+
+    private SpooledImage(byte[] memory, Path file, long size, String sha256, ImageInfo info) {
+        this.memory = memory;
+        this.file = file;
+        this.size = size;
+        this.sha256 = sha256;
+        this.info = info;
+    }
+
+    public static SpooledImage inMemory(byte[] bytes, int length, String sha256, ImageInfo info) {
+        return new SpooledImage(bytes, null, length, sha256, info);
+    }
+
+    public static SpooledImage onDisk(Path file, long size, String sha256) {
+        return onDisk(file, size, sha256, null);
+    }
+
+    public static SpooledImage onDisk(Path file, long size, String sha256, ImageInfo info) {
+        return new SpooledImage(null, file, size, sha256, info);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * SHA-256 del contenido en hexadecimal, calculado durante la recepción.
+     */
+    public String sha256() {
+        return sha256;
+    }
+
+    /**
+     * Formato y dimensiones leídos de la cabecera al recibir el contenido;
+     * null si no pasó por ImageSpooler (p. ej. un trabajo recuperado).
+     */
+    public ImageInfo info() {
+        return info;
+    }
+
+    public boolean isInMemory() {
+        return memory != null;
+    }
+
+    /**
+     * Flujo re-suscribible con el contenido completo. Los buffers envuelven la
+     * memoria existente, por lo que no hace falta liberarlos.
+     */
+    public Flux<DataBuffer> content() {
+        return Flux.defer(() -> Flux.fromIterable(chunks()))
+                .<DataBuffer>map(DefaultDataBufferFactory.sharedInstance::wrap);
+    }
+
+    /**
+     * Lectura bloqueante, para decodificar la imagen en la JVM (ImageIO).
+     */
+    public InputStream openStream() throws IOException {
+        return memory != null
+                ? new ByteArrayInputStream(memory, 0, (int) size)
+                : Files.newInputStream(file);
+    }
+
+    private List<ByteBuffer> chunks() {
+        ByteBuffer whole = memory != null
+                ? ByteBuffer.wrap(memory, 0, (int) size).slice()
+                : mapped();
+        List<ByteBuffer> chunks = new ArrayList<>((int) (size / CHUNK_SIZE) + 1);
+        for (int offset = 0; offset < size; offset += CHUNK_SIZE) {
+            chunks.add(whole.slice(offset, (int) Math.min(CHUNK_SIZE, size - offset)));
+        }
+        return chunks;
+    }
+
+    private synchronized ByteBuffer mapped() {
+        if (mapped == null) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return mapped.duplicate();
+    }
+
+    /**
+     * Guarda el contenido en una ruta permanente (p. ej. la cola de trabajos).
+     * Si ya estaba en disco se mueve el archivo en lugar de copiarlo.
+     */
+    public Mono<Path> persistTo(Path target) {
+        return Mono.fromCallable(() -> {
+                    Files.createDirectories(target.getParent());
+                    if (memory != null) {
+                        try (OutputStream out = Files.newOutputStream(target)) {
+                            out.write(memory, 0, (int) size);
+                        }
+                    } else {
+                        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    return target;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Toma otra referencia al contenido, para un cálculo que puede seguir
+     * corriendo después de que quien lo creó lo libere. Cada retain se
+     * corresponde con un release o close.
+     */
+    public SpooledImage retain() {
+        refs.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Suelta una referencia; con la última, libera el archivo temporal fuera
+     * del event loop.
+     */
+    public Mono<Void> release() {
+        return Mono.fromRunnable(this::close)
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    @Override
+    public void close() {
+        if (refs.decrementAndGet() > 0) {
+            return;
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // el directorio temporal se limpia al reiniciar
+            }
+        }
+    }
+}
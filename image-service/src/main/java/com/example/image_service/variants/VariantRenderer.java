@@ -0,0 +1,140 @@
+package com.example.image_service.variants;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Versiones reducidas de una imagen para el feed; también codifica los
+ * avatares de AvatarNormalizer.
+ *
+ * El JDK no trae codificador WebP, así que las variantes se guardan como JPEG
+ * progresivo: se escriben desde un raster nuevo sin metadatos (EXIF, ICC,
+ * comentarios) y la reducción se hace en pasos de a la mitad para evitar el
+ * aliasing de un único escalado bilineal.
+ */
+@Component
+public class VariantRenderer {
+
+    public static final String EXTENSION = ".jpg";
+
+    private final List<Integer> imageWidths;
+    private final float quality;
+
+    public VariantRenderer(
+            @Value("${image.variants.widths:160,480,1080}") String imageWidths,
+            @Value("${image.variants.jpeg-quality:0.8}") float quality
+    ) {
+        this.imageWidths = parseWidths(imageWidths);
+        this.quality = quality;
+    }
+
+    public List<Integer> imageWidths(int sourceWidth) {
+        return targetWidths(imageWidths, sourceWidth);
+    }
+
+    // Nunca se amplía: si la imagen es más angosta que todas las variantes se
+    // genera una sola, al ancho original
+    private static List<Integer> targetWidths(List<Integer> widths, int sourceWidth) {
+        List<Integer> targets = new ArrayList<>();
+        for (int width : widths) {
+            if (width < sourceWidth) {
+                targets.add(width);
+            }
+        }
+        if (targets.isEmpty()) {
+            targets.add(sourceWidth);
+        }
+        return targets;
+    }
+
+    /**
+     * Redimensiona al ancho indicado (manteniendo proporción) y codifica.
+     * Puede llamarse en paralelo sobre la misma imagen de origen.
+     */
+    public byte[] render(BufferedImage source, int width) throws IOException {
+        return encodeJpeg(resize(source, width));
+    }
+
+    /**
+     * Codifica sin redimensionar (vistas previas ya reducidas).
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        return encodeJpeg(image);
+    }
+
+    /**
+     * Reduce a la mitad en pasos sucesivos hasta el ancho indicado.
+     */
+    public static BufferedImage resize(BufferedImage source, int targetWidth) {
+        int targetHeight = Math.max(1, Math.round(source.getHeight() * (targetWidth / (float) source.getWidth())));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    // Dibuja sobre RGB opaco: JPEG no tiene alpha, el fondo transparente queda blanco
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Integer> parseWidths(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(Integer::valueOf)
+                .filter(width -> width > 0)
+                .sorted()
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.image_service.avatar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.image_service.upload.ImageInfo;
+import com.example.image_service.upload.SpooledImage;
+import com.example.image_service.variants.VariantRenderer;
+
+class AvatarNormalizerTests {
+
+	@Test
+	void readsOrientationInBothByteOrders() throws Exception {
+		byte[] jpeg = landscape();
+
+		assertThat(ExifOrientation.read(new ByteArrayInputStream(jpeg))).isEqualTo(1);
+		assertThat(ExifOrientation.read(new ByteArrayInputStream(withOrientation(jpeg, 6, ByteOrder.BIG_ENDIAN)))).isEqualTo(6);
+		assertThat(ExifOrientation.read(new ByteArrayInputStream(withOrientation(jpeg, 8, ByteOrder.LITTLE_ENDIAN)))).isEqualTo(8);
+	}
+
+	@Test
+	void cropsToSquareAndAppliesOrientation() throws Exception {
+		AvatarNormalizer normalizer = new AvatarNormalizer(new VariantRenderer("160", 0.8f), "64,160,320", 1, 4);
+		try {
+			byte[] jpeg = withOrientation(landscape(), 6, ByteOrder.BIG_ENDIAN);
+			SpooledImage avatar = SpooledImage.inMemory(jpeg, jpeg.length, "sha", new ImageInfo("jpeg", 400, 200, 8));
+
+			Map<Integer, byte[]> jpegs = normalizer.normalizeBlocking(avatar).jpegs();
+
+			assertThat(jpegs).containsOnlyKeys(64, 160, 320);
+			for (Map.Entry<Integer, byte[]> entry : jpegs.entrySet()) {
+				BufferedImage image = ImageIO.read(new ByteArrayInputStream(entry.getValue()));
+				assertThat(image.getWidth()).isEqualTo(entry.getKey());
+				assertThat(image.getHeight()).isEqualTo(entry.getKey());
+			}
+			// Rotada 90° horario: la mitad izquierda (roja) del recorte queda arriba
+			BufferedImage largest = ImageIO.read(new ByteArrayInputStream(jpegs.get(320)));
+			assertThat(new Color(largest.getRGB(160, 40)).getRed()).isGreaterThan(200);
+			assertThat(new Color(largest.getRGB(160, 280)).getBlue()).isGreaterThan(200);
+		} finally {
+			normalizer.shutdown();
+		}
+	}
+
+	// 400x200: mitad izquierda roja, derecha azul
+	private static byte[] landscape() throws Exception {
+		BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.RED);
+		graphics.fillRect(0, 0, 200, 200);
+		graphics.setColor(Color.BLUE);
+		graphics.fillRect(200, 0, 200, 200);
+		graphics.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", out);
+		return out.toByteArray();
+	}
+
+	// Inserta un APP1 con un IFD0 de una sola entrada (orientación) tras el SOI
+	private static byte[] withOrientation(byte[] jpeg, int orientation, ByteOrder order) {
+		ByteBuffer tiff = ByteBuffer.allocate(26).order(order);
+		tiff.put(order == ByteOrder.BIG_ENDIAN ? "MM".getBytes(StandardCharsets.US_ASCII) : "II".getBytes(StandardCharsets.US_ASCII));
+		tiff.putShort((short) 42).putInt(8);
+		tiff.putShort((short) 1);
+		tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+		tiff.putInt(0);
+		byte[] exif = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+		int length = 2 + exif.length + tiff.capacity();
+
+		ByteBuffer out = ByteBuffer.allocate(jpeg.length + 2 + length);
+		out.put(jpeg, 0, 2);
+		out.put((byte) 0xFF).put((byte) 0xE1).putShort((short) length);
+		out.put(exif).put(tiff.array());
+		out.put(jpeg, 2, jpeg.length - 2);
+		return out.array();
+	}
+}
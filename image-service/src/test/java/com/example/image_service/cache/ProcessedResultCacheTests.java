@@ -0,0 +1,89 @@
+package com.example.image_service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.image_service.upload.SpooledImage;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+class ProcessedResultCacheTests {
+
+	private static final String SHA = "ab".repeat(32);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void persistsEntryUnderItsPrefixDirectory() throws Exception {
+		ProcessedResultCache cache = new ProcessedResultCache(10, dir.toString());
+		String key = ProcessedResultCache.processedKey(SHA, "Gaussian", 5);
+
+		assertThat(key).isEqualTo(SHA + "-gaussian-5");
+		assertThat(cache.getOrCompute(key, () -> Mono.just("url")).block()).isEqualTo("url");
+		assertThat(Files.readString(dir.resolve("ab").resolve(key))).isEqualTo("url");
+		assertThat(new ProcessedResultCache(10, dir.toString()).find(key).block()).isEqualTo("url");
+	}
+
+	@Test
+	void rejectsUnknownFiltersAndKeysOutsideTheIndex() throws Exception {
+		ProcessedResultCache cache = new ProcessedResultCache(10, dir.resolve("index").toString());
+		AtomicInteger produced = new AtomicInteger();
+
+		assertThatThrownBy(() -> ProcessedResultCache.processedKey(SHA, "../../x", 3))
+				.isInstanceOf(ResponseStatusException.class);
+		assertThatThrownBy(() -> cache.find("../../escaped").block())
+				.isInstanceOf(ResponseStatusException.class);
+		assertThatThrownBy(() -> cache.getOrCompute("ab/../../escaped",
+				() -> Mono.fromSupplier(() -> "url" + produced.incrementAndGet())).block())
+				.isInstanceOf(ResponseStatusException.class);
+
+		assertThat(produced).hasValue(0);
+		try (Stream<Path> files = Files.walk(dir)) {
+			assertThat(files.filter(Files::isRegularFile)).isEmpty();
+		}
+	}
+
+	@Test
+	void sharedComputationKeepsTheSpoolOfACancelledOwner() throws Exception {
+		ProcessedResultCache cache = new ProcessedResultCache(10, dir.resolve("index").toString());
+		String key = ProcessedResultCache.processedKey(SHA, "mean", 3);
+		Path ownerFile = Files.writeString(dir.resolve("owner.tmp"), "owner");
+		Path waiterFile = Files.writeString(dir.resolve("waiter.tmp"), "waiter");
+		SpooledImage owner = SpooledImage.onDisk(ownerFile, 5, SHA);
+		SpooledImage waiter = SpooledImage.onDisk(waiterFile, 5, SHA);
+		AtomicInteger produced = new AtomicInteger();
+
+		// Lee el spool recién después de que el dueño se canceló y lo liberó
+		Disposable ownerRequest = cache.getOrCompute(key, owner, input -> Mono.delay(Duration.ofMillis(200))
+						.then(Mono.fromCallable(() -> {
+							produced.incrementAndGet();
+							try (var in = input.openStream()) {
+								return new String(in.readAllBytes());
+							}
+						})))
+				.subscribe();
+		CompletableFuture<String> waiting = cache.getOrCompute(key, waiter, input -> Mono.just("waiter")).toFuture();
+		ownerRequest.dispose();
+		owner.close();
+
+		assertThat(waiting.get()).isEqualTo("owner");
+		assertThat(produced).hasValue(1);
+		Thread.sleep(100);
+		assertThat(ownerFile).doesNotExist();
+		waiter.close();
+		assertThat(waiterFile).doesNotExist();
+	}
+}
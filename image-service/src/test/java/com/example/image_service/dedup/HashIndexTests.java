@@ -0,0 +1,107 @@
+package com.example.image_service.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.SplittableRandom;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+class HashIndexTests {
+
+	@Test
+	void nearestMatchesBruteForce() {
+		SplittableRandom random = new SplittableRandom(7);
+		long[] stored = new long[20_000];
+		HashIndex index = new HashIndex(stored.length);
+		for (int i = 0; i < stored.length; i++) {
+			stored[i] = random.nextLong();
+			index.add("img-" + i, stored[i]);
+		}
+
+		for (int q = 0; q < 2_000; q++) {
+			long query = stored[random.nextInt(stored.length)];
+			for (int flips = random.nextInt(14); flips > 0; flips--) {
+				query ^= 1L << random.nextInt(64);
+			}
+			int maxDistance = 1 + random.nextInt(HashIndex.MAX_DISTANCE);
+
+			int best = Integer.MAX_VALUE;
+			for (long hash : stored) {
+				best = Math.min(best, Long.bitCount(hash ^ query));
+			}
+			HashIndex.Match match = index.nearest(query, maxDistance, null);
+
+			if (best <= maxDistance) {
+				assertThat(match).isNotNull();
+				assertThat(match.distance()).isEqualTo(best);
+			} else {
+				assertThat(match).isNull();
+			}
+		}
+	}
+
+	@Test
+	void excludesSameIdAndEvictsOldest() {
+		HashIndex index = new HashIndex(2);
+		index.add("a", 0L);
+		index.add("a", 0L);
+		index.add("b", 1L);
+
+		assertThat(index.nearest(0L, 4, "a").id()).isEqualTo("b");
+
+		index.add("c", 3L);
+
+		assertThat(index.size()).isEqualTo(2);
+		assertThat(index.nearest(0L, 4, null).id()).isEqualTo("b");
+	}
+
+	@Test
+	void resizedAndRecompressedCopyStaysClose() throws Exception {
+		BufferedImage photo = scene(new Color(200, 40, 90), new Color(20, 120, 220), 1600, 1200);
+		BufferedImage copy = ImageIO.read(new ByteArrayInputStream(jpeg(resize(photo, 640, 480))));
+		BufferedImage other = scene(new Color(20, 160, 60), new Color(240, 220, 40), 1600, 1200);
+
+		long hash = PerceptualHash.dHash(photo);
+
+		assertThat(PerceptualHash.distance(hash, PerceptualHash.dHash(copy))).isLessThanOrEqualTo(4);
+		assertThat(PerceptualHash.distance(hash, PerceptualHash.dHash(other))).isGreaterThan(10);
+	}
+
+	private static BufferedImage scene(Color from, Color to, int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		boolean flipped = from.getGreen() > from.getRed();
+		g.setPaint(new GradientPaint(0, 0, from, width, height, to));
+		g.fillRect(0, 0, width, height);
+		g.setColor(Color.WHITE);
+		g.fillOval(flipped ? width / 2 : width / 8, height / 4, width / 3, height / 2);
+		g.setColor(Color.BLACK);
+		g.fillRect(flipped ? width / 10 : width * 2 / 3, height / 8, width / 6, height * 3 / 4);
+		g.dispose();
+		return image;
+	}
+
+	private static BufferedImage resize(BufferedImage source, int width, int height) {
+		BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(source, 0, 0, width, height, null);
+		g.dispose();
+		return target;
+	}
+
+	private static byte[] jpeg(BufferedImage image) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", out);
+		return out.toByteArray();
+	}
+}
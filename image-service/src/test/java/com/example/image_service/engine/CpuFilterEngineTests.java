@@ -0,0 +1,476 @@
+package com.example.image_service.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara cada filtro del motor CPU con una referencia escrita línea a línea
+ * a partir de cuda_service (cuda/kernels.py y cuda/mask_builder.py): la
+ * convolución 2D directa de la GPU, con el mismo recorte de bordes, el mismo
+ * orden de acumulación en float32 y la misma conversión final a uint8.
+ *
+ * Tolerancia por píxel y canal: ±1 nivel en gaussian, sobel y emboss (el
+ * motor CPU acumula en otro orden, separable o con sumas prefijas, y el
+ * truncado a uint8 puede caer a uno u otro lado), en no más del 1% de los
+ * píxeles para que un sesgo sistemático no pase; exacta en mean, oil_paint
+ * y ups, cuya aritmética coincide operación por operación.
+ */
+class CpuFilterEngineTests {
+
+	private static final int FLOAT_TOLERANCE = 1;
+	private static final double MAX_ROUNDED_SHARE = 0.01;
+
+	// 37x23: ni el ancho ni el alto son múltiplos de las franjas de 16 filas
+	private static final int WIDTH = 37;
+	private static final int HEIGHT = 23;
+
+	private final CpuFilterEngine engine = new CpuFilterEngine(2);
+
+	@AfterEach
+	void tearDown() {
+		engine.shutdown();
+	}
+
+	// ImageProbe acepta WebP: el motor CPU tiene que poder decodificarlo
+	// cuando AUTO cae a la CPU, no responder 400
+	@Test
+	void decodesWebpUploads() throws Exception {
+		byte[] webp = Base64.getDecoder().decode("UklGRhoAAABXRUJQVlA4TA0AAAAvAAAAEAcQERGIiP4HAA==");
+
+		CpuFilterEngine.Output output = engine.apply(new ByteArrayInputStream(webp), "mean", 1);
+
+		assertThat(output.width()).isEqualTo(1);
+		assertThat(output.height()).isEqualTo(1);
+	}
+
+	@Test
+	void gaussianMatchesGpuConvolution() {
+		int[] rgb = sample(WIDTH, HEIGHT, 1);
+		// 23 = lado menor: casi toda la ventana cae fuera y se recorta al borde
+		for (int kernel : new int[] { 3, 7, 23 }) {
+			int[] actual = rgbOf(run(rgb, WIDTH, HEIGHT, "gaussian", kernel));
+			assertWithin("gaussian " + kernel, referenceGaussian(rgb, WIDTH, HEIGHT, kernel), actual, FLOAT_TOLERANCE);
+		}
+	}
+
+	@Test
+	void sobelMatchesGpuMagnitude() {
+		int[] rgb = sample(WIDTH, HEIGHT, 2);
+		int[] gray = referenceLuma(rgb);
+		for (int kernel : new int[] { 3, 9, 23 }) {
+			int[] actual = grayOf(run(rgb, WIDTH, HEIGHT, "sobel", kernel));
+			assertWithin("sobel " + kernel, referenceSobel(gray, WIDTH, HEIGHT, kernel), actual, FLOAT_TOLERANCE);
+		}
+	}
+
+	@Test
+	void embossMatchesGpuConvolution() {
+		int[] rgb = sample(WIDTH, HEIGHT, 3);
+		int[] gray = referenceLuma(rgb);
+		for (int kernel : new int[] { 3, 9, 21 }) {
+			int[] actual = grayOf(run(rgb, WIDTH, HEIGHT, "emboss", kernel));
+			assertWithin("emboss " + kernel, referenceEmboss(gray, WIDTH, HEIGHT, kernel), actual, FLOAT_TOLERANCE);
+		}
+	}
+
+	@Test
+	void meanMatchesGpuIncludingEvenKernels() {
+		int[] rgb = sample(WIDTH, HEIGHT, 4);
+		// Con n par la ventana va de -n/2 a n/2 - 1, como en mean_filter
+		for (int kernel : new int[] { 1, 3, 4, 6, 23 }) {
+			int[] actual = rgbOf(run(rgb, WIDTH, HEIGHT, "mean", kernel));
+			assertWithin("mean " + kernel, referenceMean(rgb, WIDTH, HEIGHT, kernel), actual, 0);
+		}
+	}
+
+	@Test
+	void oilPaintMatchesGpuHistogram() {
+		int[] rgb = sample(WIDTH, HEIGHT, 5);
+		for (int kernel : new int[] { 3, 4, 7, 23 }) {
+			int[] actual = rgbOf(run(rgb, WIDTH, HEIGHT, "oil_paint", kernel));
+			assertWithin("oil_paint " + kernel, referenceOilPaint(rgb, WIDTH, HEIGHT, kernel), actual, 0);
+		}
+	}
+
+	@Test
+	void upsColorMatchesGpuOnEveryHueBoundary() {
+		// El marco se reescala con otro filtro que Pillow (LANCZOS), así que se
+		// compara solo el color, sobre una rejilla que cubre los cortes de H, S y V
+		for (int r = 0; r < 256; r += 3) {
+			for (int g = 0; g < 256; g += 3) {
+				for (int b = 0; b < 256; b += 3) {
+					int p = r << 16 | g << 8 | b;
+					int expected = referenceUps(p);
+					if (CpuFilterEngine.upsPixel(p) != expected) {
+						assertThat(Integer.toHexString(CpuFilterEngine.upsPixel(p)))
+								.as("ups en %06x", p)
+								.isEqualTo(Integer.toHexString(expected));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void narrowImagesClampOnBothAxes() {
+		// Tres columnas y kernels del ancho de la imagen: cada ventana se sale
+		// por los dos lados a la vez
+		int width = 3;
+		int height = 9;
+		int[] rgb = sample(width, height, 6);
+
+		assertWithin("gaussian 3x9", referenceGaussian(rgb, width, height, 3),
+				rgbOf(run(rgb, width, height, "gaussian", 3)), FLOAT_TOLERANCE);
+		assertWithin("mean 3x9", referenceMean(rgb, width, height, 2),
+				rgbOf(run(rgb, width, height, "mean", 2)), 0);
+		assertWithin("emboss 3x9", referenceEmboss(referenceLuma(rgb), width, height, 3),
+				grayOf(run(rgb, width, height, "emboss", 3)), FLOAT_TOLERANCE);
+		assertWithin("oil_paint 3x9", referenceOilPaint(rgb, width, height, 3),
+				rgbOf(run(rgb, width, height, "oil_paint", 3)), 0);
+	}
+
+	// ===============================================================
+	// Referencia: cuda_service, en float32
+	// ===============================================================
+
+	// gaussian_kernel_1d + generate_gaussian_2d (np.outer en float32)
+	private static float[][] gaussianMask(int n) {
+		int r = (n - 1) / 2;
+		double sigma = r > 0 ? r / 3.0 : 0.8;
+		double twoSigma2 = 2.0 * sigma * sigma;
+		double[] values = new double[n];
+		double sum = 0.0;
+		for (int i = -r; i <= r; i++) {
+			values[i + r] = Math.exp(-(i * i) / twoSigma2);
+			sum += values[i + r];
+		}
+		float[] k1d = new float[n];
+		for (int i = 0; i < n; i++) {
+			k1d[i] = (float) (values[i] / sum);
+		}
+		float[][] k2d = new float[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				k2d[i][j] = k1d[i] * k1d[j];
+			}
+		}
+		return k2d;
+	}
+
+	// generate_emboss_kernel
+	private static float[][] embossMask(int k) {
+		double[][] values = new double[k][k];
+		int nonZero = 0;
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < k; j++) {
+				int s = i + j;
+				if (s < k - 1) {
+					values[i][j] = -1.0;
+					nonZero++;
+				} else if (s > k - 1) {
+					values[i][j] = 1.0;
+					nonZero++;
+				}
+			}
+		}
+		double scale = 1.0 / Math.sqrt(nonZero);
+		float[][] mask = new float[k][k];
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < k; j++) {
+				mask[i][j] = (float) (values[i][j] * scale);
+			}
+		}
+		return mask;
+	}
+
+	// convolve_gray: acc += val * kval recorriendo filas y luego columnas
+	private static float[] convolveGray(float[] in, int w, int h, float[][] mask) {
+		int ksize = mask.length;
+		int r = ksize / 2;
+		float[] out = new float[w * h];
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				float acc = 0.0f;
+				for (int ky = -r; ky <= r; ky++) {
+					int yy = clamp(y + ky, h);
+					for (int kx = -r; kx <= r; kx++) {
+						int xx = clamp(x + kx, w);
+						acc += in[yy * w + xx] * mask[ky + r][kx + r];
+					}
+				}
+				out[y * w + x] = acc;
+			}
+		}
+		return out;
+	}
+
+	// run_convolution_rgb_gpu + np.clip(...).astype(np.uint8)
+	private static int[] referenceGaussian(int[] rgb, int w, int h, int n) {
+		float[][] mask = gaussianMask(n);
+		int[][] channels = new int[3][];
+		for (int c = 0; c < 3; c++) {
+			float[] out = convolveGray(channel(rgb, c), w, h, mask);
+			channels[c] = new int[out.length];
+			for (int i = 0; i < out.length; i++) {
+				channels[c][i] = (int) Math.max(0.0f, Math.min(255.0f, out[i]));
+			}
+		}
+		return merge(channels);
+	}
+
+	// run_convolution_gray_gpu + 128 + np.clip(...).astype(np.uint8)
+	private static int[] referenceEmboss(int[] gray, int w, int h, int k) {
+		float[] in = new float[gray.length];
+		for (int i = 0; i < gray.length; i++) {
+			in[i] = gray[i];
+		}
+		float[] out = convolveGray(in, w, h, embossMask(k));
+		int[] result = new int[out.length];
+		for (int i = 0; i < out.length; i++) {
+			result[i] = (int) Math.max(0.0f, Math.min(255.0f, out[i] + 128.0f));
+		}
+		return result;
+	}
+
+	// sobel_mag + normalize_mag, con el máximo calculado en el host
+	private static int[] referenceSobel(int[] gray, int w, int h, int n) {
+		int c = n / 2;
+		float[] kx = new float[n * n];
+		float[] ky = new float[n * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				kx[i * n + j] = (j - c) * (Math.abs(i - c) + 1);
+				ky[i * n + j] = (i - c) * (Math.abs(j - c) + 1);
+			}
+		}
+		int pad = n / 2;
+		float[] mag = new float[w * h];
+		float max = 0.0f;
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				float gx = 0.0f;
+				float gy = 0.0f;
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						int pixel = gray[clamp(y + i - pad, h) * w + clamp(x + j - pad, w)];
+						gx += pixel * kx[i * n + j];
+						gy += pixel * ky[i * n + j];
+					}
+				}
+				mag[y * w + x] = (float) Math.sqrt(gx * gx + gy * gy);
+				max = Math.max(max, mag[y * w + x]);
+			}
+		}
+		float maxVal = max == 0.0f ? 1.0f : max;
+		int[] out = new int[w * h];
+		for (int i = 0; i < out.length; i++) {
+			float v = (mag[i] / maxVal) * 255.0f;
+			out[i] = (int) Math.max(0.0f, Math.min(255.0f, v));
+		}
+		return out;
+	}
+
+	// mean_filter, canal por canal
+	private static int[] referenceMean(int[] rgb, int w, int h, int n) {
+		int pad = n / 2;
+		int[][] channels = new int[3][w * h];
+		for (int ch = 0; ch < 3; ch++) {
+			int shift = 16 - 8 * ch;
+			for (int y = 0; y < h; y++) {
+				for (int x = 0; x < w; x++) {
+					float sum = 0.0f;
+					for (int i = 0; i < n; i++) {
+						for (int j = 0; j < n; j++) {
+							sum += (rgb[clamp(y + i - pad, h) * w + clamp(x + j - pad, w)] >> shift) & 0xFF;
+						}
+					}
+					float val = sum / (float) (n * n);
+					val = Math.max(0.0f, Math.min(255.0f, val));
+					channels[ch][y * w + x] = (int) (val + 0.5f);
+				}
+			}
+		}
+		return merge(channels);
+	}
+
+	// oil_paint con NUM_BINS = 32
+	private static int[] referenceOilPaint(int[] rgb, int w, int h, int kernelSize) {
+		int radius = kernelSize / 2;
+		int[] out = new int[w * h];
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				int[] hist = new int[32];
+				int[] sumR = new int[32];
+				int[] sumG = new int[32];
+				int[] sumB = new int[32];
+				for (int j = Math.max(0, y - radius); j <= Math.min(h - 1, y + radius); j++) {
+					for (int i = Math.max(0, x - radius); i <= Math.min(w - 1, x + radius); i++) {
+						int p = rgb[j * w + i];
+						int r = (p >> 16) & 0xFF;
+						int g = (p >> 8) & 0xFF;
+						int b = p & 0xFF;
+						int bin = Math.min(31, ((r + g + b) / 3 * 32) / 256);
+						hist[bin]++;
+						sumR[bin] += r;
+						sumG[bin] += g;
+						sumB[bin] += b;
+					}
+				}
+				int maxBin = 0;
+				int maxCount = 0;
+				for (int k = 0; k < 32; k++) {
+					if (hist[k] > maxCount) {
+						maxCount = hist[k];
+						maxBin = k;
+					}
+				}
+				out[y * w + x] = (sumR[maxBin] / maxCount) << 16 | (sumG[maxBin] / maxCount) << 8
+						| sumB[maxBin] / maxCount;
+			}
+		}
+		return out;
+	}
+
+	// ups_color_highlight
+	private static int referenceUps(int p) {
+		int r8 = (p >> 16) & 0xFF;
+		int g8 = (p >> 8) & 0xFF;
+		int b8 = p & 0xFF;
+		float r = r8 / 255.0f;
+		float g = g8 / 255.0f;
+		float b = b8 / 255.0f;
+		float maxv = Math.max(r, Math.max(g, b));
+		float minv = Math.min(r, Math.min(g, b));
+		float delta = maxv - minv;
+		float hDeg = 0.0f;
+		if (delta > 1e-6f) {
+			if (maxv == r) {
+				hDeg = 60.0f * (((g - b) / delta) % 6.0f);
+			} else if (maxv == g) {
+				hDeg = 60.0f * (((b - r) / delta) + 2.0f);
+			} else {
+				hDeg = 60.0f * (((r - g) / delta) + 4.0f);
+			}
+			if (hDeg < 0.0f) {
+				hDeg += 360.0f;
+			}
+		}
+		float s = maxv <= 0.0f ? 0.0f : delta / maxv;
+		int hue = (int) (hDeg / 2.0f + 0.5f) & 0xFF;
+		int s8 = (int) (s * 255.0f + 0.5f) & 0xFF;
+		int v8 = (int) (maxv * 255.0f + 0.5f) & 0xFF;
+		boolean inBlue = hue >= 90 && hue <= 140 && s8 >= 50 && v8 >= 40;
+		boolean inYellow = hue >= 15 && hue <= 40 && s8 >= 70 && v8 >= 70;
+		if (inBlue || inYellow) {
+			return p & 0xFFFFFF;
+		}
+		int gray = (int) (0.299f * r8 + 0.587f * g8 + 0.114f * b8) & 0xFF;
+		return gray << 16 | gray << 8 | gray;
+	}
+
+	// Image.convert("L") de Pillow
+	private static int[] referenceLuma(int[] rgb) {
+		int[] gray = new int[rgb.length];
+		for (int i = 0; i < rgb.length; i++) {
+			int p = rgb[i];
+			gray[i] = (((p >> 16) & 0xFF) * 19595 + ((p >> 8) & 0xFF) * 38470 + (p & 0xFF) * 7471 + 0x8000) >> 16;
+		}
+		return gray;
+	}
+
+	// ===============================================================
+	// Utilidades
+	// ===============================================================
+
+	private BufferedImage run(int[] rgb, int w, int h, String filter, int kernel) {
+		BufferedImage source = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		source.setRGB(0, 0, w, h, rgb, 0, w);
+		return engine.apply(source, List.of(new FilterStage(filter, kernel)), new double[1]);
+	}
+
+	// Ruido con degradados y bordes duros, para que cada filtro tenga algo que medir
+	private static int[] sample(int w, int h, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] rgb = new int[w * h];
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				int r = x * 255 / Math.max(1, w - 1);
+				int g = y * 255 / Math.max(1, h - 1);
+				int b = (x / 4 + y / 4) % 2 == 0 ? 230 : 20;
+				r = Math.min(255, Math.max(0, r + random.nextInt(-40, 41)));
+				g = Math.min(255, Math.max(0, g + random.nextInt(-40, 41)));
+				b = Math.min(255, Math.max(0, b + random.nextInt(-40, 41)));
+				rgb[y * w + x] = r << 16 | g << 8 | b;
+			}
+		}
+		return rgb;
+	}
+
+	private static int[] rgbOf(BufferedImage image) {
+		int[] rgb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+		for (int i = 0; i < rgb.length; i++) {
+			rgb[i] &= 0xFFFFFF;
+		}
+		return rgb;
+	}
+
+	private static int[] grayOf(BufferedImage image) {
+		assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+		return image.getRaster().getSamples(0, 0, image.getWidth(), image.getHeight(), 0, (int[]) null);
+	}
+
+	private static float[] channel(int[] rgb, int c) {
+		int shift = 16 - 8 * c;
+		float[] plane = new float[rgb.length];
+		for (int i = 0; i < rgb.length; i++) {
+			plane[i] = (rgb[i] >> shift) & 0xFF;
+		}
+		return plane;
+	}
+
+	private static int[] merge(int[][] channels) {
+		int[] rgb = new int[channels[0].length];
+		for (int i = 0; i < rgb.length; i++) {
+			rgb[i] = channels[0][i] << 16 | channels[1][i] << 8 | channels[2][i];
+		}
+		return rgb;
+	}
+
+	private static int clamp(int value, int size) {
+		return value < 0 ? 0 : (value >= size ? size - 1 : value);
+	}
+
+	// Compara canal por canal; en gris los tres "canales" son el mismo valor
+	private static void assertWithin(String label, int[] expected, int[] actual, int tolerance) {
+		assertThat(actual).hasSameSizeAs(expected);
+		int worst = 0;
+		int worstAt = -1;
+		int differing = 0;
+		for (int i = 0; i < expected.length; i++) {
+			if (expected[i] != actual[i]) {
+				differing++;
+			}
+			for (int shift = 0; shift <= 16; shift += 8) {
+				int diff = Math.abs(((expected[i] >> shift) & 0xFF) - ((actual[i] >> shift) & 0xFF));
+				if (diff > worst) {
+					worst = diff;
+					worstAt = i;
+				}
+			}
+		}
+		assertThat(worst)
+				.as("%s: diferencia máxima en el píxel %d", label, worstAt)
+				.isLessThanOrEqualTo(tolerance);
+		assertThat((double) differing / expected.length)
+				.as("%s: píxeles con redondeo distinto", label)
+				.isLessThanOrEqualTo(MAX_ROUNDED_SHARE);
+	}
+}
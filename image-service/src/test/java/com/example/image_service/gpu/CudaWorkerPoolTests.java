@@ -0,0 +1,95 @@
+package com.example.image_service.gpu;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+class CudaWorkerPoolTests {
+
+	private final List<DisposableServer> servers = new ArrayList<>();
+	private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+	private CudaWorkerPool pool;
+
+	@AfterEach
+	void tearDown() {
+		if (pool != null) {
+			pool.stop();
+		}
+		servers.forEach(DisposableServer::disposeNow);
+	}
+
+	@Test
+	void routesMostTrafficToFasterWorker() {
+		String fast = standIn("fast", Duration.ofMillis(5), 200);
+		String slow = standIn("slow", Duration.ofMillis(80), 200);
+		pool = pool(fast + "," + slow);
+
+		runRequests(200, 8);
+
+		assertThat(hits.get("fast").get()).isGreaterThan(hits.get("slow").get() * 3);
+	}
+
+	@Test
+	void ejectsWorkerAfterConsecutiveFailures() {
+		String healthy = standIn("healthy", Duration.ofMillis(50), 200);
+		String broken = standIn("broken", Duration.ZERO, 500);
+		pool = pool(healthy + "," + broken);
+
+		runRequests(60, 1);
+
+		// Con umbral 3 el worker roto recibe a lo sumo 3 solicitudes
+		assertThat(hits.get("broken").get()).isLessThanOrEqualTo(3);
+		CudaWorker brokenWorker = pool.workers().stream()
+				.filter(worker -> worker.url().equals(broken))
+				.findFirst()
+				.orElseThrow();
+		assertThat(brokenWorker.isEjected(System.currentTimeMillis())).isTrue();
+	}
+
+	private void runRequests(int count, int concurrency) {
+		Flux.range(0, count)
+				.flatMap(i -> pool.execute(client -> client.post()
+								.uri("/api/convolucion")
+								.retrieve()
+								.bodyToMono(String.class))
+						.onErrorResume(error -> Mono.empty()), concurrency)
+				.blockLast(Duration.ofSeconds(30));
+	}
+
+	// Worker simulado con latencia y código de respuesta fijos
+	private String standIn(String name, Duration latency, int status) {
+		hits.put(name, new AtomicInteger());
+		DisposableServer server = HttpServer.create()
+				.port(0)
+				.route(routes -> routes
+						.get("/health", (request, response) -> response.sendString(Mono.just("ok")))
+						.post("/api/convolucion", (request, response) -> {
+							hits.get(name).incrementAndGet();
+							return request.receive().then()
+									.then(Mono.delay(latency))
+									.then(response.status(status).sendString(Mono.just(name)).then());
+						}))
+				.bindNow();
+		servers.add(server);
+		return "http://localhost:" + server.port();
+	}
+
+	private static CudaWorkerPool pool(String urls) {
+		return new CudaWorkerPool(new SimpleMeterRegistry(), urls,
+				16, 20, 0.3, 60_000, 1_000, 3, 60_000, 120_000, 1);
+	}
+}
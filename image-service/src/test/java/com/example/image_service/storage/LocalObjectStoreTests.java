@@ -0,0 +1,129 @@
+package com.example.image_service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.image_service.upload.HmacSigner;
+
+import reactor.core.publisher.Flux;
+
+class LocalObjectStoreTests {
+
+	private static final HmacSigner SIGNER = new HmacSigner("secreto-de-prueba");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void storesContentUnderItsHash() throws Exception {
+		LocalObjectStore store = new LocalObjectStore(dir.toString(), "http://localhost/images/objects/", SIGNER);
+		byte[] content = "contenido de prueba".getBytes(StandardCharsets.UTF_8);
+
+		String url = store.put("originals/abc.png", chunks(content), content.length, MediaType.APPLICATION_OCTET_STREAM).block();
+
+		assertThat(url).isEqualTo("http://localhost/images/objects/originals/abc.png");
+		assertThat(store.exists("originals/abc.png").block()).isTrue();
+		LocalObjectStore.StoredObject object = store.find("originals/abc.png").block();
+		assertThat(object.sha256()).isEqualTo(sha256(content));
+		assertThat(object.size()).isEqualTo(content.length);
+		assertThat(object.contentType()).isEqualTo(MediaType.IMAGE_PNG);
+		assertThat(Files.readAllBytes(object.file())).isEqualTo(content);
+		assertThat(object.file()).startsWith(dir.resolve("blobs").resolve(object.sha256().substring(0, 2)));
+		try (Stream<Path> tmp = Files.list(dir.resolve("tmp"))) {
+			assertThat(tmp).isEmpty();
+		}
+	}
+
+	@Test
+	void sameContentUnderTwoKeysSharesOneBlob() throws Exception {
+		LocalObjectStore store = new LocalObjectStore(dir.toString(), "http://localhost/images/objects", SIGNER);
+		byte[] content = new byte[200_000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+
+		store.put("processed/a.png", chunks(content), content.length, MediaType.IMAGE_PNG).block();
+		store.put("variants/a/160.jpg", chunks(content), content.length, MediaType.IMAGE_JPEG).block();
+
+		assertThat(store.find("processed/a.png").block().file())
+				.isEqualTo(store.find("variants/a/160.jpg").block().file());
+		try (Stream<Path> blobs = Files.walk(dir.resolve("blobs"))) {
+			assertThat(blobs.filter(Files::isRegularFile)).hasSize(1);
+		}
+	}
+
+	@Test
+	void missingKeyIsEmptyAndTraversalIsRejected() throws Exception {
+		LocalObjectStore store = new LocalObjectStore(dir.toString(), "http://localhost/images/objects", SIGNER);
+
+		assertThat(store.find("originals/none.png").block()).isNull();
+		assertThat(store.exists("originals/none.png").block()).isFalse();
+		assertThatThrownBy(() -> store.find("../secret").block())
+				.isInstanceOf(ResponseStatusException.class);
+	}
+
+	@Test
+	void signedUploadAcceptsOnlyItsOwnTermsAndLimit() throws Exception {
+		LocalObjectStore store = new LocalObjectStore(dir.toString(), "http://localhost/images/objects", SIGNER);
+		byte[] content = new byte[20_000];
+
+		SignedUpload signed = store.signUpload("uploads/u1/a.png", MediaType.IMAGE_PNG, content.length, Duration.ofMinutes(5)).block();
+		UriComponents url = UriComponentsBuilder.fromUriString(signed.url()).build();
+		long expires = Long.parseLong(url.getQueryParams().getFirst("expires"));
+		String signature = url.getQueryParams().getFirst("signature");
+
+		assertThat(url.getPath()).isEqualTo("/images/objects/uploads/u1/a.png");
+		assertThat(signed.headers()).containsEntry("Content-Type", "image/png");
+		assertThatThrownBy(() -> store.putSigned("uploads/u1/b.png", chunks(content), MediaType.IMAGE_PNG,
+				expires, content.length, signature).block())
+				.isInstanceOf(ResponseStatusException.class);
+		assertThatThrownBy(() -> store.putSigned("uploads/u1/a.png", chunks(new byte[content.length + 1]), MediaType.IMAGE_PNG,
+				expires, content.length, signature).block())
+				.isInstanceOf(ResponseStatusException.class);
+		assertThat(store.exists("uploads/u1/a.png").block()).isFalse();
+
+		store.putSigned("uploads/u1/a.png", chunks(content), MediaType.IMAGE_PNG, expires, content.length, signature).block();
+
+		byte[] read = DataBufferUtils.join(store.get("uploads/u1/a.png"))
+				.map(buffer -> {
+					byte[] bytes = new byte[buffer.readableByteCount()];
+					buffer.read(bytes);
+					DataBufferUtils.release(buffer);
+					return bytes;
+				})
+				.block();
+		assertThat(read).isEqualTo(content);
+		assertThatThrownBy(() -> store.putSigned("uploads/u1/a.png", chunks(new byte[10]), MediaType.IMAGE_PNG,
+				expires, content.length, signature).block())
+				.isInstanceOf(ResponseStatusException.class);
+	}
+
+	private static Flux<DataBuffer> chunks(byte[] content) {
+		return Flux.range(0, (content.length + 8191) / 8192)
+				.map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+						Arrays.copyOfRange(content, i * 8192, Math.min(content.length, (i + 1) * 8192))));
+	}
+
+	private static String sha256(byte[] content) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+	}
+}
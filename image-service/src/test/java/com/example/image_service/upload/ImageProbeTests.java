@@ -0,0 +1,92 @@
+package com.example.image_service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class ImageProbeTests {
+
+	@Test
+	void readsPngHeader() throws Exception {
+		ImageInfo info = probe(encode("png", 640, 480), 7);
+
+		assertThat(info).isEqualTo(new ImageInfo("png", 640, 480, 8));
+	}
+
+	@Test
+	void readsJpegHeaderAfterLargeMetadata() throws Exception {
+		byte[] jpeg = encode("jpg", 320, 200);
+		// Segmento APP1 de 60 KB entre SOI y el resto, como un EXIF grande
+		byte[] app1 = new byte[60_000];
+		app1[0] = (byte) 0xFF;
+		app1[1] = (byte) 0xE1;
+		app1[2] = (byte) ((app1.length - 2) >> 8);
+		app1[3] = (byte) (app1.length - 2);
+		byte[] withExif = new byte[jpeg.length + app1.length];
+		System.arraycopy(jpeg, 0, withExif, 0, 2);
+		System.arraycopy(app1, 0, withExif, 2, app1.length);
+		System.arraycopy(jpeg, 2, withExif, 2 + app1.length, jpeg.length - 2);
+
+		assertThat(probe(withExif, 4096)).isEqualTo(new ImageInfo("jpeg", 320, 200, 8));
+		assertThat(probe(withExif, 1)).isEqualTo(new ImageInfo("jpeg", 320, 200, 8));
+	}
+
+	@Test
+	void readsLosslessWebpHeader() {
+		byte[] webp = new byte[30];
+		System.arraycopy("RIFF".getBytes(StandardCharsets.US_ASCII), 0, webp, 0, 4);
+		System.arraycopy("WEBPVP8L".getBytes(StandardCharsets.US_ASCII), 0, webp, 8, 8);
+		webp[20] = 0x2F;
+		long bits = (1023 - 1) | (long) (767 - 1) << 14;
+		for (int i = 0; i < 4; i++) {
+			webp[21 + i] = (byte) (bits >> (8 * i));
+		}
+
+		assertThat(probe(webp, 3)).isEqualTo(new ImageInfo("webp", 1023, 767, 8));
+	}
+
+	@Test
+	void rejectsDecompressionBombFromHeaderAlone() throws Exception {
+		byte[] png = Arrays.copyOf(encode("png", 10, 10), 33);
+		// IHDR de 100000 x 100000: se rechaza sin leer más allá de la cabecera
+		ByteBuffer.wrap(png, 16, 8).putInt(100_000).putInt(100_000);
+
+		assertThatThrownBy(() -> probe(png, 64))
+				.isInstanceOf(ResponseStatusException.class)
+				.hasMessageContaining("16384");
+	}
+
+	@Test
+	void rejectsUnknownAndTruncatedContent() throws Exception {
+		byte[] gif = "GIF89a......................".getBytes(StandardCharsets.US_ASCII);
+		byte[] truncated = Arrays.copyOf(encode("png", 10, 10), 20);
+
+		assertThatThrownBy(() -> probe(gif, 64)).isInstanceOf(ResponseStatusException.class);
+		assertThatThrownBy(() -> probe(truncated, 64)).isInstanceOf(ResponseStatusException.class);
+	}
+
+	private static ImageInfo probe(byte[] content, int chunkSize) {
+		ImageProbe probe = new ImageProbe(50_000_000, 16384);
+		for (int offset = 0; offset < content.length && !probe.isDone(); offset += chunkSize) {
+			probe.feed(ByteBuffer.wrap(content, offset, Math.min(chunkSize, content.length - offset)));
+		}
+		return probe.finish();
+	}
+
+	private static byte[] encode(String format, int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return out.toByteArray();
+	}
+}
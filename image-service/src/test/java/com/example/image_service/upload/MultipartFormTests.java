@@ -0,0 +1,100 @@
+package com.example.image_service.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Flux;
+
+class MultipartFormTests {
+
+	@TempDir
+	Path spoolDir;
+
+	@Test
+	void streamsFilePartIntoSpoolAndCollectsFields() throws Exception {
+		ImageSpooler spooler = new ImageSpooler(1024, spoolDir.toString(), 50_000_000, 16_384);
+		byte[] png = encode(200, 200);
+		Flux<PartEvent> parts = Flux.concat(
+				FormPartEvent.create("mask", "5"),
+				file("file", png),
+				FormPartEvent.create("filter", "gaussian"));
+
+		MultipartForm form = MultipartForm.read(parts, content -> spooler.spool(content, 1_000_000)).block();
+
+		assertThat(form.requireField("mask")).isEqualTo("5");
+		assertThat(form.requireField("filter")).isEqualTo("gaussian");
+		assertThat(form.field("engine")).isNull();
+		assertThat(form.requireFile().size()).isEqualTo(png.length);
+		assertThat(form.requireFile().isInMemory()).isFalse();
+		form.release().block();
+		assertThat(spoolFiles()).isZero();
+	}
+
+	@Test
+	void oversizedFileIsRejectedWhileStreaming() throws Exception {
+		ImageSpooler spooler = new ImageSpooler(1024, spoolDir.toString(), 50_000_000, 16_384);
+		Flux<PartEvent> parts = Flux.concat(
+				file("file", encode(400, 400)),
+				FormPartEvent.create("mask", "5"));
+
+		assertThatThrownBy(() -> MultipartForm.read(parts, content -> spooler.spool(content, 2_000)).block())
+				.isInstanceOf(ResponseStatusException.class);
+		assertThat(spoolFiles()).isZero();
+	}
+
+	@Test
+	void secondFilePartReleasesTheFirst() throws Exception {
+		ImageSpooler spooler = new ImageSpooler(1024, spoolDir.toString(), 50_000_000, 16_384);
+		byte[] png = encode(200, 200);
+		Flux<PartEvent> parts = Flux.concat(file("file", png), file("file", png));
+
+		assertThatThrownBy(() -> MultipartForm.read(parts, content -> spooler.spool(content, 1_000_000)).block())
+				.isInstanceOf(ResponseStatusException.class);
+		assertThat(spoolFiles()).isZero();
+	}
+
+	private long spoolFiles() throws Exception {
+		try (Stream<Path> files = Files.list(spoolDir)) {
+			return files.count();
+		}
+	}
+
+	// Partido en trozos de 512 bytes, como llegarían de la red
+	private static Flux<FilePartEvent> file(String name, byte[] content) {
+		Flux<DataBuffer> chunks = Flux.range(0, (content.length + 511) / 512)
+				.map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+						ByteBuffer.wrap(content, i * 512, Math.min(512, content.length - i * 512))));
+		return FilePartEvent.create(name, "image.png", MediaType.IMAGE_PNG, chunks);
+	}
+
+	private static byte[] encode(int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, (x * 31 + y * 17) * 0x010101 ^ (x * y));
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,18 @@
+package com.example.user_service.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.example.user_service.graph.FollowGraph;
+
+@Configuration
+@EnableScheduling
+public class FollowGraphConfig {
+
+    @Bean
+    public FollowGraph followGraph(@Value("${follow-graph.suggestions.top-n:20}") int topN) {
+        return new FollowGraph(topN);
+    }
+}
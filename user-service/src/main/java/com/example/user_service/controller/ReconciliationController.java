@@ -0,0 +1,62 @@
+package com.example.user_service.controller;
+
+import com.example.user_service.dto.ReconciliationReport;
+import com.example.user_service.graph.FollowGraphReconciler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Operación administrativa: fuera de /users, así que el api-gateway no la
+ * expone, y además exige X-Admin-Token igual a
+ * follow-graph.reconciler.admin-token. Sin token configurado responde 403
+ * siempre.
+ */
+@RestController
+@RequestMapping("/admin/follow-graph/reconcile")
+public class ReconciliationController {
+
+    private final FollowGraphReconciler reconciler;
+    private final byte[] adminToken;
+
+    public ReconciliationController(
+            FollowGraphReconciler reconciler,
+            @Value("${follow-graph.reconciler.admin-token:}") String adminToken
+    ) {
+        this.reconciler = reconciler;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<ReconciliationReport>> start(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token,
+            @RequestParam(value = "repair", defaultValue = "true") boolean repair
+    ) {
+        return authorize(token).then(Mono.fromSupplier(() -> {
+            HttpStatus status = reconciler.start(repair) ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+            return ResponseEntity.status(status).body(reconciler.status());
+        }));
+    }
+
+    @GetMapping
+    public Mono<ReconciliationReport> status(
+            @RequestHeader(value = "X-Admin-Token", required = false) String token
+    ) {
+        return authorize(token).then(Mono.fromSupplier(reconciler::status));
+    }
+
+    private Mono<Void> authorize(String token) {
+        boolean allowed = adminToken.length > 0 && StringUtils.hasText(token)
+                && MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8));
+        return allowed
+                ? Mono.empty()
+                : Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "Se requiere X-Admin-Token válido"));
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.user_service.controller;
 
 import com.example.user_service.dto.AddAvatarRequest;
+import com.example.user_service.dto.AvatarPageResponse;
+import com.example.user_service.dto.BulkFollowRequest;
+import com.example.user_service.dto.BulkFollowResponse;
 import com.example.user_service.dto.CreateUserRequest;
 import com.example.user_service.dto.FollowActionResponse;
+import com.example.user_service.dto.FollowCountsResponse;
+import com.example.user_service.dto.FollowPageResponse;
 import com.example.user_service.dto.FollowersResponse;
 import com.example.user_service.dto.FollowingResponse;
+import com.example.user_service.dto.SuggestionsResponse;
 import com.example.user_service.dto.UpdateUserRequest;
 import com.example.user_service.model.User;
 import com.example.user_service.service.UserService;
@@ -58,6 +64,15 @@ public class UserController {
         return service.addAvatar(id, request);
     }
 
+    @GetMapping("/{id}/avatars")
+    public Mono<AvatarPageResponse> listAvatars(
+            @PathVariable String id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        return service.listAvatars(id, cursor, limit);
+    }
+
     @PostMapping("/{id}/followers")
     public Mono<FollowActionResponse> follow(
             @PathVariable("id") String targetId,
@@ -74,6 +89,15 @@ public class UserController {
         return service.unfollowUser(currentUserId, targetId);
     }
 
+    @PostMapping("/{id}/following/bulk")
+    public Mono<BulkFollowResponse> bulkFollow(
+            @PathVariable("id") String userId,
+            @RequestHeader("X-User-Uid") String currentUserId,
+            @RequestBody BulkFollowRequest request
+    ) {
+        return service.bulkFollow(currentUserId, userId, request);
+    }
+
     @GetMapping("/{id}/followers")
     public Mono<FollowersResponse> listFollowers(@PathVariable("id") String userId) {
         return service.listFollowers(userId);
@@ -83,4 +107,37 @@ public class UserController {
     public Mono<FollowingResponse> listFollowing(@PathVariable("id") String userId) {
         return service.listFollowing(userId);
     }
+
+    @GetMapping("/{id}/followers/page")
+    public Mono<FollowPageResponse> listFollowersPage(
+            @PathVariable("id") String userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "hydrate", defaultValue = "false") boolean hydrate
+    ) {
+        return service.listFollowersPage(userId, cursor, limit, hydrate);
+    }
+
+    @GetMapping("/{id}/following/page")
+    public Mono<FollowPageResponse> listFollowingPage(
+            @PathVariable("id") String userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "hydrate", defaultValue = "false") boolean hydrate
+    ) {
+        return service.listFollowingPage(userId, cursor, limit, hydrate);
+    }
+
+    @GetMapping("/{id}/follow-counts")
+    public Mono<FollowCountsResponse> followCounts(@PathVariable("id") String userId) {
+        return service.getFollowCounts(userId);
+    }
+
+    @GetMapping("/{id}/suggestions")
+    public Mono<SuggestionsResponse> suggestions(
+            @PathVariable("id") String userId,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        return service.getSuggestions(userId, limit);
+    }
 }
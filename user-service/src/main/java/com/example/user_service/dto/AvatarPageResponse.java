@@ -0,0 +1,17 @@
+package com.example.user_service.dto;
+
+import java.util.List;
+
+import com.example.user_service.model.AvatarEntry;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class AvatarPageResponse {
+    String userId;
+    String avatarUrl;
+    List<AvatarEntry> items;
+    String nextCursor;
+}
@@ -0,0 +1,12 @@
+package com.example.user_service.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class BulkFollowRequest {
+    // "follow" o "unfollow"
+    private String action;
+    private List<String> targetIds;
+}
@@ -0,0 +1,25 @@
+package com.example.user_service.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class BulkFollowResponse {
+    String userId;
+    String action;
+    int followingCount;
+    int applied;
+    List<TargetResult> results;
+
+    @Value
+    @Builder
+    public static class TargetResult {
+        String targetUserId;
+        // FOLLOWED, UNFOLLOWED, ALREADY_FOLLOWING, NOT_FOLLOWING, LIMIT_REACHED, NOT_FOUND, SELF
+        String status;
+        Integer followersCount;
+    }
+}
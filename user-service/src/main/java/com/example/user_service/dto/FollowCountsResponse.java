@@ -0,0 +1,12 @@
+package com.example.user_service.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class FollowCountsResponse {
+    String userId;
+    int followersCount;
+    int followingCount;
+}
@@ -0,0 +1,26 @@
+package com.example.user_service.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class FollowPageResponse {
+    String userId;
+    int count;
+    List<String> items;
+    List<Profile> profiles;
+    String nextCursor;
+
+    // Solo lo necesario para pintar la lista, sin los arreglos de seguidores
+    @Value
+    @Builder
+    public static class Profile {
+        String id;
+        String username;
+        String name;
+        String avatarUrl;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.user_service.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class ReconciliationReport {
+    String status;
+    boolean repair;
+    long startedAt;
+    long finishedAt;
+    long durationMs;
+    int partitions;
+    int partitionsDone;
+    long usersScanned;
+    long edgesScanned;
+    long anomalies;
+    long danglingEdges;
+    long repaired;
+    int batchesCommitted;
+    double usersPerSecond;
+    String error;
+}
@@ -0,0 +1,21 @@
+package com.example.user_service.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class SuggestionsResponse {
+    String userId;
+    int count;
+    List<SuggestedUser> suggestions;
+
+    @Value
+    @Builder
+    public static class SuggestedUser {
+        String userId;
+        int mutualCount;
+    }
+}
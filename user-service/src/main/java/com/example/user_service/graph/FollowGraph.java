@@ -0,0 +1,301 @@
+package com.example.user_service.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Grafo de seguidores en memoria.
+ *
+ * Cada uid se traduce a un id entero denso y las aristas se guardan en
+ * arreglos primitivos de adyacencia (salientes = a quién sigue, entrantes =
+ * quién lo sigue). Las sugerencias "amigos de amigos" se calculan sobre estos
+ * arreglos y se guardan como listas top-N que se invalidan de forma
+ * incremental cuando cambia una arista.
+ */
+public class FollowGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<Integer, int[]> suggestionCache = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> EMPTY);
+    private final int topN;
+
+    private String[] uids = new String[64];
+    private int[][] out = new int[64][];
+    private int[] outSize = new int[64];
+    private int[][] in = new int[64][];
+    private int[] inSize = new int[64];
+    private int nodeCount;
+
+    public FollowGraph(int topN) {
+        this.topN = topN;
+    }
+
+    public int topN() {
+        return topN;
+    }
+
+    public int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String uid) {
+        lock.readLock().lock();
+        try {
+            return ids.containsKey(uid);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addUser(String uid) {
+        lock.writeLock().lock();
+        try {
+            intern(uid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean addEdge(String followerUid, String targetUid) {
+        lock.writeLock().lock();
+        try {
+            int from = intern(followerUid);
+            int to = intern(targetUid);
+            if (indexOf(out[from], outSize[from], to) >= 0) {
+                return false;
+            }
+            out[from] = append(out[from], outSize[from]++, to);
+            in[to] = append(in[to], inSize[to]++, from);
+            invalidateAround(from);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeEdge(String followerUid, String targetUid) {
+        lock.writeLock().lock();
+        try {
+            Integer from = ids.get(followerUid);
+            Integer to = ids.get(targetUid);
+            if (from == null || to == null) {
+                return false;
+            }
+            if (!removeValue(out[from], outSize, from, to)) {
+                return false;
+            }
+            removeValue(in[to], inSize, to, from);
+            invalidateAround(from);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reemplaza la lista de seguidos de un usuario (carga inicial o reparación).
+     */
+    public void replaceFollowing(String followerUid, List<String> following) {
+        lock.writeLock().lock();
+        try {
+            int from = intern(followerUid);
+            for (int i = 0; i < outSize[from]; i++) {
+                int to = out[from][i];
+                removeValue(in[to], inSize, to, from);
+            }
+            outSize[from] = 0;
+            if (following != null) {
+                for (String targetUid : following) {
+                    int to = intern(targetUid);
+                    if (to == from || indexOf(out[from], outSize[from], to) >= 0) {
+                        continue;
+                    }
+                    out[from] = append(out[from], outSize[from]++, to);
+                    in[to] = append(in[to], inSize[to]++, from);
+                }
+            }
+            invalidateAround(from);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sugerencias para un usuario: cuentas seguidas por las cuentas que sigue,
+     * ordenadas por número de seguidos en común. Devuelve null si el uid no
+     * existe en el grafo.
+     */
+    public List<Suggestion> suggestionsFor(String uid, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer node = ids.get(uid);
+            if (node == null) {
+                return null;
+            }
+            int[] packed = suggestionCache.get(node);
+            if (packed == null) {
+                packed = compute(node);
+                suggestionCache.put(node, packed);
+            }
+            int size = Math.min(limit, packed.length / 2);
+            List<Suggestion> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new Suggestion(uids[packed[2 * i]], packed[2 * i + 1]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recalcula las listas top-N invalidadas. Devuelve cuántas se refrescaron.
+     */
+    public int refreshStale() {
+        lock.readLock().lock();
+        try {
+            int refreshed = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                if (outSize[node] > 0 && !suggestionCache.containsKey(node)) {
+                    suggestionCache.put(node, compute(node));
+                    refreshed++;
+                }
+            }
+            return refreshed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Debe llamarse con al menos el read lock tomado
+    private int[] compute(int node) {
+        int[] scores = scratch.get();
+        if (scores.length < nodeCount) {
+            scores = new int[Math.max(nodeCount, scores.length * 2)];
+            scratch.set(scores);
+        }
+
+        // Excluir al propio usuario y a quienes ya sigue
+        scores[node] = Integer.MIN_VALUE;
+        int[] followed = out[node];
+        int followedCount = outSize[node];
+        for (int i = 0; i < followedCount; i++) {
+            scores[followed[i]] = Integer.MIN_VALUE;
+        }
+
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (int i = 0; i < followedCount; i++) {
+            int via = followed[i];
+            int[] second = out[via];
+            for (int j = 0, n = outSize[via]; j < n; j++) {
+                int candidate = second[j];
+                if (scores[candidate] < 0) {
+                    continue;
+                }
+                if (scores[candidate]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = candidate;
+                }
+            }
+        }
+
+        // Empaquetar (puntaje, id) en un long para ordenar sin objetos
+        long[] ranked = new long[touchedCount];
+        for (int i = 0; i < touchedCount; i++) {
+            int candidate = touched[i];
+            ranked[i] = ((long) scores[candidate] << 32) | (Integer.MAX_VALUE - candidate);
+            scores[candidate] = 0;
+        }
+        scores[node] = 0;
+        for (int i = 0; i < followedCount; i++) {
+            scores[followed[i]] = 0;
+        }
+
+        Arrays.sort(ranked);
+        int size = Math.min(topN, ranked.length);
+        int[] packed = new int[size * 2];
+        for (int i = 0; i < size; i++) {
+            long entry = ranked[ranked.length - 1 - i];
+            packed[2 * i] = Integer.MAX_VALUE - (int) (entry & 0xFFFFFFFFL);
+            packed[2 * i + 1] = (int) (entry >>> 32);
+        }
+        return packed;
+    }
+
+    // Un cambio en las aristas salientes de "node" afecta sus propias sugerencias
+    // y las de quienes lo siguen (para ellos es el intermediario)
+    private void invalidateAround(int node) {
+        suggestionCache.remove(node);
+        int[] followers = in[node];
+        for (int i = 0, n = inSize[node]; i < n; i++) {
+            suggestionCache.remove(followers[i]);
+        }
+    }
+
+    private int intern(String uid) {
+        Integer existing = ids.get(uid);
+        if (existing != null) {
+            return existing;
+        }
+        if (nodeCount == uids.length) {
+            int capacity = nodeCount * 2;
+            uids = Arrays.copyOf(uids, capacity);
+            out = Arrays.copyOf(out, capacity);
+            outSize = Arrays.copyOf(outSize, capacity);
+            in = Arrays.copyOf(in, capacity);
+            inSize = Arrays.copyOf(inSize, capacity);
+        }
+        int node = nodeCount++;
+        uids[node] = uid;
+        out[node] = EMPTY;
+        in[node] = EMPTY;
+        ids.put(uid, node);
+        return node;
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.max(4, size * 2));
+        }
+        array[size] = value;
+        return array;
+    }
+
+    private static int indexOf(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean removeValue(int[] array, int[] sizes, int node, int value) {
+        int index = indexOf(array, sizes[node], value);
+        if (index < 0) {
+            return false;
+        }
+        int last = --sizes[node];
+        array[index] = array[last];
+        return true;
+    }
+
+    public record Suggestion(String userId, int mutualCount) {
+    }
+}
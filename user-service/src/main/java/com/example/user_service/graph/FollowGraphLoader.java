@@ -0,0 +1,42 @@
+package com.example.user_service.graph;
+
+import com.example.user_service.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Construye el grafo de seguidores desde Firestore al arrancar y refresca
+ * periódicamente las listas de sugerencias invalidadas.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FollowGraphLoader {
+
+    private final UserRepository repo;
+    private final FollowGraph graph;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        repo.findAll()
+                .subscribe(users -> {
+                    users.forEach(user -> graph.replaceFollowing(user.getId(), user.getFollowing()));
+                    int refreshed = graph.refreshStale();
+                    log.info("Grafo de seguidores cargado: {} usuarios, {} listas de sugerencias en {} ms",
+                            graph.nodeCount(), refreshed, System.currentTimeMillis() - start);
+                }, error -> log.error("No se pudo cargar el grafo de seguidores", error));
+    }
+
+    @Scheduled(fixedDelayString = "${follow-graph.suggestions.refresh-interval-ms:30000}")
+    public void refresh() {
+        int refreshed = graph.refreshStale();
+        if (refreshed > 0) {
+            log.debug("Sugerencias recalculadas para {} usuarios", refreshed);
+        }
+    }
+}
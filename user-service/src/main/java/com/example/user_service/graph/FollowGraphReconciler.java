@@ -0,0 +1,287 @@
+package com.example.user_service.graph;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.user_service.dto.ReconciliationReport;
+import com.example.user_service.model.User;
+import com.example.user_service.repository.UserRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Detecta y repara aristas asimétricas entre los arreglos followers/following.
+ *
+ * Recorre users en paralelo usando particiones de Firestore, traduce cada uid
+ * a un entero y guarda las aristas declaradas por cada lado en conjuntos de
+ * longs. Las diferencias entre ambos conjuntos son las anomalías; cada una se
+ * corrige en una transacción que vuelve a leer ambos perfiles, por lotes con
+ * una pausa entre ellos para no saturar Firestore.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FollowGraphReconciler {
+
+    private final UserRepository repo;
+    private final FollowGraph followGraph;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ReconciliationReport lastReport = ReconciliationReport.builder().status("IDLE").build();
+
+    @Value("${follow-graph.reconciler.partitions:16}")
+    private int partitions;
+
+    @Value("${follow-graph.reconciler.concurrency:4}")
+    private int concurrency;
+
+    @Value("${follow-graph.reconciler.repairs-per-batch:150}")
+    private int repairsPerBatch;
+
+    @Value("${follow-graph.reconciler.batch-delay-ms:500}")
+    private long batchDelayMs;
+
+    @Value("${follow-graph.max-followers:10}")
+    private int maxFollowers;
+
+    public ReconciliationReport status() {
+        return lastReport;
+    }
+
+    /**
+     * Lanza una ejecución en segundo plano. Devuelve false si ya hay una en curso.
+     */
+    public boolean start(boolean repair) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        run(repair)
+                .doFinally(signal -> running.set(false))
+                .subscribe(
+                        report -> log.info("Reconciliación terminada: {}", report),
+                        error -> log.error("Reconciliación fallida", error));
+        return true;
+    }
+
+    @Scheduled(cron = "${follow-graph.reconciler.cron:-}")
+    public void scheduledRun() {
+        if (!start(true)) {
+            log.info("Reconciliación programada omitida: ya hay una ejecución en curso");
+        }
+    }
+
+    Mono<ReconciliationReport> run(boolean repair) {
+        long startedAt = System.currentTimeMillis();
+        Scan scan = new Scan();
+        lastReport = ReconciliationReport.builder()
+                .status("SCANNING")
+                .repair(repair)
+                .startedAt(startedAt)
+                .build();
+
+        return repo.partitionUsers(partitions)
+                .flatMap(queries -> {
+                    lastReport = lastReport.toBuilder().partitions(queries.size()).build();
+                    return Flux.fromIterable(queries)
+                            .flatMap(repo::findFollowFields, concurrency)
+                            .doOnNext(users -> {
+                                scan.accept(users);
+                                checkpoint(scan, startedAt);
+                            })
+                            .then(Mono.fromSupplier(() -> scan.plan(maxFollowers)));
+                })
+                .flatMap(plan -> {
+                    lastReport = lastReport.toBuilder()
+                            .status(repair ? "REPAIRING" : "REPORTED")
+                            .anomalies(plan.anomalies())
+                            .danglingEdges(plan.dangling())
+                            .build();
+                    if (!repair || plan.repairs().isEmpty()) {
+                        return Mono.just(0L);
+                    }
+                    return applyRepairs(plan.repairs());
+                })
+                .map(repaired -> {
+                    long finishedAt = System.currentTimeMillis();
+                    long duration = Math.max(1, finishedAt - startedAt);
+                    lastReport = lastReport.toBuilder()
+                            .status("DONE")
+                            .finishedAt(finishedAt)
+                            .durationMs(duration)
+                            .repaired(repaired)
+                            .usersPerSecond(scan.users.get() * 1000.0 / duration)
+                            .build();
+                    return lastReport;
+                })
+                .doOnError(error -> lastReport = lastReport.toBuilder()
+                        .status("FAILED")
+                        .finishedAt(System.currentTimeMillis())
+                        .error(error.getMessage())
+                        .build());
+    }
+
+    // Cada corrección es una transacción; se aplican por grupos de
+    // repairs-per-batch, con una pausa entre grupos
+    private Mono<Long> applyRepairs(List<FollowRepair> repairs) {
+        List<List<FollowRepair>> batches = new ArrayList<>();
+        for (int i = 0; i < repairs.size(); i += repairsPerBatch) {
+            batches.add(repairs.subList(i, Math.min(repairs.size(), i + repairsPerBatch)));
+        }
+
+        AtomicLong repaired = new AtomicLong();
+        return Flux.fromIterable(batches)
+                .concatMap(batch -> Flux.fromIterable(batch)
+                        .flatMap(repair -> repo.applyFollowRepair(repair, maxFollowers), concurrency)
+                        .doOnNext(applied -> {
+                            applyToGraph(applied);
+                            repaired.incrementAndGet();
+                        })
+                        .then(Mono.fromRunnable(() -> lastReport = lastReport.toBuilder()
+                                .batchesCommitted(lastReport.getBatchesCommitted() + 1)
+                                .repaired(repaired.get())
+                                .build()))
+                        .then(Mono.delay(Duration.ofMillis(batchDelayMs))))
+                .then(Mono.fromSupplier(repaired::get));
+    }
+
+    private void applyToGraph(FollowRepair repair) {
+        if (repair.keep()) {
+            followGraph.addEdge(repair.followerId(), repair.targetId());
+        } else {
+            followGraph.removeEdge(repair.followerId(), repair.targetId());
+        }
+    }
+
+    private void checkpoint(Scan scan, long startedAt) {
+        int done = scan.partitionsDone.incrementAndGet();
+        long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+        lastReport = lastReport.toBuilder()
+                .partitionsDone(done)
+                .usersScanned(scan.users.get())
+                .edgesScanned(scan.edges.get())
+                .usersPerSecond(scan.users.get() * 1000.0 / elapsed)
+                .build();
+        log.info("Reconciliación: partición {}/{}, {} usuarios, {} aristas, {} usuarios/s",
+                done, lastReport.getPartitions(), scan.users.get(), scan.edges.get(),
+                String.format("%.1f", lastReport.getUsersPerSecond()));
+    }
+
+    private record Plan(List<FollowRepair> repairs, long anomalies, long dangling) {
+    }
+
+    /**
+     * Estado acumulado del recorrido. Cada partición se traduce a arreglos de
+     * aristas locales y luego se fusiona bajo el lock del objeto.
+     */
+    private static class Scan {
+
+        private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger(1);
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong edges = new AtomicLong();
+        private final AtomicInteger partitionsDone = new AtomicInteger();
+
+        // following declarado por el seguidor / followers declarado por el seguido
+        private final LongHashSet claimedByFollower = new LongHashSet(1024);
+        private final LongHashSet claimedByTarget = new LongHashSet(1024);
+        private final LongHashSet existing = new LongHashSet(1024);
+
+        void accept(List<User> page) {
+            LongHashSet followerSide = new LongHashSet(page.size() * 4);
+            LongHashSet targetSide = new LongHashSet(page.size() * 4);
+            LongHashSet seen = new LongHashSet(page.size());
+
+            for (User user : page) {
+                int self = intern(user.getId());
+                seen.add(self);
+                if (user.getFollowing() != null) {
+                    for (String targetId : user.getFollowing()) {
+                        int target = intern(targetId);
+                        if (target != self) {
+                            followerSide.add(LongHashSet.edge(self, target));
+                        }
+                    }
+                }
+                if (user.getFollowers() != null) {
+                    for (String followerId : user.getFollowers()) {
+                        int follower = intern(followerId);
+                        if (follower != self) {
+                            targetSide.add(LongHashSet.edge(follower, self));
+                        }
+                    }
+                }
+            }
+
+            synchronized (this) {
+                followerSide.forEach(claimedByFollower::add);
+                targetSide.forEach(claimedByTarget::add);
+                seen.forEach(existing::add);
+            }
+            users.addAndGet(page.size());
+            edges.addAndGet(followerSide.size() + targetSide.size());
+        }
+
+        synchronized Plan plan(int maxFollowers) {
+            String[] byId = new String[nextId.get()];
+            ids.forEach((uid, id) -> byId[id] = uid);
+
+            int[] followerCounts = new int[byId.length];
+            claimedByTarget.forEach(edge -> followerCounts[LongHashSet.to(edge)]++);
+
+            List<FollowRepair> repairs = new ArrayList<>();
+            long[] dangling = new long[1];
+
+            // Declarada en following pero ausente en followers del seguido
+            claimedByFollower.forEach(edge -> {
+                if (claimedByTarget.contains(edge)) {
+                    return;
+                }
+                int follower = LongHashSet.from(edge);
+                int target = LongHashSet.to(edge);
+                boolean targetExists = existing.contains(target);
+                if (!targetExists) {
+                    dangling[0]++;
+                }
+                boolean keep = targetExists && followerCounts[target] < maxFollowers;
+                if (keep) {
+                    followerCounts[target]++;
+                    repairs.add(new FollowRepair(byId[follower], byId[target], true, false));
+                } else {
+                    repairs.add(new FollowRepair(byId[follower], byId[target], false, true));
+                }
+            });
+
+            // Declarada en followers pero ausente en following del seguidor
+            claimedByTarget.forEach(edge -> {
+                if (claimedByFollower.contains(edge)) {
+                    return;
+                }
+                int follower = LongHashSet.from(edge);
+                int target = LongHashSet.to(edge);
+                boolean followerExists = existing.contains(follower);
+                if (!followerExists) {
+                    dangling[0]++;
+                }
+                repairs.add(new FollowRepair(byId[follower], byId[target], followerExists, followerExists));
+            });
+
+            return new Plan(repairs, repairs.size(), dangling[0]);
+        }
+
+        private int intern(String uid) {
+            return ids.computeIfAbsent(uid, key -> nextId.getAndIncrement());
+        }
+    }
+}
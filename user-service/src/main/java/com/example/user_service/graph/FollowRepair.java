@@ -0,0 +1,11 @@
+package com.example.user_service.graph;
+
+/**
+ * Corrección de una arista asimétrica.
+ *
+ * keep = true completa el lado que falta; keep = false elimina la arista del
+ * lado que la declara. fixFollowerSide indica si el documento a modificar es
+ * el del seguidor (campo following) o el del seguido (campo followers).
+ */
+public record FollowRepair(String followerId, String targetId, boolean keep, boolean fixFollowerSide) {
+}
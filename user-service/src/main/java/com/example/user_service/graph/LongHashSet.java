@@ -0,0 +1,95 @@
+package com.example.user_service.graph;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Conjunto de longs con direccionamiento abierto, sin objetos por elemento.
+ * El valor 0 se usa como marca de casilla vacía, por lo que no puede
+ * almacenarse (una arista 0 -> 0 nunca es válida).
+ */
+public class LongHashSet {
+
+    private long[] table;
+    private int size;
+    private int mask;
+
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+        table = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public static long edge(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    public static int from(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    public static int to(long edge) {
+        return (int) edge;
+    }
+
+    public boolean add(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("0 no es un valor válido");
+        }
+        if ((size + 1) * 2 > table.length) {
+            grow();
+        }
+        int index = slot(value);
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        int index = slot(value);
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        for (long value : table) {
+            if (value != 0) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    private int slot(long value) {
+        // fmix64 de MurmurHash3
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        mask = table.length - 1;
+        size = 0;
+        Arrays.stream(old).filter(v -> v != 0).forEach(this::add);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.user_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvatarEntry {
+    private String id;
+    private String url;
+    private long createdAt;
+}
@@ -12,8 +12,10 @@ public class User {
     private String username;
     private String bio;
     private String avatarUrl;
-    private List<String> avatarHistory = new ArrayList<>();
     private List<String> followers = new ArrayList<>();
     private List<String> following = new ArrayList<>();
+    private Integer followersCount;
+    private Integer followingCount;
+    private boolean followEdgesIndexed;
     private long createdAt;
 }
@@ -1,31 +1,66 @@
 package com.example.user_service.repository;
 
+import com.example.user_service.dto.FollowPageResponse;
+import com.example.user_service.graph.FollowRepair;
+import com.example.user_service.model.AvatarEntry;
 import com.example.user_service.model.User;
 import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryPartition;
 import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.firestore.WriteResult;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
 public class UserRepository {
 
+    public static final String FOLLOWERS = "followers";
+    public static final String FOLLOWING = "following";
+    public static final String AVATARS = "avatars";
+
+    // Máximo de escrituras de un batch o una transacción de Firestore
+    private static final int MAX_BATCH_WRITES = 500;
+    // Se reserva una escritura para borrar el arreglo antiguo
+    private static final int LEGACY_AVATAR_MIGRATION_LIMIT = MAX_BATCH_WRITES - 1;
+    private static final String LEGACY_AVATAR_HISTORY = "avatarHistory";
+
     private final Firestore firestore;
 
+    /**
+     * Escribe los campos del modelo con merge: los que User ya no declara
+     * (como el avatarHistory antiguo que aún no migró LegacyAvatarMigration)
+     * se conservan en lugar de borrarse.
+     */
     public Mono<User> save(User user) {
 
         ApiFuture<WriteResult> apiFuture =
                 firestore.collection("users")
                         .document(user.getId())
-                        .set(user);
+                        .set(user, SetOptions.merge());
 
         CompletableFuture<WriteResult> completable = new CompletableFuture<>();
 
@@ -112,4 +147,391 @@ public class UserRepository {
         return Mono.fromCompletionStage(completable)
             .map(query -> query.toObjects(User.class));
     }
+
+    /**
+     * Guarda ambos perfiles y la arista seguidor -> seguido en un solo batch,
+     * de modo que arreglos, contadores y subcolecciones cambian juntos. Los
+     * perfiles se escriben con merge, como en save.
+     */
+    public Mono<Void> saveFollowChange(User current, User target, boolean follow) {
+        WriteBatch batch = firestore.batch();
+        batch.set(userRef(current.getId()), current, SetOptions.merge());
+        batch.set(userRef(target.getId()), target, SetOptions.merge());
+
+        DocumentReference followerEdge = edgeRef(target.getId(), FOLLOWERS, current.getId());
+        DocumentReference followingEdge = edgeRef(current.getId(), FOLLOWING, target.getId());
+        if (follow) {
+            long now = System.currentTimeMillis();
+            batch.set(followerEdge, edgePayload(current.getId(), now));
+            batch.set(followingEdge, edgePayload(target.getId(), now));
+        } else {
+            batch.delete(followerEdge);
+            batch.delete(followingEdge);
+        }
+
+        return monoFromApiFuture(batch.commit()).then();
+    }
+
+    /**
+     * Aplica varios follow/unfollow de un mismo usuario en una transacción:
+     * lee el perfil actual y los seguidos, plan decide los cambios sobre esas
+     * copias y se escriben el following del usuario, el followers de cada
+     * seguido que cambió (con sus contadores) y las aristas. Si otra escritura
+     * toca alguno de esos perfiles, Firestore reintenta y plan vuelve a correr
+     * con los datos nuevos, así que no debe tener efectos fuera de los perfiles
+     * que recibe.
+     */
+    public <T> Mono<T> saveBulkFollowChange(String currentId, List<String> targetIds, boolean follow,
+                                            Function<Map<String, User>, BulkFollowChange<T>> plan) {
+        DocumentReference[] refs = Stream.concat(Stream.of(currentId), targetIds.stream())
+                .distinct()
+                .map(this::userRef)
+                .toArray(DocumentReference[]::new);
+
+        return monoFromApiFuture(firestore.runTransaction(transaction -> {
+            Map<String, User> byId = new HashMap<>();
+            for (DocumentSnapshot doc : transaction.getAll(refs).get()) {
+                User user = doc.exists() ? doc.toObject(User.class) : null;
+                if (user != null) {
+                    user.setId(doc.getId());
+                    byId.put(doc.getId(), user);
+                }
+            }
+
+            BulkFollowChange<T> change = plan.apply(byId);
+            if (change.changedTargets().isEmpty()) {
+                return change.result();
+            }
+
+            User current = change.current();
+            transaction.update(userRef(current.getId()),
+                    FOLLOWING, current.getFollowing(),
+                    "followingCount", current.getFollowing().size());
+
+            long now = System.currentTimeMillis();
+            for (User target : change.changedTargets()) {
+                transaction.update(userRef(target.getId()),
+                        FOLLOWERS, target.getFollowers(),
+                        "followersCount", target.getFollowers().size());
+
+                DocumentReference followerEdge = edgeRef(target.getId(), FOLLOWERS, current.getId());
+                DocumentReference followingEdge = edgeRef(current.getId(), FOLLOWING, target.getId());
+                if (follow) {
+                    transaction.set(followerEdge, edgePayload(current.getId(), now));
+                    transaction.set(followingEdge, edgePayload(target.getId(), now));
+                } else {
+                    transaction.delete(followerEdge);
+                    transaction.delete(followingEdge);
+                }
+            }
+            return change.result();
+        }));
+    }
+
+    /**
+     * Resultado de un plan de saveBulkFollowChange: los perfiles modificados
+     * en memoria y lo que se devuelve al terminar.
+     */
+    public record BulkFollowChange<T>(User current, List<User> changedTargets, T result) {
+    }
+
+    /**
+     * Lee solo los contadores del perfil, sin traer los arreglos.
+     */
+    public Mono<User> findFollowCounts(String id) {
+        ApiFuture<DocumentSnapshot> apiFuture = userRef(id)
+                .get(FieldMask.of("id", "followersCount", "followingCount", "followEdgesIndexed"));
+
+        return monoFromApiFuture(apiFuture)
+                .flatMap(doc -> {
+                    if (!doc.exists()) {
+                        return Mono.empty();
+                    }
+                    User user = doc.toObject(User.class);
+                    if (user != null) {
+                        user.setId(doc.getId());
+                    }
+                    return Mono.justOrEmpty(user);
+                });
+    }
+
+    /**
+     * Página de ids de la subcolección followers/following ordenada por id,
+     * comenzando después del cursor.
+     */
+    public Mono<List<String>> findEdgePage(String userId, String edgeCollection, String cursor, int limit) {
+        Query query = userRef(userId).collection(edgeCollection)
+                .orderBy(FieldPath.documentId());
+        if (StringUtils.hasText(cursor)) {
+            query = query.startAfter(cursor);
+        }
+
+        return monoFromApiFuture(query.limit(limit).get())
+                .map(snapshot -> snapshot.getDocuments().stream()
+                        .map(DocumentSnapshot::getId)
+                        .toList());
+    }
+
+    /**
+     * Crea las aristas en subcolecciones a partir de los arreglos de un perfil
+     * antiguo y fija los contadores almacenados. Las aristas se escriben en
+     * batches de hasta 500 (el máximo de Firestore), uno tras otro, y el
+     * perfil se marca como indexado al final: si un batch falla, el índice se
+     * reintenta completo en la siguiente lectura (los set son idempotentes).
+     */
+    public Mono<User> indexFollowEdges(User user) {
+        List<String> followers = user.getFollowers() == null ? List.of() : user.getFollowers();
+        List<String> following = user.getFollowing() == null ? List.of() : user.getFollowing();
+        long now = System.currentTimeMillis();
+
+        List<Map.Entry<DocumentReference, Map<String, Object>>> edges = new ArrayList<>();
+        followers.forEach(followerId ->
+                edges.add(Map.entry(edgeRef(user.getId(), FOLLOWERS, followerId), edgePayload(followerId, now))));
+        following.forEach(targetId ->
+                edges.add(Map.entry(edgeRef(user.getId(), FOLLOWING, targetId), edgePayload(targetId, now))));
+
+        return Flux.fromIterable(edges)
+                .buffer(MAX_BATCH_WRITES)
+                .concatMap(chunk -> {
+                    WriteBatch batch = firestore.batch();
+                    chunk.forEach(edge -> batch.set(edge.getKey(), edge.getValue()));
+                    return monoFromApiFuture(batch.commit());
+                })
+                .then(Mono.defer(() -> monoFromApiFuture(userRef(user.getId()).update(Map.<String, Object>of(
+                        "followersCount", followers.size(),
+                        "followingCount", following.size(),
+                        "followEdgesIndexed", true)))))
+                .then(Mono.fromSupplier(() -> {
+                    user.setFollowersCount(followers.size());
+                    user.setFollowingCount(following.size());
+                    user.setFollowEdgesIndexed(true);
+                    return user;
+                }));
+    }
+
+    /**
+     * Agrega una entrada al historial de avatares y elimina las más antiguas
+     * que excedan el máximo permitido.
+     */
+    public Mono<AvatarEntry> appendAvatarHistory(String userId, String avatarUrl, int maxEntries) {
+        long now = System.currentTimeMillis();
+        String entryId = avatarEntryId(now);
+        AvatarEntry entry = new AvatarEntry(entryId, avatarUrl, now);
+
+        ApiFuture<WriteResult> write = avatarsRef(userId).document(entryId).set(entry);
+
+        return monoFromApiFuture(write)
+                .then(Mono.defer(() -> trimAvatarHistory(userId, maxEntries)))
+                .thenReturn(entry);
+    }
+
+    /**
+     * Página del historial de avatares, del más reciente al más antiguo.
+     */
+    public Mono<List<AvatarEntry>> findAvatarPage(String userId, String cursor, int limit) {
+        Query query = avatarsRef(userId)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (StringUtils.hasText(cursor)) {
+            query = query.startAfter(cursor);
+        }
+
+        return monoFromApiFuture(query.limit(limit).get())
+                .map(snapshot -> snapshot.toObjects(AvatarEntry.class));
+    }
+
+    private Mono<Void> trimAvatarHistory(String userId, int maxEntries) {
+        Query overflow = avatarsRef(userId)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .offset(maxEntries);
+
+        return monoFromApiFuture(overflow.get())
+                .flatMap(snapshot -> {
+                    if (snapshot.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    WriteBatch batch = firestore.batch();
+                    snapshot.getDocuments().forEach(doc -> batch.delete(doc.getReference()));
+                    return monoFromApiFuture(batch.commit()).then();
+                });
+    }
+
+    /**
+     * Página de perfiles ordenada por id, trayendo solo el campo antiguo
+     * avatarHistory (vacío en los ya migrados).
+     */
+    public Mono<List<DocumentSnapshot>> findLegacyAvatarFields(String cursor, int limit) {
+        Query query = firestore.collection("users")
+                .orderBy(FieldPath.documentId())
+                .select(LEGACY_AVATAR_HISTORY);
+        if (StringUtils.hasText(cursor)) {
+            query = query.startAfter(cursor);
+        }
+
+        return monoFromApiFuture(query.limit(limit).get())
+                .map(QuerySnapshot::getDocuments);
+    }
+
+    /**
+     * Mueve el arreglo antiguo avatarHistory a la subcolección, conservando
+     * las últimas maxEntries entradas, y borra el campo. Corre en una
+     * transacción que vuelve a comprobar que el campo sigue ahí, y los ids de
+     * las entradas dependen solo de la posición: dos migraciones simultáneas
+     * del mismo perfil escriben los mismos documentos. true si migró algo.
+     */
+    public Mono<Boolean> migrateLegacyAvatarHistory(String userId, int maxEntries) {
+        DocumentReference ref = userRef(userId);
+
+        return monoFromApiFuture(firestore.runTransaction(transaction -> {
+            DocumentSnapshot doc = transaction.get(ref).get();
+            if (!doc.exists() || !doc.contains(LEGACY_AVATAR_HISTORY)) {
+                return false;
+            }
+            List<String> history = doc.get(LEGACY_AVATAR_HISTORY) instanceof List<?> raw
+                    ? raw.stream().filter(String.class::isInstance).map(String.class::cast).toList()
+                    : List.of();
+            int keep = Math.min(Math.min(maxEntries, LEGACY_AVATAR_MIGRATION_LIMIT), history.size());
+            long createdAt = doc.getLong("createdAt") == null ? 0 : doc.getLong("createdAt");
+
+            for (int i = history.size() - keep; i < history.size(); i++) {
+                String entryId = String.format("%013d-legacy-%03d", createdAt + i, i);
+                transaction.set(avatarsRef(userId).document(entryId),
+                        new AvatarEntry(entryId, history.get(i), createdAt + i));
+            }
+            transaction.update(ref, LEGACY_AVATAR_HISTORY, FieldValue.delete());
+            return true;
+        }));
+    }
+
+    // Ids ordenables lexicográficamente por fecha de creación
+    private String avatarEntryId(long createdAt) {
+        return String.format("%013d-%s", createdAt, UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    private CollectionReference avatarsRef(String userId) {
+        return userRef(userId).collection(AVATARS);
+    }
+
+    /**
+     * Divide la colección users en particiones que pueden leerse en paralelo.
+     */
+    public Mono<List<Query>> partitionUsers(long desiredPartitions) {
+        return monoFromApiFuture(firestore.collectionGroup("users").getPartitions(desiredPartitions))
+                .map(partitions -> partitions.stream()
+                        .map(QueryPartition::createQuery)
+                        .toList());
+    }
+
+    /**
+     * Lee una partición trayendo solo los campos del grafo de seguidores.
+     */
+    public Mono<List<User>> findFollowFields(Query partition) {
+        ApiFuture<QuerySnapshot> apiFuture = partition
+                .select("followers", "following", "followersCount", "followingCount")
+                .get();
+
+        return monoFromApiFuture(apiFuture)
+                .map(snapshot -> snapshot.getDocuments().stream()
+                        .map(doc -> {
+                            User user = doc.toObject(User.class);
+                            user.setId(doc.getId());
+                            return user;
+                        })
+                        .toList());
+    }
+
+    /**
+     * Aplica una corrección en una transacción que vuelve a leer ambos
+     * perfiles. No escribe nada si la asimetría que vio el recorrido ya no
+     * está (un follow o unfollow posterior la resolvió). Si había que
+     * completar un lado pero ese perfil ya no existe o el seguido llegó a
+     * maxFollowers, se quita la arista del lado que la declara. Los
+     * contadores se fijan desde el tamaño del arreglo corregido. Devuelve la
+     * corrección aplicada, o vacío si no hizo falta.
+     */
+    public Mono<FollowRepair> applyFollowRepair(FollowRepair repair, int maxFollowers) {
+        DocumentReference followerRef = userRef(repair.followerId());
+        DocumentReference targetRef = userRef(repair.targetId());
+
+        return monoFromApiFuture(firestore.runTransaction(transaction -> {
+            List<DocumentSnapshot> docs = transaction.getAll(followerRef, targetRef).get();
+            DocumentSnapshot follower = docs.get(0);
+            DocumentSnapshot target = docs.get(1);
+            List<String> following = stringList(follower, FOLLOWING);
+            List<String> followers = stringList(target, FOLLOWERS);
+            boolean declaredByFollower = following.contains(repair.targetId());
+            boolean declaredByTarget = followers.contains(repair.followerId());
+            if (declaredByFollower == declaredByTarget) {
+                return null;
+            }
+
+            boolean keep = declaredByFollower
+                    ? target.exists() && followers.size() < maxFollowers && repair.keep()
+                    : follower.exists() && repair.keep();
+            // Completar el lado que falta o quitarla del lado que la declara
+            boolean fixFollowerSide = keep != declaredByFollower;
+
+            if (fixFollowerSide) {
+                if (keep) {
+                    following.add(repair.targetId());
+                } else {
+                    following.remove(repair.targetId());
+                }
+                transaction.update(followerRef, FOLLOWING, following, "followingCount", following.size());
+            } else {
+                if (keep) {
+                    followers.add(repair.followerId());
+                } else {
+                    followers.remove(repair.followerId());
+                }
+                transaction.update(targetRef, FOLLOWERS, followers, "followersCount", followers.size());
+            }
+
+            DocumentReference followerEdge = edgeRef(repair.targetId(), FOLLOWERS, repair.followerId());
+            DocumentReference followingEdge = edgeRef(repair.followerId(), FOLLOWING, repair.targetId());
+            if (keep) {
+                long now = System.currentTimeMillis();
+                transaction.set(followerEdge, edgePayload(repair.followerId(), now));
+                transaction.set(followingEdge, edgePayload(repair.targetId(), now));
+            } else {
+                transaction.delete(followerEdge);
+                transaction.delete(followingEdge);
+            }
+            return new FollowRepair(repair.followerId(), repair.targetId(), keep, fixFollowerSide);
+        }));
+    }
+
+    private List<String> stringList(DocumentSnapshot doc, String field) {
+        return doc.exists() && doc.get(field) instanceof List<?> raw
+                ? raw.stream().filter(String.class::isInstance).map(String.class::cast)
+                        .collect(Collectors.toCollection(ArrayList::new))
+                : new ArrayList<>();
+    }
+
+    private DocumentReference userRef(String id) {
+        return firestore.collection("users").document(id);
+    }
+
+    private DocumentReference edgeRef(String ownerId, String edgeCollection, String otherId) {
+        return userRef(ownerId).collection(edgeCollection).document(otherId);
+    }
+
+    private Map<String, Object> edgePayload(String userId, long createdAt) {
+        return Map.<String, Object>of(
+                "userId", userId,
+                "createdAt", createdAt);
+    }
+
+    private <T> Mono<T> monoFromApiFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> completable = new CompletableFuture<>();
+
+        apiFuture.addListener(() -> {
+            try {
+                completable.complete(apiFuture.get());
+            } catch (Exception e) {
+                completable.completeExceptionally(e);
+            }
+        }, Runnable::run);
+
+        return Mono.fromCompletionStage(completable);
+    }
 }
@@ -0,0 +1,69 @@
+package com.example.user_service.service;
+
+import com.example.user_service.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Migración única del historial de avatares antiguo (arreglo avatarHistory
+ * en el perfil) a la subcolección avatars. Recorre users por páginas al
+ * arrancar, fuera del camino de lectura; cada perfil se migra en su propia
+ * transacción, así que varias instancias pueden correrla a la vez y una
+ * ejecución interrumpida se retoma sin duplicar entradas.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LegacyAvatarMigration {
+
+    private final UserRepository repo;
+
+    @Value("${avatars.legacy-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${avatars.legacy-migration.page-size:300}")
+    private int pageSize;
+
+    @Value("${avatars.history.max-entries:20}")
+    private int maxAvatarHistory;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        AtomicInteger scanned = new AtomicInteger();
+        AtomicInteger migrated = new AtomicInteger();
+
+        page(null, scanned, migrated)
+                .subscribe(ignored -> { }, error -> log.error("Falló la migración del historial de avatares", error),
+                        () -> log.info("Historial de avatares: {} perfiles revisados, {} migrados en {} ms",
+                                scanned.get(), migrated.get(), System.currentTimeMillis() - start));
+    }
+
+    private Mono<Void> page(String cursor, AtomicInteger scanned, AtomicInteger migrated) {
+        return repo.findLegacyAvatarFields(cursor, pageSize)
+                .flatMap(docs -> {
+                    if (docs.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    scanned.addAndGet(docs.size());
+                    String next = docs.get(docs.size() - 1).getId();
+                    return Flux.fromIterable(docs)
+                            .filter(doc -> doc.contains("avatarHistory"))
+                            .concatMap(doc -> repo.migrateLegacyAvatarHistory(doc.getId(), maxAvatarHistory))
+                            .filter(Boolean::booleanValue)
+                            .doOnNext(done -> migrated.incrementAndGet())
+                            .then(docs.size() < pageSize ? Mono.empty() : page(next, scanned, migrated));
+                });
+    }
+}
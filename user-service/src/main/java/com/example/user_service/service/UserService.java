@@ -1,14 +1,23 @@
 package com.example.user_service.service;
 
 import com.example.user_service.dto.AddAvatarRequest;
+import com.example.user_service.dto.AvatarPageResponse;
+import com.example.user_service.dto.BulkFollowRequest;
+import com.example.user_service.dto.BulkFollowResponse;
 import com.example.user_service.dto.CreateUserRequest;
 import com.example.user_service.dto.FollowActionResponse;
+import com.example.user_service.dto.FollowCountsResponse;
+import com.example.user_service.dto.FollowPageResponse;
 import com.example.user_service.dto.FollowersResponse;
 import com.example.user_service.dto.FollowingResponse;
+import com.example.user_service.dto.SuggestionsResponse;
 import com.example.user_service.dto.UpdateUserRequest;
+import com.example.user_service.graph.FollowGraph;
+import com.example.user_service.model.AvatarEntry;
 import com.example.user_service.model.User;
 import com.example.user_service.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -16,13 +25,29 @@ import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // 1 escritura del perfil actual + 3 por seguido: 301 como máximo, dentro de
+    // las 500 escrituras que admite la transacción de saveBulkFollowChange
+    private static final int MAX_BULK_TARGETS = 100;
+
     private final UserRepository repo;
+    private final FollowGraph followGraph;
+
+    @Value("${avatars.history.max-entries:20}")
+    private int maxAvatarHistory;
+
+    @Value("${follow-graph.max-followers:10}")
+    private int maxFollowers;
 
     public Mono<User> createUser(String userId, CreateUserRequest req) {
         User user = new User();
@@ -30,16 +55,17 @@ public class UserService {
         user.setName(req.getName());
         user.setUsername(req.getUsername());
         user.setBio(req.getBio());
-        List<String> avatarHistory = new ArrayList<>();
         if (StringUtils.hasText(req.getAvatarUrl())) {
-            avatarHistory.add(req.getAvatarUrl());
             user.setAvatarUrl(req.getAvatarUrl());
         }
-        user.setAvatarHistory(avatarHistory);
         user.setFollowers(new ArrayList<>());
         user.setFollowing(new ArrayList<>());
+        user.setFollowersCount(0);
+        user.setFollowingCount(0);
+        user.setFollowEdgesIndexed(true);
         user.setCreatedAt(System.currentTimeMillis());
-        return repo.save(user);
+        return saveWithAvatarHistory(user, null)
+                .doOnNext(saved -> followGraph.addUser(saved.getId()));
     }
 
     public Mono<User> updateUser(String id, UpdateUserRequest req) {
@@ -56,11 +82,12 @@ public class UserService {
                         u.setBio(req.getBio());
                     }
 
+                    String previousAvatarUrl = u.getAvatarUrl();
                     if (StringUtils.hasText(req.getAvatarUrl())) {
-                        appendAvatar(u, req.getAvatarUrl());
+                        u.setAvatarUrl(req.getAvatarUrl());
                     }
 
-                    return repo.save(u);
+                    return saveWithAvatarHistory(u, previousAvatarUrl);
                 });
     }
 
@@ -109,7 +136,7 @@ public class UserService {
 
                     List<String> targetFollowers = ensureList(target.getFollowers());
 
-                    if (targetFollowers.size() >= 10) {
+                    if (targetFollowers.size() >= maxFollowers) {
                         return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "El usuario alcanzó el límite de seguidores"));
                     }
 
@@ -117,9 +144,12 @@ public class UserService {
                     targetFollowers.add(currentUserId);
 
                     current.setFollowing(currentFollowing);
+                    current.setFollowingCount(currentFollowing.size());
                     target.setFollowers(targetFollowers);
+                    target.setFollowersCount(targetFollowers.size());
 
-                    return Mono.zip(repo.save(current), repo.save(target))
+                    return repo.saveFollowChange(current, target, true)
+                            .doOnSuccess(ignored -> followGraph.addEdge(currentUserId, targetUserId))
                             .thenReturn(buildFollowActionResponse(target, current));
                 });
     }
@@ -150,9 +180,12 @@ public class UserService {
                     if (removed) {
                         targetFollowers.remove(currentUserId);
                         current.setFollowing(currentFollowing);
+                        current.setFollowingCount(currentFollowing.size());
                         target.setFollowers(targetFollowers);
+                        target.setFollowersCount(targetFollowers.size());
 
-                        return Mono.zip(repo.save(current), repo.save(target))
+                        return repo.saveFollowChange(current, target, false)
+                                .doOnSuccess(ignored -> followGraph.removeEdge(currentUserId, targetUserId))
                                 .thenReturn(buildFollowActionResponse(target, current));
                     }
 
@@ -160,6 +193,45 @@ public class UserService {
                 });
     }
 
+    public Mono<BulkFollowResponse> bulkFollow(String currentUserId, String userId, BulkFollowRequest request) {
+        if (!StringUtils.hasText(currentUserId)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "X-User-Uid es requerido"));
+        }
+        if (!currentUserId.equals(userId)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.FORBIDDEN, "Solo puedes modificar tus propios seguidos"));
+        }
+        if (request == null || (!"follow".equals(request.getAction()) && !"unfollow".equals(request.getAction()))) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "action debe ser 'follow' o 'unfollow'"));
+        }
+        if (request.getTargetIds() == null || request.getTargetIds().isEmpty()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "targetIds es requerido"));
+        }
+
+        List<String> targetIds = request.getTargetIds().stream()
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toCollection(LinkedHashSet::new))
+                .stream()
+                .toList();
+        if (targetIds.size() > MAX_BULK_TARGETS) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Máximo " + MAX_BULK_TARGETS + " usuarios por solicitud"));
+        }
+
+        boolean follow = "follow".equals(request.getAction());
+
+        return repo.saveBulkFollowChange(currentUserId, targetIds, follow,
+                        byId -> planBulkFollow(currentUserId, targetIds, request.getAction(), byId))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario actual no encontrado")))
+                .doOnNext(outcome -> outcome.changedIds().forEach(targetId -> {
+                    if (follow) {
+                        followGraph.addEdge(currentUserId, targetId);
+                    } else {
+                        followGraph.removeEdge(currentUserId, targetId);
+                    }
+                }))
+                .map(BulkFollowOutcome::response);
+    }
+
     public Mono<FollowersResponse> listFollowers(String userId) {
         return repo.findById(userId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado")))
@@ -167,7 +239,7 @@ public class UserService {
                 List<String> followers = ensureList(user.getFollowers());
                 return FollowersResponse.builder()
                     .userId(user.getId())
-                    .count(followers.size())
+                    .count(storedCount(user.getFollowersCount(), followers))
                     .followers(List.copyOf(followers))
                     .build();
             });
@@ -180,12 +252,50 @@ public class UserService {
                 List<String> following = ensureList(user.getFollowing());
                 return FollowingResponse.builder()
                     .userId(user.getId())
-                    .count(following.size())
+                    .count(storedCount(user.getFollowingCount(), following))
                     .following(List.copyOf(following))
                     .build();
             });
     }
 
+    public Mono<FollowPageResponse> listFollowersPage(String userId, String cursor, Integer limit, boolean hydrate) {
+        return listFollowPage(userId, UserRepository.FOLLOWERS, cursor, limit, hydrate);
+    }
+
+    public Mono<FollowPageResponse> listFollowingPage(String userId, String cursor, Integer limit, boolean hydrate) {
+        return listFollowPage(userId, UserRepository.FOLLOWING, cursor, limit, hydrate);
+    }
+
+    public Mono<FollowCountsResponse> getFollowCounts(String userId) {
+        return findIndexedCounts(userId)
+                .map(user -> FollowCountsResponse.builder()
+                        .userId(userId)
+                        .followersCount(storedCount(user.getFollowersCount(), user.getFollowers()))
+                        .followingCount(storedCount(user.getFollowingCount(), user.getFollowing()))
+                        .build());
+    }
+
+    public Mono<SuggestionsResponse> getSuggestions(String userId, Integer limit) {
+        int size = limit == null ? followGraph.topN() : limit;
+        if (size <= 0 || size > followGraph.topN()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit debe estar entre 1 y " + followGraph.topN()));
+        }
+
+        List<FollowGraph.Suggestion> suggestions = followGraph.suggestionsFor(userId, size);
+        if (suggestions != null) {
+            return Mono.just(buildSuggestionsResponse(userId, suggestions));
+        }
+
+        // Usuario aún no presente en el grafo (p. ej. creado en otra instancia)
+        return repo.findById(userId)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado")))
+                .map(user -> {
+                    followGraph.replaceFollowing(user.getId(), user.getFollowing());
+                    return buildSuggestionsResponse(user.getId(), followGraph.suggestionsFor(user.getId(), size));
+                });
+    }
+
     public Mono<User> addAvatar(String id, AddAvatarRequest request) {
         if (!StringUtils.hasText(request.getAvatarUrl())) {
             return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "avatarUrl es requerido"));
@@ -194,18 +304,43 @@ public class UserService {
         return repo.findById(id)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado")))
                 .flatMap(user -> {
-                    appendAvatar(user, request.getAvatarUrl());
-                    return repo.save(user);
+                    String previousAvatarUrl = user.getAvatarUrl();
+                    user.setAvatarUrl(request.getAvatarUrl());
+                    return saveWithAvatarHistory(user, previousAvatarUrl);
                 });
     }
 
-    private void appendAvatar(User user, String avatarUrl) {
-        List<String> history = ensureList(user.getAvatarHistory());
-        if (history.isEmpty() || !avatarUrl.equals(history.get(history.size() - 1))) {
-            history.add(avatarUrl);
+    public Mono<AvatarPageResponse> listAvatars(String userId, String cursor, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit debe estar entre 1 y " + MAX_PAGE_SIZE));
         }
-        user.setAvatarHistory(history);
-        user.setAvatarUrl(avatarUrl);
+
+        return repo.findById(userId)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado")))
+                .flatMap(user -> repo.findAvatarPage(userId, cursor, size + 1)
+                        .map(entries -> {
+                            boolean hasMore = entries.size() > size;
+                            List<AvatarEntry> page = hasMore ? entries.subList(0, size) : entries;
+                            return AvatarPageResponse.builder()
+                                    .userId(userId)
+                                    .avatarUrl(user.getAvatarUrl())
+                                    .items(List.copyOf(page))
+                                    .nextCursor(hasMore ? page.get(page.size() - 1).getId() : null)
+                                    .build();
+                        }));
+    }
+
+    // Solo se registra en el historial cuando el avatar realmente cambia
+    private Mono<User> saveWithAvatarHistory(User user, String previousAvatarUrl) {
+        String avatarUrl = user.getAvatarUrl();
+        boolean changed = StringUtils.hasText(avatarUrl) && !avatarUrl.equals(previousAvatarUrl);
+
+        return repo.save(user)
+                .flatMap(saved -> changed
+                        ? repo.appendAvatarHistory(saved.getId(), avatarUrl, maxAvatarHistory).thenReturn(saved)
+                        : Mono.just(saved));
     }
 
     private List<String> ensureList(List<String> list) {
@@ -218,6 +353,153 @@ public class UserService {
         return new ArrayList<>(list);
     }
 
+    private String applyFollow(String currentUserId, List<String> currentFollowing, User target) {
+        if (currentFollowing.contains(target.getId())) {
+            return "ALREADY_FOLLOWING";
+        }
+        List<String> targetFollowers = ensureList(target.getFollowers());
+        if (targetFollowers.size() >= maxFollowers) {
+            return "LIMIT_REACHED";
+        }
+        currentFollowing.add(target.getId());
+        targetFollowers.add(currentUserId);
+        target.setFollowers(targetFollowers);
+        target.setFollowersCount(targetFollowers.size());
+        return "FOLLOWED";
+    }
+
+    private String applyUnfollow(String currentUserId, List<String> currentFollowing, User target) {
+        if (!currentFollowing.remove(target.getId())) {
+            return "NOT_FOLLOWING";
+        }
+        List<String> targetFollowers = ensureList(target.getFollowers());
+        targetFollowers.remove(currentUserId);
+        target.setFollowers(targetFollowers);
+        target.setFollowersCount(targetFollowers.size());
+        return "UNFOLLOWED";
+    }
+
+    // Corre dentro de la transacción (puede repetirse): solo modifica los perfiles recibidos
+    private UserRepository.BulkFollowChange<BulkFollowOutcome> planBulkFollow(
+            String currentUserId, List<String> targetIds, String action, Map<String, User> byId) {
+        User current = byId.get(currentUserId);
+        if (current == null) {
+            return new UserRepository.BulkFollowChange<>(null, List.of(), null);
+        }
+        boolean follow = "follow".equals(action);
+
+        List<String> currentFollowing = ensureList(current.getFollowing());
+        List<User> changed = new ArrayList<>();
+        List<BulkFollowResponse.TargetResult> results = new ArrayList<>();
+
+        for (String targetId : targetIds) {
+            User target = currentUserId.equals(targetId) ? null : byId.get(targetId);
+            String status;
+            if (currentUserId.equals(targetId)) {
+                status = "SELF";
+            } else if (target == null) {
+                status = "NOT_FOUND";
+            } else {
+                status = follow
+                        ? applyFollow(currentUserId, currentFollowing, target)
+                        : applyUnfollow(currentUserId, currentFollowing, target);
+                if ("FOLLOWED".equals(status) || "UNFOLLOWED".equals(status)) {
+                    changed.add(target);
+                }
+            }
+
+            results.add(BulkFollowResponse.TargetResult.builder()
+                    .targetUserId(targetId)
+                    .status(status)
+                    .followersCount(target == null ? null : ensureList(target.getFollowers()).size())
+                    .build());
+        }
+
+        current.setFollowing(currentFollowing);
+        current.setFollowingCount(currentFollowing.size());
+
+        BulkFollowResponse response = BulkFollowResponse.builder()
+                .userId(currentUserId)
+                .action(action)
+                .followingCount(currentFollowing.size())
+                .applied(changed.size())
+                .results(results)
+                .build();
+
+        List<String> changedIds = changed.stream().map(User::getId).toList();
+        return new UserRepository.BulkFollowChange<>(current, changed, new BulkFollowOutcome(response, changedIds));
+    }
+
+    private Mono<FollowPageResponse> listFollowPage(String userId, String edgeCollection, String cursor, Integer limit, boolean hydrate) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit debe estar entre 1 y " + MAX_PAGE_SIZE));
+        }
+
+        return findIndexedCounts(userId)
+                .flatMap(user -> repo.findEdgePage(userId, edgeCollection, cursor, size + 1)
+                        .flatMap(ids -> {
+                            boolean hasMore = ids.size() > size;
+                            List<String> page = hasMore ? ids.subList(0, size) : ids;
+                            String nextCursor = hasMore ? page.get(page.size() - 1) : null;
+                            int count = UserRepository.FOLLOWERS.equals(edgeCollection)
+                                    ? storedCount(user.getFollowersCount(), user.getFollowers())
+                                    : storedCount(user.getFollowingCount(), user.getFollowing());
+
+                            Mono<List<FollowPageResponse.Profile>> profiles = hydrate
+                                    ? repo.findProfilesById(page)
+                                    : Mono.just(List.of());
+
+                            return profiles.map(hydrated -> FollowPageResponse.builder()
+                                    .userId(userId)
+                                    .count(count)
+                                    .items(List.copyOf(page))
+                                    .profiles(hydrate ? hydrated : null)
+                                    .nextCursor(nextCursor)
+                                    .build());
+                        }));
+    }
+
+    // Lee solo los contadores; los perfiles antiguos sin aristas indexadas se migran una vez
+    private Mono<User> findIndexedCounts(String userId) {
+        return repo.findFollowCounts(userId)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado")))
+                .flatMap(counts -> {
+                    if (counts.isFollowEdgesIndexed()) {
+                        return Mono.just(counts);
+                    }
+                    return repo.findById(userId)
+                            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Usuario no encontrado")))
+                            .flatMap(repo::indexFollowEdges);
+                });
+    }
+
+    private int storedCount(Integer stored, List<String> list) {
+        if (stored != null) {
+            return stored;
+        }
+        return list == null ? 0 : list.size();
+    }
+
+    private record BulkFollowOutcome(BulkFollowResponse response, List<String> changedIds) {
+    }
+
+    private SuggestionsResponse buildSuggestionsResponse(String userId, List<FollowGraph.Suggestion> suggestions) {
+        List<SuggestionsResponse.SuggestedUser> items = suggestions.stream()
+                .map(s -> SuggestionsResponse.SuggestedUser.builder()
+                        .userId(s.userId())
+                        .mutualCount(s.mutualCount())
+                        .build())
+                .toList();
+
+        return SuggestionsResponse.builder()
+                .userId(userId)
+                .count(items.size())
+                .suggestions(items)
+                .build();
+    }
+
     private FollowActionResponse buildFollowActionResponse(User target, User current) {
         List<String> targetFollowers = ensureList(target.getFollowers());
         List<String> currentFollowing = ensureList(current.getFollowing());
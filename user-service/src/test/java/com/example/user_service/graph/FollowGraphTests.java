@@ -0,0 +1,49 @@
+package com.example.user_service.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class FollowGraphTests {
+
+	@Test
+	void suggestsFriendsOfFriendsRankedByMutualCount() {
+		FollowGraph graph = new FollowGraph(10);
+		graph.addEdge("ana", "bruno");
+		graph.addEdge("ana", "carla");
+		graph.addEdge("bruno", "diego");
+		graph.addEdge("carla", "diego");
+		graph.addEdge("carla", "elena");
+		graph.addEdge("bruno", "ana");
+
+		List<FollowGraph.Suggestion> suggestions = graph.suggestionsFor("ana", 10);
+
+		assertThat(suggestions).containsExactly(
+				new FollowGraph.Suggestion("diego", 2),
+				new FollowGraph.Suggestion("elena", 1));
+	}
+
+	@Test
+	void invalidatesSuggestionsWhenEdgesChange() {
+		FollowGraph graph = new FollowGraph(10);
+		graph.addEdge("ana", "bruno");
+		graph.addEdge("bruno", "carla");
+		assertThat(graph.suggestionsFor("ana", 10)).extracting(FollowGraph.Suggestion::userId).containsExactly("carla");
+
+		graph.addEdge("ana", "carla");
+		assertThat(graph.suggestionsFor("ana", 10)).isEmpty();
+
+		graph.removeEdge("ana", "carla");
+		graph.removeEdge("bruno", "carla");
+		graph.addEdge("bruno", "diego");
+		assertThat(graph.suggestionsFor("ana", 10)).extracting(FollowGraph.Suggestion::userId).containsExactly("diego");
+	}
+
+	@Test
+	void returnsNullForUnknownUser() {
+		FollowGraph graph = new FollowGraph(10);
+		assertThat(graph.suggestionsFor("nadie", 10)).isNull();
+	}
+}